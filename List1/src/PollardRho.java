@@ -107,6 +107,30 @@ public class PollardRho {
         return !((t.getB().mod(q)).compareTo(h.getB().mod(q)) == 0);
     }
 
+    /**
+     * Simultaneous exponentiation (g^a)*(y^b) mod p with Shamir's trick: one
+     * shared chain of squarings, multiplying by g, y or the precomputed g*y
+     * wherever a or b has a bit set.
+     * 
+     * @param a exponent of g, non-negative
+     * @param b exponent of y, non-negative
+     * @return (g^a)*(y^b) mod p
+     */
+    private BigInteger multiPow(BigInteger a, BigInteger b) {
+        BigInteger[] factors = { ONE, g, y, (g.multiply(y)).mod(p) };
+        BigInteger x = ONE;
+
+        for (int j = Math.max(a.bitLength(), b.bitLength()) - 1; j >= 0; j--) {
+            x = (x.multiply(x)).mod(p);
+            int bits = (a.testBit(j) ? 1 : 0) | (b.testBit(j) ? 2 : 0);
+            if (bits != 0) {
+                x = (x.multiply(factors[bits])).mod(p);
+            }
+        }
+
+        return x;
+    }
+
     /**
      * Function calculating x in g^x = y (mod p)
      * @return x
@@ -122,7 +146,7 @@ public class PollardRho {
         while (!verifyRaceResult(raceResults[0], raceResults[1])) {
             BigInteger a = BigInteger.valueOf(random.nextLong(q.longValue()));
             BigInteger b = BigInteger.valueOf(random.nextLong(q.longValue()));
-            BigInteger x = (g.modPow(a, p)).multiply(y.modPow(b, p));
+            BigInteger x = multiPow(a, b);
             tortoise = new PollardTuple(x, a, b);
             hare = new PollardTuple(x, a, b);
 
@@ -4,16 +4,16 @@ import java.util.Scanner;
 
 public class App {
 
-    private final static EllipticCurve ec40 = new EllipticCurve(new BigInteger("819542760399"),
+    private final static EllipticCurve ec40 = new WordEllipticCurve(new BigInteger("819542760399"),
             new BigInteger("450925713588"),
             new BigInteger("928695305977"), new BigInteger("928696393343"),
             new ECPoint(new BigInteger("712862527867"), new BigInteger("341290948763")));
 
-    private final static EllipticCurve ec10 = new EllipticCurve(new BigInteger("253"), new BigInteger("364"),
+    private final static EllipticCurve ec10 = new WordEllipticCurve(new BigInteger("253"), new BigInteger("364"),
             new BigInteger("647"), new BigInteger("643"),
             new ECPoint(new BigInteger("373"), new BigInteger("298")));
 
-    private final static EllipticCurve ec60 = new EllipticCurve(new BigInteger("44076867910191103"),
+    private final static EllipticCurve ec60 = new WordEllipticCurve(new BigInteger("44076867910191103"),
             new BigInteger("605586970250934463"), new BigInteger("1139907280243627543"),
             new BigInteger("1139907280255984973"),
             new ECPoint(new BigInteger("245862712227340576"), new BigInteger("970269412551424561")));
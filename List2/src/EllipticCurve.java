@@ -1,4 +1,5 @@
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * Class representing an elliptic curve E_a,b(F_p) of order q with its basepoint
@@ -12,6 +13,10 @@ public class EllipticCurve {
     private BigInteger q;
     private ECPoint zeroAtInfinity;
 
+    // Width of NAF in scalarMultiply
+    private static final int DEFAULT_WINDOW_WIDTH = 4;
+    private int windowWidth = DEFAULT_WINDOW_WIDTH;
+
     /**
      * Main constructor of class
      * 
@@ -188,37 +193,219 @@ public class EllipticCurve {
     }
 
     /**
-     * Scalar multiplication of a point on elliptic curve
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n
+     * (see setWindowWidth). Odd multiples of point are precomputed, then every
+     * digit costs a doubling and only non-zero digits an addition.
      * 
      * @param n
      * @param point
-     * @return
+     * @return point times n
      */
     public ECPoint scalarMultiply(BigInteger n, ECPoint point) {
-        // Write scalar as binary number
-        String nBinary = n.toString(2);
-        // exponent of 2 at index 0
-        int exp = nBinary.length() - 1;
-        ECPoint result = null;
-
-        for (int i = 0; i < nBinary.length(); i++) {
-            /*
-             * If nBinary[i] == '1' double the point exp times (exp = nBinary.length()-1-i;
-             * exponent for 2 at this place in binary representation) else do nothing
-             */
-            if (nBinary.charAt(i) == '1') {
-                ECPoint partialSum = new ECPoint(point.getX(), point.getY());
-                for (int j = 0; j < exp; j++) {
-                    partialSum = doublePoint(partialSum);
+        int[] digits = WindowNaf.recode(n.abs(), windowWidth);
+        ECPoint[] table = oddMultiples(point, WindowNaf.tableSize(windowWidth));
+        ECPoint result = zeroAtInfinity;
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            result = doublePoint(result);
+            int d = digits[i];
+            if (d > 0) {
+                result = addPoints(result, table[d >> 1]);
+            } else if (d < 0) {
+                result = addPoints(result, negate(table[-d >> 1]));
+            }
+        }
+
+        return n.signum() < 0 ? negate(result) : result;
+    }
+
+    /**
+     * Multi-scalar multiplication k[0] * points[0] + ... + k[n-1] * points[n-1].
+     * Small sums are computed with interleaved wNAF (Straus, Shamir's trick),
+     * sharing the doublings between all terms; large ones with the bucket method
+     * of Pippenger, whose cost per term drops as the number of terms grows. The
+     * method with fewer estimated point operations is used.
+     * 
+     * @param k      scalars
+     * @param points points
+     * @return the sum
+     */
+    public ECPoint multiScalarMultiply(BigInteger[] k, ECPoint[] points) {
+        if (k.length != points.length) {
+            throw new IllegalArgumentException("Number of scalars and points differ");
+        }
+        int n = k.length;
+
+        // Work with |k[i]| and negated points for negative scalars
+        BigInteger[] scalars = new BigInteger[n];
+        ECPoint[] base = new ECPoint[n];
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            scalars[i] = k[i].abs();
+            base[i] = k[i].signum() < 0 ? negate(points[i]) : points[i];
+            bits = Math.max(bits, scalars[i].bitLength());
+        }
+
+        int window = pippengerWindow(n, bits);
+        if (pippengerCost(n, bits, window) < strausCost(n, bits, windowWidth)) {
+            return pippenger(scalars, base, bits, window);
+        }
+        return straus(scalars, base);
+    }
+
+    /**
+     * Interleaved wNAF: one shared chain of doublings, every term adds its own
+     * precomputed odd multiples.
+     */
+    private ECPoint straus(BigInteger[] k, ECPoint[] points) {
+        int n = k.length;
+        int size = WindowNaf.tableSize(windowWidth);
+        int[][] digits = new int[n][];
+        ECPoint[][] tables = new ECPoint[n][];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            digits[i] = WindowNaf.recode(k[i], windowWidth);
+            tables[i] = oddMultiples(points[i], size);
+            length = Math.max(length, digits[i].length);
+        }
+
+        ECPoint result = zeroAtInfinity;
+        for (int j = length - 1; j >= 0; j--) {
+            result = doublePoint(result);
+            for (int i = 0; i < n; i++) {
+                int d = j < digits[i].length ? digits[i][j] : 0;
+                if (d > 0) {
+                    result = addPoints(result, tables[i][d >> 1]);
+                } else if (d < 0) {
+                    result = addPoints(result, negate(tables[i][-d >> 1]));
                 }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pippenger's bucket method with windows of c bits. In every window each
+     * point is added to the bucket of its digit, then all buckets are summed with
+     * weights 1, ..., 2^c - 1 using two running sums.
+     */
+    private ECPoint pippenger(BigInteger[] k, ECPoint[] points, int bits, int c) {
+        ECPoint[] buckets = new ECPoint[(1 << c) - 1];
+        ECPoint result = zeroAtInfinity;
+
+        for (int start = (bits - 1) / c * c; start >= 0; start -= c) {
+            for (int j = 0; j < c; j++) {
+                result = doublePoint(result);
+            }
+
+            Arrays.fill(buckets, zeroAtInfinity);
+            for (int i = 0; i < k.length; i++) {
+                int d = digit(k[i], start, c);
+                if (d > 0) {
+                    buckets[d - 1] = addPoints(buckets[d - 1], points[i]);
+                }
+            }
 
-                result = result == null ? partialSum : addPoints(result, partialSum);
+            // windowSum = sum of d * bucket[d]
+            ECPoint running = zeroAtInfinity;
+            ECPoint windowSum = zeroAtInfinity;
+            for (int b = buckets.length - 1; b >= 0; b--) {
+                running = addPoints(running, buckets[b]);
+                windowSum = addPoints(windowSum, running);
             }
+            result = addPoints(result, windowSum);
+        }
+        return result;
+    }
 
-            exp = exp - 1;
+    /**
+     * Bits start, ..., start + c - 1 of k as a number
+     */
+    private static int digit(BigInteger k, int start, int c) {
+        int d = 0;
+        for (int j = c - 1; j >= 0; j--) {
+            d = (d << 1) | (k.testBit(start + j) ? 1 : 0);
         }
+        return d;
+    }
 
-        return result == null ? zeroAtInfinity : result;
+    /**
+     * Estimated point operations of interleaved wNAF for n scalars of given bits
+     */
+    private static double strausCost(int n, int bits, int w) {
+        return bits + n * (WindowNaf.tableSize(w) + (double) bits / (w + 1));
+    }
+
+    /**
+     * Estimated point operations of Pippenger's method with windows of c bits
+     */
+    private static double pippengerCost(int n, int bits, int c) {
+        return bits + Math.ceil((double) bits / c) * (n + (2.0 * (1 << c)));
+    }
+
+    /**
+     * Width of the windows for which Pippenger's method is the cheapest
+     */
+    private static int pippengerWindow(int n, int bits) {
+        int best = 1;
+        for (int c = 2; c <= 20; c++) {
+            if (pippengerCost(n, bits, c) < pippengerCost(n, bits, best)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ...
+     * 
+     * @param point point P
+     * @param size  number of odd multiples
+     * @return table[i] = (2i + 1)P
+     */
+    private ECPoint[] oddMultiples(ECPoint point, int size) {
+        ECPoint[] table = new ECPoint[size];
+        table[0] = point;
+        if (size > 1) {
+            ECPoint twice = doublePoint(point);
+            for (int i = 1; i < size; i++) {
+                table[i] = addPoints(table[i - 1], twice);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Negate the point on this elliptic curve
+     * 
+     * @param pPoint
+     * @return -pPoint, the same x with negated y
+     */
+    public ECPoint negate(ECPoint pPoint) {
+        if (pPoint.equals(zeroAtInfinity)) {
+            return pPoint;
+        }
+        return new ECPoint(pPoint.getX(), pPoint.getY().negate().mod(p));
+    }
+
+    /**
+     * Set the width of NAF used by scalarMultiply. Wider windows need fewer
+     * additions but 2^(w-2) precomputed points.
+     * 
+     * @param w width, at least 2
+     */
+    public void setWindowWidth(int w) {
+        WindowNaf.checkWidth(w);
+        windowWidth = w;
+    }
+
+    /**
+     * Get the width of NAF used by scalarMultiply
+     * 
+     * @return width w
+     */
+    public int getWindowWidth() {
+        return windowWidth;
     }
 
 }
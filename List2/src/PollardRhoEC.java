@@ -1,4 +1,5 @@
 import java.math.BigInteger;
+import java.security.SecureRandom;
 
 /**
  * Class implementing Pollard-rho method to solve ECDLP, Y = s * P (find the s),
@@ -9,6 +10,10 @@ public class PollardRhoEC {
     private EllipticCurve curve;
     private ECPoint bigY;
     private int i = 0; // iterations of algorithm counter
+    private SecureRandom random = new SecureRandom();
+
+    // Races started from a random point before giving up
+    private static final int MAX_RESTARTS = 16;
 
     /**
      * Main constructor of the class
@@ -94,34 +99,61 @@ public class PollardRhoEC {
     }
 
     /**
-     * Function solving ECDLP -> Y = s * P (find the s)
+     * Race tortoise and hare from a given start till they meet
      * 
-     * @return s, -1 if was unable to solve
+     * @param start PollardTupleEC (r, a, b) where r = a*P + b*Y
+     * @return Array containing the tortoise and hare tuples after the collision
      */
-    public BigInteger solveS() {
-
-        BigInteger a0 = BigInteger.ONE;
-        BigInteger b0 = BigInteger.ZERO;
-        i = 0;
-
-        PollardTupleEC t = new PollardTupleEC(curve.getBasepoint(), a0, b0);
-        PollardTupleEC h = new PollardTupleEC(curve.getBasepoint(), a0, b0);
+    private PollardTupleEC[] race(PollardTupleEC start) {
+        PollardTupleEC t = start;
+        PollardTupleEC h = start;
 
-        // race till collision
         do {
             i += 1;
             t = f(t);
             h = f(f(h));
         } while (!t.getR().equals(h.getR()));
 
+        PollardTupleEC[] result = { t, h };
+        return result;
+    }
+
+    /**
+     * Function solving ECDLP -> Y = s * P (find the s). The first race starts
+     * from P; if the collision gives no solution (gcd(q, h_b - t_b) != 1) the race
+     * is restarted from a random a*P + b*Y, at most MAX_RESTARTS times.
+     * 
+     * @return s, -1 if was unable to solve
+     */
+    public BigInteger solveS() {
+
+        BigInteger q = curve.getQ();
+        i = 0;
+
+        PollardTupleEC[] raceResults = race(new PollardTupleEC(curve.getBasepoint(), BigInteger.ONE, BigInteger.ZERO));
+        int restarts = 0;
+
+        while (!q.gcd(raceResults[1].getB().subtract(raceResults[0].getB())).equals(BigInteger.ONE)) {
+            if (restarts++ == MAX_RESTARTS) {
+                return BigInteger.valueOf(-1);
+            }
+            // R = a*P + b*Y with both multiplications sharing one doubling chain
+            BigInteger a = new BigInteger(q.bitLength(), random).mod(q);
+            BigInteger b = new BigInteger(q.bitLength(), random).mod(q);
+            ECPoint r = curve.multiScalarMultiply(new BigInteger[] { a, b }, new ECPoint[] { curve.getBasepoint(), bigY });
+
+            raceResults = race(new PollardTupleEC(r, a, b));
+        }
+
+        PollardTupleEC t = raceResults[0];
+        PollardTupleEC h = raceResults[1];
+
         //System.out.println(t.toString());
         //System.out.println(h.toString());
         System.out.println("Algorithm took " + i + " iterations.");
 
-        // if gcd(q, h_b - t_b) return (h_a - t_a)/(t_b - h_b) mod q else error so return -1
-        return curve.getQ().gcd(h.getB().subtract(t.getB())).equals(BigInteger.ONE)
-                ? (h.getA().subtract(t.getA())).multiply((t.getB().subtract(h.getB())).modInverse(curve.getQ())).mod(curve.getQ())
-                : BigInteger.valueOf(-1);
+        // (h_a - t_a)/(t_b - h_b) mod q
+        return (h.getA().subtract(t.getA())).multiply((t.getB().subtract(h.getB())).modInverse(q)).mod(q);
     }
 
 }
@@ -0,0 +1,78 @@
+import java.math.BigInteger;
+
+/**
+ * Width-w non-adjacent form of a scalar. Every non-zero digit is odd, lies in
+ * (-2^(w-1), 2^(w-1)) and is followed by at least w - 1 zeros, so a scalar
+ * multiplication needs one addition per w + 1 bits on average instead of one per
+ * two bits, using the precomputed odd multiples P, 3P, ..., (2^(w-1) - 1)P.
+ */
+public class WindowNaf {
+
+    /**
+     * Smallest and largest supported width
+     */
+    public static final int MIN_WIDTH = 2;
+    public static final int MAX_WIDTH = 16;
+
+    /**
+     * Recode a non-negative scalar into width-w NAF
+     *
+     * @param k non-negative scalar
+     * @param w width, from MIN_WIDTH to MAX_WIDTH
+     * @return digits of k, least significant first; k = sum of digits[i] * 2^i
+     */
+    public static int[] recode(BigInteger k, int w) {
+        checkWidth(w);
+        if (k.signum() < 0) {
+            throw new IllegalArgumentException("Scalar has to be non-negative");
+        }
+
+        // The NAF can be one digit longer than k
+        int[] digits = new int[k.bitLength() + 1];
+        int mask = (1 << w) - 1;
+        int half = 1 << (w - 1);
+        int i = 0;
+
+        while (k.signum() > 0) {
+            // Skip the run of zero digits
+            int zeros = k.getLowestSetBit();
+            if (zeros > 0) {
+                k = k.shiftRight(zeros);
+                i += zeros;
+            }
+
+            // k mod 2^w, taken to the symmetric range
+            int d = k.intValue() & mask;
+            if (d >= half) {
+                d -= 1 << w;
+            }
+            digits[i] = d;
+            k = k.subtract(BigInteger.valueOf(d));
+        }
+
+        return digits;
+    }
+
+    /**
+     * Number of precomputed odd multiples needed for width w
+     *
+     * @param w width
+     * @return 2^(w-2)
+     */
+    public static int tableSize(int w) {
+        checkWidth(w);
+        return 1 << (w - 2);
+    }
+
+    /**
+     * Throw if the width is not supported
+     *
+     * @param w width
+     */
+    public static void checkWidth(int w) {
+        if (w < MIN_WIDTH || w > MAX_WIDTH) {
+            throw new IllegalArgumentException("Width of NAF has to be from " + MIN_WIDTH + " to " + MAX_WIDTH);
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+import java.math.BigInteger;
+
+/**
+ * Elliptic curve E_a,b(F_p) for p < 2^62, where every coordinate fits in a
+ * single machine word. Points and results are the same as in EllipticCurve,
+ * but all arithmetic is done on primitive longs in Montgomery form
+ * (WordField), converting only when an ECPoint comes in or out.
+ */
+public class WordEllipticCurve extends EllipticCurve {
+
+    private WordField field;
+    // a in Montgomery form
+    private long fieldA;
+
+    /**
+     * Main constructor of class
+     * 
+     * @param a         Paramater a in equation y^2 = x^3 + a*x + b
+     * @param b         Paramater b in equation y^2 = x^3 + a*x + b
+     * @param p         Size of finite field, below 2^62
+     * @param q         Order of the curve
+     * @param basepoint Basepoint of the curve
+     */
+    public WordEllipticCurve(BigInteger a, BigInteger b, BigInteger p, BigInteger q, ECPoint basepoint) {
+        super(a, b, p, q, basepoint);
+        field = new WordField(p);
+        fieldA = field.toField(a);
+    }
+
+    /**
+     * Add two different points from this elliptic curve
+     * 
+     * @param pPoint
+     * @param qPoint
+     * @return pPoint + qPoint on elliptic curve
+     */
+    @Override
+    public ECPoint addPoints(ECPoint pPoint, ECPoint qPoint) {
+        long[] r = toWord(pPoint);
+        add(r, toWord(qPoint));
+        return fromWord(r);
+    }
+
+    /**
+     * Double the point on this elliptic curve
+     * 
+     * @param pPoint
+     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
+     */
+    @Override
+    public ECPoint doublePoint(ECPoint pPoint) {
+        long[] r = toWord(pPoint);
+        twice(r);
+        return fromWord(r);
+    }
+
+    /**
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n,
+     * kept entirely in words.
+     * 
+     * @param n
+     * @param point
+     * @return point times n
+     */
+    @Override
+    public ECPoint scalarMultiply(BigInteger n, ECPoint point) {
+        int w = getWindowWidth();
+        int[] digits = WindowNaf.recode(n.abs(), w);
+        long[][] table = oddMultiples(toWord(point), WindowNaf.tableSize(w));
+        long[] result = { 0, 0, 0 };
+        long[] negative = new long[3];
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            twice(result);
+            int d = digits[i];
+            if (d > 0) {
+                add(result, table[d >> 1]);
+            } else if (d < 0) {
+                negate(negative, table[-d >> 1]);
+                add(result, negative);
+            }
+        }
+
+        if (n.signum() < 0) {
+            negate(result, result);
+        }
+        return fromWord(result);
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ... in words
+     */
+    private long[][] oddMultiples(long[] base, int size) {
+        long[][] table = new long[size][];
+        table[0] = base;
+        if (size > 1) {
+            long[] twice = base.clone();
+            twice(twice);
+            for (int i = 1; i < size; i++) {
+                table[i] = table[i - 1].clone();
+                add(table[i], twice);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * r = -s, the same x with negated y
+     */
+    private void negate(long[] r, long[] s) {
+        r[0] = s[0];
+        r[1] = field.subtract(0, s[1]);
+        r[2] = s[2];
+    }
+
+    /**
+     * Move a point into words (x, y, finite) in Montgomery form, the last word is
+     * 0 for zero at infinity and 1 otherwise.
+     */
+    private long[] toWord(ECPoint pp) {
+        if (pp.equals(getZeroAtInfinity())) {
+            return new long[] { 0, 0, 0 };
+        }
+        return new long[] { field.toField(pp.getX()), field.toField(pp.getY()), 1 };
+    }
+
+    /**
+     * Move words back into an ECPoint.
+     */
+    private ECPoint fromWord(long[] r) {
+        if (r[2] == 0) {
+            return getZeroAtInfinity();
+        }
+        return new ECPoint(BigInteger.valueOf(field.fromField(r[0])), BigInteger.valueOf(field.fromField(r[1])));
+    }
+
+    /**
+     * r = r + s
+     */
+    private void add(long[] r, long[] s) {
+        // If any point is zero at infinity
+        if (r[2] == 0) {
+            System.arraycopy(s, 0, r, 0, 3);
+            return;
+        } else if (s[2] == 0) {
+            return;
+        }
+
+        // If p_x = q_x result is zero at infinity
+        if (r[0] == s[0]) {
+            if (r[1] == s[1]) {
+                twice(r);
+            } else {
+                r[2] = 0;
+            }
+            return;
+        }
+
+        // (q_y - p_y)/(q_x - p_x)
+        long alpha = field.multiply(field.subtract(s[1], r[1]), field.invert(field.subtract(s[0], r[0])));
+        // x = alpha^2 - p_x - q_x (mod p)
+        long x = field.subtract(field.subtract(field.multiply(alpha, alpha), r[0]), s[0]);
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        long y = field.subtract(field.multiply(alpha, field.subtract(r[0], x)), r[1]);
+
+        r[0] = x;
+        r[1] = y;
+    }
+
+    /**
+     * r = 2 * r
+     */
+    private void twice(long[] r) {
+        // p_y = 0 or p = zero at inf
+        if (r[1] == 0 || r[2] == 0) {
+            r[2] = 0;
+            return;
+        }
+
+        // (3*p_x^2 + a)/2*p_y
+        long xx = field.multiply(r[0], r[0]);
+        long alpha = field.multiply(field.add(field.add(field.add(xx, xx), xx), fieldA),
+                field.invert(field.add(r[1], r[1])));
+        // x = alpha^2 - 2*p_x (mod p)
+        long x = field.subtract(field.subtract(field.multiply(alpha, alpha), r[0]), r[0]);
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        long y = field.subtract(field.multiply(alpha, field.subtract(r[0], x)), r[1]);
+
+        r[0] = x;
+        r[1] = y;
+    }
+
+}
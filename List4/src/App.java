@@ -1,46 +1,47 @@
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Scanner;
 
 public class App {
 
-    private final static EllipticCurve ec10_a = new EllipticCurve(new BigInteger("253"), new BigInteger("364"),
+    private final static EllipticCurve ec10_a = new WordEllipticCurve(new BigInteger("253"), new BigInteger("364"),
             new BigInteger("647"), new BigInteger("643"),
             new AffinePoint(new BigInteger("373"), new BigInteger("298")));
-    private final static EllipticCurve ec15_a = new EllipticCurve(new BigInteger("9030"),
+    private final static EllipticCurve ec15_a = new WordEllipticCurve(new BigInteger("9030"),
             new BigInteger("11170"),
             new BigInteger("19423"), new BigInteger("19373"),
             new AffinePoint(new BigInteger("12411"), new BigInteger("15784")));
-    private final static EllipticCurve ec20_a = new EllipticCurve(new BigInteger("360572"),
+    private final static EllipticCurve ec20_a = new WordEllipticCurve(new BigInteger("360572"),
             new BigInteger("550596"),
             new BigInteger("568187"), new BigInteger("568363"),
             new AffinePoint(new BigInteger("281708"), new BigInteger("330842")));
-    private final static EllipticCurve ec25_a = new EllipticCurve(new BigInteger("14311794"),
+    private final static EllipticCurve ec25_a = new WordEllipticCurve(new BigInteger("14311794"),
             new BigInteger("20151129"),
             new BigInteger("25069619"), new BigInteger("25073423"),
             new AffinePoint(new BigInteger("6708142"), new BigInteger("18333283")));
-    private final static EllipticCurve ec30_a = new EllipticCurve(new BigInteger("25537879"),
+    private final static EllipticCurve ec30_a = new WordEllipticCurve(new BigInteger("25537879"),
             new BigInteger("251919295"),
             new BigInteger("701253127"), new BigInteger("701289311"),
             new AffinePoint(new BigInteger("436848809"), new BigInteger("675062066")));
 
-    private final static EllipticCurve ec10_p = new EllipticCurve(new BigInteger("253"), new BigInteger("364"),
+    private final static EllipticCurve ec10_p = new WordEllipticCurve(new BigInteger("253"), new BigInteger("364"),
             new BigInteger("647"), new BigInteger("643"),
             new ProjectivePoint(new BigInteger("373"), new BigInteger("298"), BigInteger.ONE));
 
-    private final static EllipticCurve ec15_p = new EllipticCurve(new BigInteger("9030"),
+    private final static EllipticCurve ec15_p = new WordEllipticCurve(new BigInteger("9030"),
             new BigInteger("11170"),
             new BigInteger("19423"), new BigInteger("19373"),
             new ProjectivePoint(new BigInteger("12411"), new BigInteger("15784"), BigInteger.ONE));
-    private final static EllipticCurve ec20_p = new EllipticCurve(new BigInteger("360572"),
+    private final static EllipticCurve ec20_p = new WordEllipticCurve(new BigInteger("360572"),
             new BigInteger("550596"),
             new BigInteger("568187"), new BigInteger("568363"),
             new ProjectivePoint(new BigInteger("281708"), new BigInteger("330842"), BigInteger.ONE));
-    private final static EllipticCurve ec25_p = new EllipticCurve(new BigInteger("14311794"),
+    private final static EllipticCurve ec25_p = new WordEllipticCurve(new BigInteger("14311794"),
             new BigInteger("20151129"),
             new BigInteger("25069619"), new BigInteger("25073423"),
             new ProjectivePoint(new BigInteger("6708142"), new BigInteger("18333283"), BigInteger.ONE));
-    private final static EllipticCurve ec30_p = new EllipticCurve(new BigInteger("25537879"),
+    private final static EllipticCurve ec30_p = new WordEllipticCurve(new BigInteger("25537879"),
             new BigInteger("251919295"),
             new BigInteger("701253127"), new BigInteger("701289311"),
             new ProjectivePoint(new BigInteger("436848809"), new BigInteger("675062066"), BigInteger.ONE));
@@ -93,11 +94,20 @@ public class App {
         if (input.equals("test")) {
 
             int correctAnswers = 0;
+            ArrayList<AffinePoint> resultsA = new ArrayList<AffinePoint>();
+            ArrayList<ProjectivePoint> resultsP = new ArrayList<ProjectivePoint>();
             for (int i = 0; i < 100; i++) {
                 BigInteger s = BigInteger.valueOf(random.nextLong(test_a.getQ().longValue()));
-                AffinePoint bigYA = (AffinePoint) test_a.scalarMultiply(s, test_a.getBasepoint());
-                ProjectivePoint bigYP = (ProjectivePoint) test_p.scalarMultiply(s, test_p.getBasepoint());
-                AffinePoint bigYPConverted = test_p.toAffine(bigYP);
+                resultsA.add((AffinePoint) test_a.scalarMultiply(s, test_a.getBasepoint()));
+                resultsP.add((ProjectivePoint) test_p.scalarMultiply(s, test_p.getBasepoint()));
+            }
+
+            // Convert all projective results with a single inversion
+            ArrayList<AffinePoint> resultsPConverted = test_p.toAffineBatch(resultsP);
+            for (int i = 0; i < 100; i++) {
+                AffinePoint bigYA = resultsA.get(i);
+                ProjectivePoint bigYP = resultsP.get(i);
+                AffinePoint bigYPConverted = resultsPConverted.get(i);
 
                 System.out.println("Affine: " + bigYA.toString() + "; Projective: " + bigYP.toString()
                         + "; Converted to affine: " + bigYPConverted.toString());
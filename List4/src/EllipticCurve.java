@@ -1,4 +1,7 @@
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Class representing an elliptic curve E_a,b(F_p) of order q with its basepoint
@@ -18,6 +21,10 @@ public class EllipticCurve {
     private final BigInteger two = BigInteger.TWO;
     private final BigInteger three = BigInteger.valueOf(3);
 
+    // Width of NAF in scalarMultiply
+    private static final int DEFAULT_WINDOW_WIDTH = 4;
+    private int windowWidth = DEFAULT_WINDOW_WIDTH;
+
     /**
      * Main constructor of class
      * 
@@ -288,37 +295,241 @@ public class EllipticCurve {
     }
 
     /**
-     * Scalar multiplication of a point on elliptic curve
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n
+     * (see setWindowWidth). Odd multiples of point are precomputed, then every
+     * digit costs a doubling and only non-zero digits an addition.
      * 
      * @param n
      * @param point
      * @return point times n
      */
     public Point scalarMultiply(BigInteger n, Point point) {
-        // Write scalar as binary number
-        String nBinary = n.toString(2);
-        // exponent of 2 at index 0
-        int exp = nBinary.length() - 1;
+        int[] digits = WindowNaf.recode(n.abs(), windowWidth);
+        Point[] table = oddMultiples(point, WindowNaf.tableSize(windowWidth));
+        Point result = null;
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            if (result != null) {
+                result = doublePoint(result);
+            }
+            int d = digits[i];
+            if (d != 0) {
+                Point multiple = d > 0 ? table[d >> 1] : negate(table[-d >> 1]);
+                result = result == null ? multiple : addPoints(result, multiple);
+            }
+        }
+
+        if (result == null) {
+            return zeroAtInfinity;
+        }
+        return n.signum() < 0 ? negate(result) : result;
+    }
+
+    /**
+     * Multi-scalar multiplication k[0] * points[0] + ... + k[n-1] * points[n-1].
+     * Small sums are computed with interleaved wNAF (Straus, Shamir's trick),
+     * sharing the doublings between all terms; large ones with the bucket method
+     * of Pippenger, whose cost per term drops as the number of terms grows. The
+     * method with fewer estimated point operations is used.
+     * 
+     * @param k      scalars
+     * @param points points, all in the same coordinates
+     * @return the sum
+     */
+    public Point multiScalarMultiply(BigInteger[] k, Point[] points) {
+        if (k.length != points.length) {
+            throw new IllegalArgumentException("Number of scalars and points differ");
+        }
+        int n = k.length;
+
+        // Work with |k[i]| and negated points for negative scalars
+        BigInteger[] scalars = new BigInteger[n];
+        Point[] base = new Point[n];
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            scalars[i] = k[i].abs();
+            base[i] = k[i].signum() < 0 ? negate(points[i]) : points[i];
+            bits = Math.max(bits, scalars[i].bitLength());
+        }
+
+        int window = pippengerWindow(n, bits);
+        Point result = pippengerCost(n, bits, window) < strausCost(n, bits, windowWidth)
+                ? pippenger(scalars, base, bits, window)
+                : straus(scalars, base);
+        return result == null ? zeroAtInfinity : result;
+    }
+
+    /**
+     * Interleaved wNAF: one shared chain of doublings, every term adds its own
+     * precomputed odd multiples. Like in scalarMultiply, null stands for zero at
+     * infinity until the first addition.
+     */
+    private Point straus(BigInteger[] k, Point[] points) {
+        int n = k.length;
+        int size = WindowNaf.tableSize(windowWidth);
+        int[][] digits = new int[n][];
+        Point[][] tables = new Point[n][];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            digits[i] = WindowNaf.recode(k[i], windowWidth);
+            tables[i] = oddMultiples(points[i], size);
+            length = Math.max(length, digits[i].length);
+        }
+
+        Point result = null;
+        for (int j = length - 1; j >= 0; j--) {
+            if (result != null) {
+                result = doublePoint(result);
+            }
+            for (int i = 0; i < n; i++) {
+                int d = j < digits[i].length ? digits[i][j] : 0;
+                if (d != 0) {
+                    result = plus(result, d > 0 ? tables[i][d >> 1] : negate(tables[i][-d >> 1]));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pippenger's bucket method with windows of c bits. In every window each
+     * point is added to the bucket of its digit, then all buckets are summed with
+     * weights 1, ..., 2^c - 1 using two running sums. Empty buckets and sums are
+     * null.
+     */
+    private Point pippenger(BigInteger[] k, Point[] points, int bits, int c) {
+        Point[] buckets = new Point[(1 << c) - 1];
         Point result = null;
 
-        for (int i = 0; i < nBinary.length(); i++) {
-            /*
-             * If nBinary[i] == '1' double the point exp times (exp = nBinary.length()-1-i;
-             * exponent for 2 at this place in binary representation) else do nothing
-             */
-            if (nBinary.charAt(i) == '1') {
-                Point partialSum = point;
-                for (int j = 0; j < exp; j++) {
-                    partialSum = doublePoint(partialSum);
+        for (int start = (bits - 1) / c * c; start >= 0; start -= c) {
+            for (int j = 0; j < c && result != null; j++) {
+                result = doublePoint(result);
+            }
+
+            Arrays.fill(buckets, null);
+            for (int i = 0; i < k.length; i++) {
+                int d = digit(k[i], start, c);
+                if (d > 0) {
+                    buckets[d - 1] = plus(buckets[d - 1], points[i]);
                 }
+            }
 
-                result = result == null ? partialSum : addPoints(result, partialSum);
+            // windowSum = sum of d * bucket[d]
+            Point running = null;
+            Point windowSum = null;
+            for (int b = buckets.length - 1; b >= 0; b--) {
+                running = plus(running, buckets[b]);
+                windowSum = plus(windowSum, running);
             }
+            result = plus(result, windowSum);
+        }
+        return result;
+    }
 
-            exp = exp - 1;
+    /**
+     * r + s where null is zero at infinity
+     */
+    private Point plus(Point r, Point s) {
+        if (r == null) {
+            return s;
+        } else if (s == null) {
+            return r;
         }
+        return addPoints(r, s);
+    }
 
-        return result == null ? zeroAtInfinity : result;
+    /**
+     * Bits start, ..., start + c - 1 of k as a number
+     */
+    private static int digit(BigInteger k, int start, int c) {
+        int d = 0;
+        for (int j = c - 1; j >= 0; j--) {
+            d = (d << 1) | (k.testBit(start + j) ? 1 : 0);
+        }
+        return d;
+    }
+
+    /**
+     * Estimated point operations of interleaved wNAF for n scalars of given bits
+     */
+    private static double strausCost(int n, int bits, int w) {
+        return bits + n * (WindowNaf.tableSize(w) + (double) bits / (w + 1));
+    }
+
+    /**
+     * Estimated point operations of Pippenger's method with windows of c bits
+     */
+    private static double pippengerCost(int n, int bits, int c) {
+        return bits + Math.ceil((double) bits / c) * (n + (2.0 * (1 << c)));
+    }
+
+    /**
+     * Width of the windows for which Pippenger's method is the cheapest
+     */
+    private static int pippengerWindow(int n, int bits) {
+        int best = 1;
+        for (int c = 2; c <= 20; c++) {
+            if (pippengerCost(n, bits, c) < pippengerCost(n, bits, best)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ...
+     * 
+     * @param point point P
+     * @param size  number of odd multiples
+     * @return table[i] = (2i + 1)P
+     */
+    private Point[] oddMultiples(Point point, int size) {
+        Point[] table = new Point[size];
+        table[0] = point;
+        if (size > 1) {
+            Point twice = doublePoint(point);
+            for (int i = 1; i < size; i++) {
+                table[i] = addPoints(table[i - 1], twice);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Negate the point on this elliptic curve
+     * 
+     * @param Point pPoint
+     * @return -pPoint, the same x with negated y
+     */
+    public Point negate(Point pPoint) {
+        if (pPoint instanceof ProjectivePoint) {
+            ProjectivePoint pp = (ProjectivePoint) pPoint;
+            return new ProjectivePoint(pp.x, pp.y.negate().mod(p), pp.z);
+        } else if (pPoint.equals(zeroAtInfinity)) {
+            return pPoint;
+        } else {
+            return new AffinePoint(pPoint.x, pPoint.y.negate().mod(p));
+        }
+    }
+
+    /**
+     * Set the width of NAF used by scalarMultiply. Wider windows need fewer
+     * additions but 2^(w-2) precomputed points.
+     * 
+     * @param w width, at least 2
+     */
+    public void setWindowWidth(int w) {
+        WindowNaf.checkWidth(w);
+        windowWidth = w;
+    }
+
+    /**
+     * Get the width of NAF used by scalarMultiply
+     * 
+     * @return width w
+     */
+    public int getWindowWidth() {
+        return windowWidth;
     }
 
     public AffinePoint toAffine(ProjectivePoint pp) {
@@ -333,6 +544,56 @@ public class EllipticCurve {
         }
     }
 
+    /**
+     * Transform many projective points into affine at once. All of them share a
+     * single inversion (Montgomery's trick): 3(n-1) multiplications instead of
+     * n - 1 further inversions.
+     * 
+     * @param points projective points, zero at infinity allowed
+     * @return affine points in the same order
+     */
+    public ArrayList<AffinePoint> toAffineBatch(List<ProjectivePoint> points) {
+        int n = points.size();
+        ArrayList<AffinePoint> result = new ArrayList<AffinePoint>(n);
+        if (n == 0) {
+            return result;
+        }
+
+        // prefix[i] = product of non-zero z's of points 0..i
+        BigInteger[] prefix = new BigInteger[n];
+        BigInteger acc = one;
+        for (int i = 0; i < n; i++) {
+            BigInteger z = points.get(i).z.mod(p);
+            if (!z.equals(zero)) {
+                acc = acc.multiply(z).mod(p);
+            }
+            prefix[i] = acc;
+        }
+
+        // Walk back peeling one z off the inverse of the product every step
+        BigInteger[] zInv = new BigInteger[n];
+        BigInteger inv = acc.modInverse(p);
+        for (int i = n - 1; i >= 0; i--) {
+            BigInteger z = points.get(i).z.mod(p);
+            if (z.equals(zero)) {
+                continue;
+            }
+            zInv[i] = i > 0 ? inv.multiply(prefix[i - 1]).mod(p) : inv;
+            inv = inv.multiply(z).mod(p);
+        }
+
+        for (int i = 0; i < n; i++) {
+            ProjectivePoint pp = points.get(i);
+            if (zInv[i] == null) {
+                // Zero at infinity
+                result.add(new AffinePoint(zero, zero));
+            } else {
+                result.add(new AffinePoint(pp.x.multiply(zInv[i]).mod(p), pp.y.multiply(zInv[i]).mod(p)));
+            }
+        }
+        return result;
+    }
+
     public ProjectivePoint toProjective(AffinePoint pp) {
         return new ProjectivePoint(pp.x, pp.y, BigInteger.ONE);
     }
@@ -0,0 +1,359 @@
+import java.math.BigInteger;
+
+/**
+ * Elliptic curve E_a,b(F_p) for p < 2^62, where every coordinate fits in a
+ * single machine word. Points are the same classes as in EllipticCurve and the
+ * results are identical, but all arithmetic is done on primitive longs in
+ * Montgomery form (WordField), converting only when a Point comes in or out.
+ */
+public class WordEllipticCurve extends EllipticCurve {
+
+    private WordField field;
+    // a in Montgomery form
+    private long fieldA;
+
+    /**
+     * Main constructor of class
+     *
+     * @param a         Paramater a in equation y^2 = x^3 + a*x + b
+     * @param b         Paramater b in equation y^2 = x^3 + a*x + b
+     * @param p         Size of finite field, below 2^62
+     * @param q         Order of the curve
+     * @param basepoint Basepoint of the curve
+     */
+    public WordEllipticCurve(BigInteger a, BigInteger b, BigInteger p, BigInteger q, Point basepoint) {
+        super(a, b, p, q, basepoint);
+        field = new WordField(p);
+        fieldA = field.toField(a);
+    }
+
+    /**
+     * Add two different points from this elliptic curve. qPoint is moved into
+     * the coordinates of pPoint first.
+     *
+     * @param Point pPoint
+     * @param Point qPoint
+     * @return pPoint + qPoint on elliptic curve
+     */
+    @Override
+    public Point addPoints(Point pPoint, Point qPoint) {
+
+        if (pPoint instanceof AffinePoint) {
+            long[] r = toWord(pPoint);
+            affineAdd(r, toAffineWord(qPoint));
+            return fromWord(r, pPoint);
+        } else if (pPoint instanceof ProjectivePoint) {
+            long[] r = toWord(pPoint);
+            projectiveAdd(r, toWord(qPoint));
+            return fromWord(r, pPoint);
+        } else {
+            return getZeroAtInfinity();
+        }
+    }
+
+    /**
+     * Double the point on this elliptic curve
+     *
+     * @param Point pPoint
+     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
+     */
+    @Override
+    public Point doublePoint(Point pPoint) {
+
+        if (pPoint instanceof AffinePoint) {
+            long[] r = toWord(pPoint);
+            affineDouble(r);
+            return fromWord(r, pPoint);
+        } else if (pPoint instanceof ProjectivePoint) {
+            long[] r = toWord(pPoint);
+            projectiveDouble(r);
+            return fromWord(r, pPoint);
+        } else {
+            return getZeroAtInfinity();
+        }
+    }
+
+    /**
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n,
+     * kept entirely in words.
+     * 
+     * @param n
+     * @param point
+     * @return point times n
+     */
+    @Override
+    public Point scalarMultiply(BigInteger n, Point point) {
+        boolean affine = point instanceof AffinePoint;
+        int w = getWindowWidth();
+        int[] digits = WindowNaf.recode(n.abs(), w);
+        long[][] table = oddMultiples(toWord(point), WindowNaf.tableSize(w), affine);
+        long[] result = { 0, field.one(), 0 };
+        long[] negative = new long[3];
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            twice(result, affine);
+            int d = digits[i];
+            if (d > 0) {
+                add(result, table[d >> 1], affine);
+            } else if (d < 0) {
+                negate(negative, table[-d >> 1]);
+                add(result, negative, affine);
+            }
+        }
+
+        if (n.signum() < 0) {
+            negate(result, result);
+        }
+        return fromWord(result, point);
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ... in words
+     */
+    private long[][] oddMultiples(long[] base, int size, boolean affine) {
+        long[][] table = new long[size][];
+        table[0] = base;
+        if (size > 1) {
+            long[] twice = base.clone();
+            twice(twice, affine);
+            for (int i = 1; i < size; i++) {
+                table[i] = table[i - 1].clone();
+                add(table[i], twice, affine);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * r = r + s in affine or projective coordinates
+     */
+    private void add(long[] r, long[] s, boolean affine) {
+        if (affine) {
+            affineAdd(r, s);
+        } else {
+            projectiveAdd(r, s);
+        }
+    }
+
+    /**
+     * r = 2 * r in affine or projective coordinates
+     */
+    private void twice(long[] r, boolean affine) {
+        if (affine) {
+            affineDouble(r);
+        } else {
+            projectiveDouble(r);
+        }
+    }
+
+    /**
+     * r = -s, the same x and z with negated y
+     */
+    private void negate(long[] r, long[] s) {
+        r[0] = s[0];
+        r[1] = field.subtract(0, s[1]);
+        r[2] = s[2];
+    }
+
+    /**
+     * Move a Point into words (x, y, z) in Montgomery form. Affine points get
+     * z = 1, zero at infinity has z = 0.
+     */
+    private long[] toWord(Point pp) {
+        if (pp instanceof ProjectivePoint) {
+            ProjectivePoint ppp = (ProjectivePoint) pp;
+            return new long[] { field.toField(ppp.x), field.toField(ppp.y), field.toField(ppp.z) };
+        } else if (pp.equals(getZeroAtInfinity())) {
+            return new long[] { 0, field.one(), 0 };
+        } else {
+            return new long[] { field.toField(pp.x), field.toField(pp.y), field.one() };
+        }
+    }
+
+    /**
+     * Move a Point into words (x, y, 1) of affine coordinates, normalizing a
+     * projective point with an inversion. Zero at infinity has z = 0.
+     */
+    private long[] toAffineWord(Point pp) {
+        long[] r = toWord(pp);
+        if (pp instanceof ProjectivePoint && r[2] != 0) {
+            long zInv = field.invert(r[2]);
+            r[0] = field.multiply(r[0], zInv);
+            r[1] = field.multiply(r[1], zInv);
+            r[2] = field.one();
+        }
+        return r;
+    }
+
+    /**
+     * Move words back into the same coordinates as a given Point.
+     */
+    private Point fromWord(long[] r, Point kind) {
+        if (r[2] == 0) {
+            return getZeroAtInfinity();
+        }
+
+        BigInteger x = BigInteger.valueOf(field.fromField(r[0]));
+        BigInteger y = BigInteger.valueOf(field.fromField(r[1]));
+        if (kind instanceof ProjectivePoint) {
+            return new ProjectivePoint(x, y, BigInteger.valueOf(field.fromField(r[2])));
+        } else {
+            return new AffinePoint(x, y);
+        }
+    }
+
+    /**
+     * r = r + s in affine coordinates
+     */
+    private void affineAdd(long[] r, long[] s) {
+        // If any point is zero at infinity
+        if (r[2] == 0) {
+            System.arraycopy(s, 0, r, 0, 3);
+            return;
+        } else if (s[2] == 0) {
+            return;
+        }
+
+        // If p_x = q_x result is zero at infinity or if p = q do doubling
+        if (r[0] == s[0]) {
+            if (r[1] == s[1]) {
+                affineDouble(r);
+            } else {
+                setInfinity(r);
+            }
+            return;
+        }
+
+        // (q_y - p_y)/(q_x - p_x)
+        long alpha = field.multiply(field.subtract(s[1], r[1]), field.invert(field.subtract(s[0], r[0])));
+        // x = alpha^2 - p_x - q_x (mod p)
+        long x = field.subtract(field.subtract(field.multiply(alpha, alpha), r[0]), s[0]);
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        long y = field.subtract(field.multiply(alpha, field.subtract(r[0], x)), r[1]);
+
+        r[0] = x;
+        r[1] = y;
+    }
+
+    /**
+     * r = 2 * r in affine coordinates
+     */
+    private void affineDouble(long[] r) {
+        // p_y = 0 or p = zero at inf
+        if (r[1] == 0 || r[2] == 0) {
+            setInfinity(r);
+            return;
+        }
+
+        // (3*p_x^2 + a)/2*p_y
+        long xx = field.multiply(r[0], r[0]);
+        long alpha = field.multiply(field.add(field.add(field.add(xx, xx), xx), fieldA),
+                field.invert(field.add(r[1], r[1])));
+        // x = alpha^2 - 2*p_x (mod p)
+        long x = field.subtract(field.subtract(field.multiply(alpha, alpha), r[0]), r[0]);
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        long y = field.subtract(field.multiply(alpha, field.subtract(r[0], x)), r[1]);
+
+        r[0] = x;
+        r[1] = y;
+    }
+
+    /**
+     * r = r + s in projective coordinates
+     */
+    private void projectiveAdd(long[] r, long[] s) {
+        // If any point is zero at infinity
+        if (r[2] == 0) {
+            System.arraycopy(s, 0, r, 0, 3);
+            return;
+        } else if (s[2] == 0) {
+            return;
+        }
+
+        // U1 = Y_2 * Z_1
+        long U1 = field.multiply(s[1], r[2]);
+        // U2 = Y_1 * Z_2
+        long U2 = field.multiply(r[1], s[2]);
+        // V1 = X_2 * Z_1
+        long V1 = field.multiply(s[0], r[2]);
+        // V2 = X_1 * Z_2
+        long V2 = field.multiply(r[0], s[2]);
+
+        // If V1 = V2 result is zero at infinity or if U1 = U2 do doubling
+        if (V1 == V2) {
+            if (U1 == U2) {
+                projectiveDouble(r);
+            } else {
+                setInfinity(r);
+            }
+            return;
+        }
+
+        // U = U_1 - U_2
+        long U = field.subtract(U1, U2);
+        // V = V_1 - V_2
+        long V = field.subtract(V1, V2);
+        // W = Z_1 * Z_2
+        long W = field.multiply(r[2], s[2]);
+        long VV = field.multiply(V, V);
+        long VVV = field.multiply(VV, V);
+        long VVV2 = field.multiply(VV, V2);
+        // A = U^2 * W - V^3 - 2*V^2*V2
+        long A = field.subtract(field.subtract(field.subtract(field.multiply(field.multiply(U, U), W), VVV),
+                VVV2), VVV2);
+
+        // x3 = VA
+        r[0] = field.multiply(V, A);
+        // y3 = U * (V^2 * V2 - A) - V^3 * U2
+        r[1] = field.subtract(field.multiply(U, field.subtract(VVV2, A)), field.multiply(VVV, U2));
+        // z3 = V^3 * W
+        r[2] = field.multiply(VVV, W);
+    }
+
+    /**
+     * r = 2 * r in projective coordinates
+     */
+    private void projectiveDouble(long[] r) {
+        // p_y = 0 or p = zero at inf
+        if (r[1] == 0 || r[2] == 0) {
+            setInfinity(r);
+            return;
+        }
+
+        // W = 3X^2 + aZ^2
+        long XX = field.multiply(r[0], r[0]);
+        long W = field.add(field.add(field.add(XX, XX), XX), field.multiply(fieldA, field.multiply(r[2], r[2])));
+        // S = YZ
+        long S = field.multiply(r[1], r[2]);
+        // B = XYS
+        long B = field.multiply(field.multiply(S, r[0]), r[1]);
+        long B4 = times4(B);
+        // h = W^2 - 8B
+        long h = field.subtract(field.subtract(field.multiply(W, W), B4), B4);
+        // YS
+        long YS = field.multiply(S, r[1]);
+
+        // x3 = 2hS
+        long hS = field.multiply(h, S);
+        r[0] = field.add(hS, hS);
+        // y3 = W(4B - h) - 8(YS)^2
+        r[1] = field.subtract(field.multiply(W, field.subtract(B4, h)), times4(times2(field.multiply(YS, YS))));
+        // z3 = 8S^3
+        r[2] = times4(times2(field.multiply(field.multiply(S, S), S)));
+    }
+
+    private void setInfinity(long[] r) {
+        r[0] = 0;
+        r[1] = field.one();
+        r[2] = 0;
+    }
+
+    private long times2(long u) {
+        return field.add(u, u);
+    }
+
+    private long times4(long u) {
+        return times2(times2(u));
+    }
+
+}
@@ -0,0 +1,169 @@
+import java.math.BigInteger;
+
+/**
+ * Affine coordinates (x, y). Every addition and doubling needs an inversion
+ * in F_p, on the other hand points need no conversion.
+ */
+public class AffineCoordinates extends CoordinateSystem {
+
+    // Point off the curve standing for zero at infinity
+    private final AffinePoint infinity;
+
+    /**
+     * Main constructor of class
+     *
+     * @param field    Arithmetic backend of F_p
+     * @param fieldA   Paramater a of the curve, already in field
+     * @param infinity Point off the curve that represents zero at infinity
+     */
+    public AffineCoordinates(PrimeField field, long[] fieldA, AffinePoint infinity) {
+        super(field, fieldA);
+        this.infinity = infinity;
+    }
+
+    @Override
+    public boolean owns(Point pp) {
+        return pp instanceof AffinePoint;
+    }
+
+    @Override
+    public Point infinity() {
+        return infinity;
+    }
+
+    @Override
+    public FieldPoint toFieldPoint(Point pp) {
+        if (pp.equals(infinity)) {
+            return newInfinity();
+        }
+        return new FieldPoint(field.toField(pp.x), field.toField(pp.y), field.one());
+    }
+
+    @Override
+    public Point fromFieldPoint(FieldPoint fp) {
+        if (field.isZero(fp.z)) {
+            return infinity;
+        }
+        return new AffinePoint(field.fromField(fp.x), field.fromField(fp.y));
+    }
+
+    /**
+     * Affine addition, (q_y - p_y)/(q_x - p_x) slope.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        // If p_x = q_x result is zero at infinity or if p = q do doubling
+        if (field.areEqual(pp.x, qq.x)) {
+            if (field.areEqual(pp.y, qq.y)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        long[] alpha = t[0], x = t[1], y = t[2], tmp = t[3];
+        // (q_y - p_y)/(q_x - p_x)
+        field.subtract(tmp, qq.x, pp.x);
+        field.invert(tmp, tmp);
+        field.subtract(y, qq.y, pp.y);
+        field.multiply(alpha, y, tmp);
+        // x = alpha^2 - p_x - q_x (mod p)
+        field.square(x, alpha);
+        field.subtract(x, x, pp.x);
+        field.subtract(x, x, qq.x);
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        field.subtract(tmp, pp.x, x);
+        field.multiply(y, alpha, tmp);
+        field.subtract(y, y, pp.y);
+
+        field.copy(dst.x, x);
+        field.copy(dst.y, y);
+        field.copy(dst.z, fieldOne);
+    }
+
+    /**
+     * Affine doubling, (3*p_x^2 + a)/2*p_y slope.
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        // p_y = 0 or p = zero at inf
+        if (field.isZero(pp.y) || field.isZero(pp.z)) {
+            setInfinity(dst);
+            return;
+        }
+
+        long[] alpha = t[0], x = t[1], y = t[2], tmp = t[3];
+        // (3*p_x^2 + a)/2*p_y
+        field.add(tmp, pp.y, pp.y);
+        field.invert(tmp, tmp);
+        field.square(x, pp.x);
+        field.add(y, x, x);
+        field.add(y, y, x);
+        if (!aIsZero) {
+            field.add(y, y, fieldA);
+        }
+        field.multiply(alpha, y, tmp);
+
+        // x = alpha^2 - 2*p_x (mod p)
+        field.square(x, alpha);
+        field.subtract(x, x, pp.x);
+        field.subtract(x, x, pp.x);
+
+        // y = -p_y + alpha * (p_x - x) (mod p)
+        field.subtract(tmp, pp.x, x);
+        field.multiply(y, alpha, tmp);
+        field.subtract(y, y, pp.y);
+
+        field.copy(dst.x, x);
+        field.copy(dst.y, y);
+        field.copy(dst.z, fieldOne);
+    }
+
+    /**
+     * m doublings in Jacobian coordinates starting from Z = 1, with a single
+     * inversion at the end instead of one per doubling.
+     */
+    @Override
+    public void doubleTimesInto(FieldPoint dst, FieldPoint pp, int m, long[][] t) {
+        if (m < 2 || field.isZero(pp.z)) {
+            super.doubleTimesInto(dst, pp, m, t);
+            return;
+        }
+
+        long[] X = t[0], Y = t[1], Z = t[2], zInv = t[3], tmp = t[4];
+        field.copy(X, pp.x);
+        field.copy(Y, pp.y);
+        field.copy(Z, fieldOne);
+
+        jacobianDoubleTimes(X, Y, Z, m, t);
+
+        if (field.isZero(Z)) {
+            setInfinity(dst);
+            return;
+        }
+        // x = X / Z^2, y = Y / Z^3
+        field.invert(zInv, Z);
+        field.square(tmp, zInv);
+        field.multiply(dst.x, X, tmp);
+        field.multiply(Z, tmp, zInv);
+        field.multiply(dst.y, Y, Z);
+        field.copy(dst.z, fieldOne);
+    }
+
+    @Override
+    public void toAffine(long[] x, long[] y, FieldPoint fp, long[] zInv, long[][] t) {
+        field.copy(x, fp.x);
+        field.copy(y, fp.y);
+    }
+
+}
@@ -16,6 +16,10 @@ public class AffinePoint extends Point{
         }
     }
 
+    public int hashCode() {
+        return 31 * x.hashCode() + y.hashCode();
+    }
+
     public String toString() {
         return "(" + x + "," + y + ")";
     }
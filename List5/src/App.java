@@ -1,13 +1,13 @@
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 
 public class App {
 
     private static final int S_100 = 100;
-    private static final int S_5000 = 5000;
+    // Bytes of a table, about the size of an L2 cache
+    private static final long TABLE_BUDGET = 1 << 20;
+    // Candidates benchmarked by the tuner
+    private static final int BENCHMARKS = 3;
     // As defined in NIST Guide
     private static final BigInteger p = new BigInteger(
             "6864797660130609714981900799081393217269435300143305409394463459185543183397656052122559640661454554977296311391480858037121987999716643812574028291115057151");
@@ -24,37 +24,20 @@ public class App {
     private static LimLeeParameters optimalParameters;
 
     /**
-     * Calculate optimal a,b for the Lim-Lee based on length of the exponent and the
-     * storage bound.
+     * Find a,b for the Lim-Lee based on length of the exponent and the storage
+     * budget, with the measured costs of the operations on P521.
      * 
-     * @param l Bit length of the exponent
-     * @param S Storage bound
+     * @param l      Bit length of the exponent
+     * @param budget Bytes the table may take
+     * @throws Exception If there's an error in the EC operation of a benchmark
      */
-    private static void findOptimalParameters(int l, int S) {
-
-        ArrayList<LimLeeParameters> possibleParams = new ArrayList<LimLeeParameters>();
-
-        // Generate possible parameters and skip those exceeding the storage limit
-        for (int a = 1; a <= l; a++) {
-            for (int b = 1; b <= a; b++) {
-                LimLeeParameters test = new LimLeeParameters(a, b, l);
-                if (test.storage.compareTo(BigInteger.valueOf(S)) <= 0) {
-                    possibleParams.add(test);
-                }
-            }
-        }
-        // Sort the array based on operations count
-        Collections.sort(possibleParams, new Comparator<LimLeeParameters>() {
-            public int compare(LimLeeParameters p1, LimLeeParameters p2) {
-                BigInteger ops1 = p1.squarings.add(p1.multiplications);
-                BigInteger ops2 = p2.squarings.add(p2.multiplications);
-
-                return ops1.compareTo(ops2);
-            }
-        });
-
-        optimalParameters = possibleParams.get(0);
+    private static void findOptimalParameters(int l, long budget) throws Exception {
+        LimLeeTuner tuner = new LimLeeTuner(P521);
+        optimalParameters = tuner.tune(l, budget, BENCHMARKS);
 
+        System.out.printf("Doubling = %.0f ns, addition = %.0f ns, %d bytes per point%n",
+                tuner.getDoublingTime(), tuner.getAdditionTime(), tuner.getEntryBytes());
+        System.out.printf("Predicted fastPow = %.0f us%n", tuner.predictedTime(optimalParameters) / 1000);
     }
 
     public static void main(String[] args) throws Exception {
@@ -62,7 +45,7 @@ public class App {
         // Magic number as a test value
         int l = 512;
         BigInteger e = new BigInteger(l, 1, new SecureRandom());
-        findOptimalParameters(l, S_5000);
+        findOptimalParameters(l, TABLE_BUDGET);
 
         // Print optimal parameters that will be used in the algorithm test run
         System.out.println("For l = " + l + " optimal params are:");
@@ -0,0 +1,208 @@
+import java.math.BigInteger;
+
+/**
+ * Arithmetic of points of E_a,b(F_p) written in one coordinate system. A curve
+ * picks the system of its basepoint once at construction, so the loops of
+ * scalar multiplication call a single implementation instead of checking the
+ * class of every point on every step. New coordinate systems are added by
+ * extending this class and registering it in EllipticCurve.
+ *
+ * Formulas write the result into dst, which may be one of the operands, so
+ * every intermediate value lives in the scratch registers t and dst is written
+ * only at the end. In every system a FieldPoint with z = 0 is zero at infinity
+ * and an affine point (x, y, 1) is a valid point.
+ */
+public abstract class CoordinateSystem {
+
+    protected final PrimeField field;
+    // a in the representation of the field
+    protected final long[] fieldA;
+    protected final long[] fieldZero;
+    protected final long[] fieldOne;
+    // Shape of the curve, doubling formulas have cheaper variants for these a
+    protected final boolean aIsZero;
+    protected final boolean aIsMinusThree;
+
+    /**
+     * Constructor for the coordinate systems
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a in equation y^2 = x^3 + a*x + b, already in field
+     */
+    protected CoordinateSystem(PrimeField field, long[] fieldA) {
+        this.field = field;
+        this.fieldA = fieldA;
+        this.fieldZero = field.newElement();
+        this.fieldOne = field.one();
+        this.aIsZero = field.isZero(fieldA);
+        this.aIsMinusThree = field.areEqual(fieldA, field.toField(BigInteger.valueOf(-3)));
+    }
+
+    /**
+     * Check if a Point is written in this coordinate system
+     *
+     * @param pp any Point
+     * @return true if it is; false if it isn't
+     */
+    public abstract boolean owns(Point pp);
+
+    /**
+     * Get the Point representing zero at infinity in this coordinate system
+     *
+     * @return Point zero at infinity
+     */
+    public abstract Point infinity();
+
+    /**
+     * Move a Point of this coordinate system into the internal representation of
+     * the field backend.
+     *
+     * @param pp Point owned by this system
+     * @return the same point as a FieldPoint
+     */
+    public abstract FieldPoint toFieldPoint(Point pp);
+
+    /**
+     * Move a FieldPoint back into a Point of this coordinate system.
+     *
+     * @param fp point in internal representation
+     * @return fp as a Point
+     */
+    public abstract Point fromFieldPoint(FieldPoint fp);
+
+    /**
+     * dst = pp + qq
+     */
+    public abstract void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t);
+
+    /**
+     * dst = 2 * pp
+     */
+    public abstract void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t);
+
+    /**
+     * dst = 2^m * pp. By default m doublings one after another, systems with a
+     * cheaper chain override it.
+     */
+    public void doubleTimesInto(FieldPoint dst, FieldPoint pp, int m, long[][] t) {
+        copyInto(dst, pp);
+        for (int i = 0; i < m; i++) {
+            doubleInto(dst, dst, t);
+        }
+    }
+
+    /**
+     * m doublings of the Jacobian point (X : Y : Z), standing for the affine
+     * point (X/Z^2, Y/Z^3), in place. Every step is 4M + 4S for any a: aZ^4 is
+     * computed once and then carried over as 2 * 8Y^4 * aZ^4, reusing the 8Y^4
+     * the step needs anyway. Zero at infinity comes out with Z = 0.
+     *
+     * @param X x coordinate, scratch register outside t[3..9]
+     * @param Y y coordinate, scratch register outside t[3..9]
+     * @param Z z coordinate, scratch register outside t[3..9]
+     * @param m number of doublings
+     * @param t scratch registers
+     */
+    protected void jacobianDoubleTimes(long[] X, long[] Y, long[] Z, int m, long[][] t) {
+        long[] W = t[3], XX = t[4], YY = t[5], U = t[6], S = t[7], M = t[8], tmp = t[9];
+        // W = aZ^4
+        if (!aIsZero) {
+            field.square(tmp, Z);
+            field.square(W, tmp);
+            field.multiply(tmp, fieldA, W);
+            field.copy(W, tmp);
+        }
+        for (int i = 0; i < m; i++) {
+            field.square(XX, X);
+            field.square(YY, Y);
+            // U = 8Y^4
+            field.square(U, YY);
+            times8(U);
+            // S = 4XY^2
+            field.multiply(S, X, YY);
+            field.add(S, S, S);
+            field.add(S, S, S);
+            // M = 3X^2 + aZ^4
+            field.add(M, XX, XX);
+            field.add(M, M, XX);
+            if (!aIsZero) {
+                field.add(M, M, W);
+            }
+            // Z' = 2YZ, before Y is overwritten
+            field.multiply(tmp, Y, Z);
+            field.add(Z, tmp, tmp);
+            // X' = M^2 - 2S
+            field.square(X, M);
+            field.subtract(X, X, S);
+            field.subtract(X, X, S);
+            // Y' = M(S - X') - U
+            field.subtract(tmp, S, X);
+            field.multiply(Y, M, tmp);
+            field.subtract(Y, Y, U);
+            // aZ'^4 = 16Y^4 * aZ^4 = 2U * W
+            if (!aIsZero) {
+                field.multiply(tmp, U, W);
+                field.add(W, tmp, tmp);
+            }
+        }
+    }
+
+    /**
+     * dst = -pp, in all systems of short Weierstrass curves the same x and z with
+     * negated y
+     */
+    public void negate(FieldPoint dst, FieldPoint pp) {
+        field.copy(dst.x, pp.x);
+        field.subtract(dst.y, fieldZero, pp.y);
+        field.copy(dst.z, pp.z);
+    }
+
+    /**
+     * Affine coordinates of a point that is not zero at infinity, given the
+     * inverse of its z coordinate.
+     *
+     * @param x    destination for the affine x
+     * @param y    destination for the affine y
+     * @param fp   point in this coordinate system
+     * @param zInv inverse of fp.z
+     * @param t    scratch registers
+     */
+    public abstract void toAffine(long[] x, long[] y, FieldPoint fp, long[] zInv, long[][] t);
+
+    /**
+     * New FieldPoint set to zero at infinity, (0 : 1 : 0).
+     */
+    public FieldPoint newInfinity() {
+        return new FieldPoint(field.newElement(), field.one(), field.newElement());
+    }
+
+    protected void copyInto(FieldPoint dst, FieldPoint src) {
+        if (dst != src) {
+            dst.set(src);
+        }
+    }
+
+    protected void setInfinity(FieldPoint dst) {
+        field.copy(dst.x, fieldZero);
+        field.copy(dst.y, fieldOne);
+        field.copy(dst.z, fieldZero);
+    }
+
+    /**
+     * u = 3u (mod p)
+     */
+    protected void times3(long[] u, long[] tmp) {
+        field.add(tmp, u, u);
+        field.add(u, tmp, u);
+    }
+
+    /**
+     * u = 8u (mod p)
+     */
+    protected void times8(long[] u) {
+        field.add(u, u, u);
+        field.add(u, u, u);
+        field.add(u, u, u);
+    }
+
+}
@@ -1,4 +1,13 @@
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class representing an elliptic curve E_a,b(F_p) of order q with its basepoint
@@ -18,6 +27,62 @@ public class EllipticCurve {
     private final BigInteger two = BigInteger.TWO;
     private final BigInteger three = BigInteger.valueOf(3);
 
+    // Arithmetic backend for F_p and constants in its representation
+    private PrimeField field;
+    private long[] fieldA;
+    private long[] fieldZero;
+    private long[] fieldOne;
+
+    // Known coordinate systems and the one of the basepoint
+    private AffineCoordinates affine;
+    private ProjectiveCoordinates projective;
+    private CoordinateSystem[] systems;
+    private CoordinateSystem coordinates;
+
+    // Width of NAF in scalarMultiply
+    private static final int DEFAULT_WINDOW_WIDTH = 4;
+    private int windowWidth = DEFAULT_WINDOW_WIDTH;
+
+    // Points multiplied often get a fixed-base Lim-Lee table. Calls are counted
+    // for the TRACKED_POINTS most recently multiplied points; a point is
+    // promoted after PROMOTION_THRESHOLD calls. Tables are kept in LRU order
+    // within a budget in bytes and sized by a LimLeeTuner to a share of it, so
+    // TABLES of them fit. Points are keyed by their coordinates as given, which
+    // takes no inversion, so another representation of a projective point is
+    // counted on its own.
+    private static final int TRACKED_POINTS = 1024;
+    private static final int PROMOTION_THRESHOLD = 8;
+    private static final int TABLES = 16;
+    private static final long DEFAULT_TABLE_BUDGET = 1 << 20;
+    private volatile long tableBudget = DEFAULT_TABLE_BUDGET;
+    // Guarded by tables, like every change of its keys
+    private long tableSpace = 0;
+    private LimLeeTuner tableTuner;
+    private LimLeeParameters tableParameters;
+    private long tableBytes;
+    private final LinkedHashMap<List<BigInteger>, Integer> hits = new LinkedHashMap<List<BigInteger>, Integer>(16,
+            0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<List<BigInteger>, Integer> eldest) {
+            return size() > TRACKED_POINTS;
+        }
+    };
+    private final AtomicLong tableClock = new AtomicLong();
+    private final Map<List<BigInteger>, CachedTable> tables = new ConcurrentHashMap<List<BigInteger>, CachedTable>();
+
+    /**
+     * Fixed-base table of a hot point, completed by the thread that promoted
+     * the point
+     */
+    private static class CachedTable {
+        final CompletableFuture<LimLee> table = new CompletableFuture<LimLee>();
+        long bytes;
+        volatile long lastUse;
+    }
+
+    // Reusable temporaries for the formulas, one set per thread
+    private static final int SCRATCH_SIZE = 16;
+    private final ThreadLocal<long[][]> scratch = ThreadLocal.withInitial(this::newScratch);
+
     /**
      * Main constructor of class
      * 
@@ -33,7 +98,15 @@ public class EllipticCurve {
         this.setP(p);
         this.setQ(q);
         this.setBasepoint(basepoint);
-        zeroAtInfinity = calculateZeroAtInfinity();
+        field = PrimeField.forModulus(p);
+        fieldA = field.toField(a);
+        fieldZero = field.newElement();
+        fieldOne = field.one();
+        affine = new AffineCoordinates(field, fieldA, calculateZeroAtInfinity());
+        projective = new ProjectiveCoordinates(field, fieldA);
+        systems = new CoordinateSystem[] { affine, projective };
+        coordinates = coordinatesOf(basepoint);
+        zeroAtInfinity = coordinates.infinity();
     }
 
     /**
@@ -93,8 +166,8 @@ public class EllipticCurve {
      * 
      * @return Point basepoint
      */
-    public AffinePoint getBasepoint() {
-        return (AffinePoint) basepoint;
+    public Point getBasepoint() {
+        return basepoint;
     }
 
     private void setBasepoint(Point basepoint) {
@@ -110,13 +183,22 @@ public class EllipticCurve {
         return zeroAtInfinity;
     }
 
+    /**
+     * Get the coordinate system of the basepoint, used by the accumulators
+     * 
+     * @return CoordinateSystem of the basepoint
+     */
+    public CoordinateSystem getCoordinateSystem() {
+        return coordinates;
+    }
+
     /**
      * As there is no infinity in BigInteger let's generate point off the curve to
-     * be a point of reference for zero at infinity.
+     * be a point of reference for zero at infinity in affine coordinates.
      * 
-     * @return Point to serve as zero at infinity
+     * @return AffinePoint to serve as zero at infinity
      */
-    private Point calculateZeroAtInfinity() {
+    private AffinePoint calculateZeroAtInfinity() {
 
         AffinePoint o = new AffinePoint(zero, zero);
 
@@ -127,220 +209,470 @@ public class EllipticCurve {
             // o(x,y) = o(x,y+1)
             o.y = (o.y.add(one));
         }
-        if (basepoint instanceof AffinePoint) {
-            return o;
+        return o;
+    }
 
-        } else if (basepoint instanceof ProjectivePoint) {
-            return new ProjectivePoint(zero, one, zero);
-        } else {
-            return null;
+    /**
+     * Find the coordinate system a Point is written in
+     * 
+     * @param pp any Point
+     * @return CoordinateSystem of pp
+     * @throws IllegalArgumentException if no known system owns pp
+     */
+    private CoordinateSystem coordinatesOf(Point pp) {
+        for (CoordinateSystem cs : systems) {
+            if (cs.owns(pp)) {
+                return cs;
+            }
         }
-
+        throw new IllegalArgumentException("Unknown coordinate system of " + pp.getClass().getName());
     }
 
     /**
-     * Add two different points from this elliptic curve
+     * Add two different points from this elliptic curve. If the points are in
+     * different coordinate systems the affine one is used as it is in the system
+     * of the other.
      * 
      * @param Point pPoint
      * @param Point qPoint
      * @return pPoint + qPoint on elliptic curve
-     * @throws Exception
+     * @throws Exception If there's an error in addition and the point generated is
+     *                   not on the curve. Check present only in affine coordinates.
      */
     public Point addPoints(Point pPoint, Point qPoint) throws Exception {
+        CoordinateSystem cs = coordinatesOf(pPoint instanceof AffinePoint ? qPoint : pPoint);
+        FieldPoint r = toFieldPoint(pPoint, cs);
+        cs.addInto(r, r, toFieldPoint(qPoint, cs), scratch.get());
+        return checkOnCurve(cs.fromFieldPoint(r));
+    }
 
-        if (pPoint instanceof AffinePoint) {
+    /**
+     * Double the point on this elliptic curve
+     * 
+     * @param Point pPoint
+     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
+     * @throws Exception If there's an error in doubling operation and the point
+     *                   generated is not on the curve. Check present only in affine
+     *                   coordinates.
+     */
+    public Point doublePoint(Point pPoint) throws Exception {
+        CoordinateSystem cs = coordinatesOf(pPoint);
+        FieldPoint r = cs.toFieldPoint(pPoint);
+        cs.doubleInto(r, r, scratch.get());
+        return checkOnCurve(cs.fromFieldPoint(r));
+    }
 
-            AffinePoint pp = (AffinePoint) pPoint;
-            AffinePoint qq = (AffinePoint) qPoint;
-            // If any point is zero at infinity
-            if (pp.equals((AffinePoint) zeroAtInfinity)) {
-                return qPoint;
-            } else if (qq.equals((AffinePoint) zeroAtInfinity)) {
-                return pPoint;
-            }
+    /**
+     * Double the point on this elliptic curve m times. The whole chain runs in
+     * the internal representation, in Jacobian coordinates with repeated
+     * doubling formulas for long enough chains, so affine points pay a single
+     * inversion instead of m.
+     * 
+     * @param pPoint point to double
+     * @param m      number of doublings, non-negative
+     * @return 2^m * pPoint
+     * @throws Exception If the result is affine and not on the curve
+     */
+    public Point doubleTimes(Point pPoint, int m) throws Exception {
+        if (m < 0) {
+            throw new IllegalArgumentException("Negative number of doublings");
+        }
+        CoordinateSystem cs = coordinatesOf(pPoint);
+        FieldPoint r = cs.toFieldPoint(pPoint);
+        cs.doubleTimesInto(r, r, m, scratch.get());
+        return checkOnCurve(cs.fromFieldPoint(r));
+    }
 
-            // If p_x = q_x result is zero at infinity or if p = q do doubling
-            if (pp.x.equals(qq.x)) {
-                if (pp.y.equals(qq.y)) {
-                    return doublePoint(pPoint);
-                } else {
-                    return zeroAtInfinity;
-                }
-            }
+    /**
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n
+     * (see setWindowWidth). Odd multiples of point are precomputed, then every
+     * digit costs a doubling and only non-zero digits an addition. Points
+     * multiplied repeatedly are promoted to a fixed-base Lim-Lee table (see
+     * setTableBudget) and multiplied with it from then on.
+     * 
+     * @param n
+     * @param point
+     * @return point times n
+     * @throws Exception If there's an error in doubling operation and the point
+     *                   generated is not on the curve. Check present only in affine
+     *                   coordinates.
+     */
+    public Point scalarMultiply(BigInteger n, Point point) throws Exception {
+        CoordinateSystem cs = coordinatesOf(point);
+        LimLee fixedBase = fixedBaseTable(point);
+        if (fixedBase != null) {
+            // q is the order of the curve, so it's a multiple of the order of point
+            Point result = fixedBase.fastPow(n.mod(q));
+            return checkOnCurve(cs.owns(result) ? result : cs.fromFieldPoint(toFieldPoint(result, cs)));
+        }
 
-            // (q_y - p_y)/(q_x - p_x)
-            BigInteger alpha = (qq.y.subtract(pp.y))
-                    .multiply((qq.x.subtract(pp.x)).modInverse(p)).mod(p);
-            // x = alpha^2 - p_x - q_x (mod p)
-            BigInteger x = (alpha.modPow(two, p)).subtract(pp.x).subtract(qq.x).mod(p);
-            // y = -p_y + alpha * (p_x - x) (mod p)
-            BigInteger y = (pp.y.negate()).add(alpha.multiply(pp.x.subtract(x))).mod(p);
-
-            AffinePoint result = new AffinePoint(x, y);
-            if (!result.equals(zeroAtInfinity) && !isOnCurve((AffinePoint) result)) {
-                throw new Exception("Point off the curve");
+        long[][] t = scratch.get();
+        int[] digits = WindowNaf.recode(n.abs(), windowWidth);
+        FieldPoint[] table = oddMultiples(cs, cs.toFieldPoint(point), WindowNaf.tableSize(windowWidth));
+        FieldPoint result = newFieldPoint();
+        FieldPoint negative = newFieldPoint();
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            // A run of zero digits and the next digit share one chain of doublings
+            int m = 1;
+            while (i > 0 && digits[i] == 0) {
+                m++;
+                i--;
+            }
+            cs.doubleTimesInto(result, result, m, t);
+            int d = digits[i];
+            if (d > 0) {
+                cs.addInto(result, result, table[d >> 1], t);
+            } else if (d < 0) {
+                cs.negate(negative, table[-d >> 1]);
+                cs.addInto(result, result, negative, t);
             }
+        }
 
-            return result;
-        } else if (pPoint instanceof ProjectivePoint) {
+        if (n.signum() < 0) {
+            cs.negate(result, result);
+        }
+        return checkOnCurve(cs.fromFieldPoint(result));
+    }
 
-            ProjectivePoint pp = (ProjectivePoint) pPoint;
-            ProjectivePoint qq = (ProjectivePoint) qPoint;
+    /**
+     * Multi-scalar multiplication k[0] * points[0] + ... + k[n-1] * points[n-1].
+     * Small sums are computed with interleaved wNAF (Straus, Shamir's trick),
+     * sharing the doublings between all terms; large ones with the bucket method
+     * of Pippenger, whose cost per term drops as the number of terms grows. The
+     * method with fewer estimated point operations is used.
+     * 
+     * @param k      scalars
+     * @param points points, in the coordinates of points[0] or affine
+     * @return the sum, in the coordinates of points[0]
+     * @throws Exception If the sum is affine and not on the curve
+     */
+    public Point multiScalarMultiply(BigInteger[] k, Point[] points) throws Exception {
+        if (k.length != points.length) {
+            throw new IllegalArgumentException("Number of scalars and points differ");
+        }
+        int n = k.length;
+        if (n == 0) {
+            return zeroAtInfinity;
+        }
 
-            // If any point is zero at infinity
-            if (pp.isInfinity()) {
-                return qPoint;
-            } else if (qq.isInfinity()) {
-                return pPoint;
+        // Work with |k[i]| and negated points for negative scalars
+        CoordinateSystem cs = coordinatesOf(points[0]);
+        BigInteger[] scalars = new BigInteger[n];
+        FieldPoint[] base = new FieldPoint[n];
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            scalars[i] = k[i].abs();
+            base[i] = toFieldPoint(points[i], cs);
+            if (k[i].signum() < 0) {
+                cs.negate(base[i], base[i]);
             }
+            bits = Math.max(bits, scalars[i].bitLength());
+        }
+
+        int window = pippengerWindow(n, bits);
+        FieldPoint result = pippengerCost(n, bits, window) < strausCost(n, bits, windowWidth)
+                ? pippenger(cs, scalars, base, bits, window)
+                : straus(cs, scalars, base);
+        return checkOnCurve(cs.fromFieldPoint(result));
+    }
+
+    /**
+     * Interleaved wNAF: one shared chain of doublings, every term adds its own
+     * precomputed odd multiples.
+     */
+    private FieldPoint straus(CoordinateSystem cs, BigInteger[] k, FieldPoint[] points) {
+        int n = k.length;
+        int size = WindowNaf.tableSize(windowWidth);
+        int[][] digits = new int[n][];
+        FieldPoint[][] tables = new FieldPoint[n][];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            digits[i] = WindowNaf.recode(k[i], windowWidth);
+            tables[i] = oddMultiples(cs, points[i], size);
+            length = Math.max(length, digits[i].length);
+        }
 
-            // U1 = Y_2 * Z_1
-            BigInteger U1 = qq.y.multiply(pp.z).mod(p);
-            // U2 = Y_1 * Z_2
-            BigInteger U2 = pp.y.multiply(qq.z).mod(p);
-            // V1 = X_2 * Z_1
-            BigInteger V1 = qq.x.multiply(pp.z).mod(p);
-            // V2 = X_1 * Z_2
-            BigInteger V2 = pp.x.multiply(qq.z).mod(p);
-
-            // If V1 = V2 result is zero at infinity or if U1 = U2 do doubling
-            if (V1.equals(V2)) {
-                if (U1.equals(U2)) {
-                    return doublePoint(pPoint);
-                } else {
-                    return zeroAtInfinity;
+        long[][] t = scratch.get();
+        FieldPoint result = newFieldPoint();
+        FieldPoint negative = newFieldPoint();
+        for (int j = length - 1; j >= 0; j--) {
+            cs.doubleInto(result, result, t);
+            for (int i = 0; i < n; i++) {
+                int d = j < digits[i].length ? digits[i][j] : 0;
+                if (d > 0) {
+                    cs.addInto(result, result, tables[i][d >> 1], t);
+                } else if (d < 0) {
+                    cs.negate(negative, tables[i][-d >> 1]);
+                    cs.addInto(result, result, negative, t);
                 }
             }
-
-            // U = U_1 - U_2
-            BigInteger U = U1.subtract(U2).mod(p);
-            // V = V_1 - V_2
-            BigInteger V = V1.subtract(V2).mod(p);
-            // W = Z_1 * Z_2
-            BigInteger W = pp.z.multiply(qq.z).mod(p);
-            // A = U^2 * W - V^3 - 2*V^2*V2
-            BigInteger A = U.modPow(two, p).multiply(W).subtract(V.modPow(three, p))
-                    .subtract(two.multiply(V.modPow(two, p)).multiply(V2)).mod(p);
-            // x3 = VA
-            BigInteger x3 = V.multiply(A).mod(p);
-            // y3 = U * (V^2 * V2 - A) - V^3 * U2
-            BigInteger y3 = U.multiply(V.modPow(two, p).multiply(V2).subtract(A))
-                    .subtract(V.modPow(three, p).multiply(U2)).mod(p);
-            // z3 = V^3 * W
-            BigInteger z3 = V.modPow(three, p).multiply(W).mod(p);
-
-            return new ProjectivePoint(x3, y3, z3);
-        } else {
-            return zeroAtInfinity;
         }
+        return result;
     }
 
     /**
-     * Double the point on this elliptic curve
-     * 
-     * @param Point pPoint
-     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
-     * @throws Exception If there's an error in doubling operation and the point
-     *                   generated is not on the curve. Check present only in affine
-     *                   coordinates.
+     * Pippenger's bucket method with windows of c bits. In every window each
+     * point is added to the bucket of its digit, then all buckets are summed with
+     * weights 1, ..., 2^c - 1 using two running sums.
      */
-    public Point doublePoint(Point pPoint) throws Exception {
+    private FieldPoint pippenger(CoordinateSystem cs, BigInteger[] k, FieldPoint[] points, int bits, int c) {
+        long[][] t = scratch.get();
+        FieldPoint[] buckets = new FieldPoint[(1 << c) - 1];
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = newFieldPoint();
+        }
+        FieldPoint result = newFieldPoint();
+        FieldPoint running = newFieldPoint();
+        FieldPoint windowSum = newFieldPoint();
 
-        if (pPoint instanceof AffinePoint) {
+        for (int start = (bits - 1) / c * c; start >= 0; start -= c) {
+            cs.doubleTimesInto(result, result, c, t);
 
-            AffinePoint pp = (AffinePoint) pPoint;
-            // p_y = 0 or p = zero at inf
-            if (pp.y.mod(p).equals(zero) || pp.equals((AffinePoint) zeroAtInfinity)) {
-                return zeroAtInfinity;
+            for (FieldPoint bucket : buckets) {
+                setInfinity(bucket);
+            }
+            for (int i = 0; i < k.length; i++) {
+                int d = digit(k[i], start, c);
+                if (d > 0) {
+                    cs.addInto(buckets[d - 1], buckets[d - 1], points[i], t);
+                }
             }
 
-            // (3*p_x^2 + a)/2*p_y
-            BigInteger alpha = ((three.multiply(pp.x.modPow(two, p))).add(a))
-                    .multiply(((two).multiply(pp.y)).modInverse(p)).mod(p);
+            // windowSum = sum of d * bucket[d]
+            setInfinity(running);
+            setInfinity(windowSum);
+            for (int b = buckets.length - 1; b >= 0; b--) {
+                cs.addInto(running, running, buckets[b], t);
+                cs.addInto(windowSum, windowSum, running, t);
+            }
+            cs.addInto(result, result, windowSum, t);
+        }
+        return result;
+    }
 
-            // x = alpha^2 - 2*p_x (mod p)
-            BigInteger x = alpha.modPow(two, p).subtract(two.multiply(pp.x)).mod(p);
+    /**
+     * Bits start, ..., start + c - 1 of k as a number
+     */
+    private static int digit(BigInteger k, int start, int c) {
+        int d = 0;
+        for (int j = c - 1; j >= 0; j--) {
+            d = (d << 1) | (k.testBit(start + j) ? 1 : 0);
+        }
+        return d;
+    }
 
-            // y = -p_y + alpha * (p_x - x) (mod p)
-            BigInteger y = (pp.y.negate()).add(alpha.multiply(pp.x.subtract(x))).mod(p);
+    /**
+     * Estimated point operations of interleaved wNAF for n scalars of given bits
+     */
+    private static double strausCost(int n, int bits, int w) {
+        return bits + n * (WindowNaf.tableSize(w) + (double) bits / (w + 1));
+    }
 
-            AffinePoint result = new AffinePoint(x, y);
+    /**
+     * Estimated point operations of Pippenger's method with windows of c bits
+     */
+    private static double pippengerCost(int n, int bits, int c) {
+        return bits + Math.ceil((double) bits / c) * (n + (2.0 * (1 << c)));
+    }
 
-            if (!result.equals(zeroAtInfinity) && !isOnCurve((AffinePoint) result)) {
-                throw new Exception("Point off the curve");
+    /**
+     * Width of the windows for which Pippenger's method is the cheapest
+     */
+    private static int pippengerWindow(int n, int bits) {
+        int best = 1;
+        for (int c = 2; c <= 20; c++) {
+            if (pippengerCost(n, bits, c) < pippengerCost(n, bits, best)) {
+                best = c;
             }
+        }
+        return best;
+    }
 
-            return result;
-        } else if (pPoint instanceof ProjectivePoint) {
+    /**
+     * Count a call of scalarMultiply for a point and get its fixed-base table,
+     * building it once the point is hot. Existing tables are found without
+     * locking; other calls for a point whose table is being built wait for it.
+     * 
+     * @param point point to multiply
+     * @return table of point, null if it has none
+     * @throws Exception If the precomputation fails
+     */
+    private LimLee fixedBaseTable(Point point) throws Exception {
+        boolean infinity = point instanceof ProjectivePoint ? ((ProjectivePoint) point).isInfinity()
+                : point.equals(affine.infinity());
+        if (infinity) {
+            return null;
+        }
+        List<BigInteger> key = point instanceof ProjectivePoint
+                ? Arrays.asList(point.x, point.y, ((ProjectivePoint) point).z)
+                : Arrays.asList(point.x, point.y);
 
-            ProjectivePoint pp = (ProjectivePoint) pPoint;
-            // p_y = 0 or p = zero at inf
-            if (pp.y.mod(p).equals(zero) || pp.isInfinity()) {
-                return zeroAtInfinity;
+        CachedTable cached = tables.get(key);
+        if (cached == null) {
+            cached = promote(key, point);
+            if (cached == null) {
+                return null;
             }
-
-            // W = 3X^2 + aZ^2
-            BigInteger W = three.multiply(pp.x.modPow(two, p))
-                    .add(a.multiply(pp.z.modPow(two, p))).mod(p);
-            // S = YZ
-            BigInteger S = pp.y.multiply(pp.z).mod(p);
-            // B = XYS
-            BigInteger B = S.multiply(pp.x).multiply(pp.y).mod(p);
-            // h = W^2 - 8B
-            BigInteger h = W.modPow(two, p).subtract(two.pow(3).multiply(B)).mod(p);
-            // x3 = 2hS
-            BigInteger x3 = h.multiply(S).multiply(two).mod(p);
-            // y3 = W(4B - h) - 8(YS)^2
-            BigInteger y3 = W.multiply(two.pow(2).multiply(B).subtract(h))
-                    .subtract(two.pow(3).multiply((S.multiply(pp.y)).modPow(two, p))).mod(p);
-            // z3 = 8S^3
-            BigInteger z3 = two.pow(3).multiply(S.modPow(three, p)).mod(p);
-
-            return new ProjectivePoint(x3, y3, z3);
-        } else {
-            return zeroAtInfinity;
+        }
+        cached.lastUse = tableClock.incrementAndGet();
+        try {
+            return cached.table.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
     }
 
     /**
-     * Scalar multiplication of a point on elliptic curve
+     * Count a call for a point without a table and, once it is hot, make room
+     * for its table and build it. Only the first caller for a point builds,
+     * after the budget is settled and outside the lock; the others get the same
+     * pending table.
      * 
-     * @param n
-     * @param point
-     * @return point times n
-     * @throws Exception If there's an error in doubling operation and the point
-     *                   generated is not on the curve. Check present only in affine
-     *                   coordinates.
+     * @param key   coordinates of point
+     * @param point point to multiply
+     * @return table of point, null if it isn't hot yet or no table fits
+     * @throws Exception If the precomputation fails
      */
-    public Point scalarMultiply(BigInteger n, Point point) throws Exception {
-        // Write scalar as binary number
-        String nBinary = n.toString(2);
-        // exponent of 2 at index 0
-        int exp = nBinary.length() - 1;
-        Point result = null;
-
-        for (int i = 0; i < nBinary.length(); i++) {
-            /*
-             * If nBinary[i] == '1' double the point exp times (exp = nBinary.length()-1-i;
-             * exponent for 2 at this place in binary representation) else do nothing
-             */
-            if (nBinary.charAt(i) == '1') {
-                Point partialSum = point;
-                for (int j = 0; j < exp; j++) {
-                    partialSum = doublePoint(partialSum);
+    private CachedTable promote(List<BigInteger> key, Point point) throws Exception {
+        LimLeeParameters params;
+        CachedTable created = new CachedTable();
+        created.lastUse = tableClock.incrementAndGet();
+        synchronized (tables) {
+            CachedTable cached = tables.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (hits.merge(key, 1, Integer::sum) < PROMOTION_THRESHOLD) {
+                return null;
+            }
+            hits.remove(key);
+
+            if (tableParameters == null) {
+                if (tableTuner == null) {
+                    tableTuner = new LimLeeTuner(this);
+                }
+                tableParameters = tableTuner.tune(q.bitLength(), tableBudget / TABLES);
+                if (tableParameters == null) {
+                    return null;
                 }
+                tableBytes = LimLeeTuner.tableSize(tableParameters) * tableTuner.getEntryBytes();
+            }
+            params = tableParameters;
+            created.bytes = tableBytes;
+            tables.put(key, created);
+            tableSpace += created.bytes;
+            while (tableSpace > tableBudget && evictTable(key)) {
+                // Dropped the least recently used table
+            }
+        }
 
-                result = result == null ? partialSum : addPoints(result, partialSum);
+        try {
+            LimLee table = new LimLee(params, this, point);
+            table.precomputePoints();
+            created.table.complete(table);
+        } catch (Exception e) {
+            synchronized (tables) {
+                if (tables.remove(key, created)) {
+                    tableSpace -= created.bytes;
+                }
             }
+            created.table.completeExceptionally(e);
+            throw e;
+        }
+        return created;
+    }
 
-            exp = exp - 1;
+    /**
+     * Drop the least recently used fixed-base table, the caller holds the lock
+     * of tables
+     * 
+     * @param keep key of a table that stays
+     * @return false if there was no other table
+     */
+    private boolean evictTable(List<BigInteger> keep) {
+        Map.Entry<List<BigInteger>, CachedTable> eldest = null;
+        for (Map.Entry<List<BigInteger>, CachedTable> entry : tables.entrySet()) {
+            if (!entry.getKey().equals(keep)
+                    && (eldest == null || entry.getValue().lastUse < eldest.getValue().lastUse)) {
+                eldest = entry;
+            }
         }
+        if (eldest == null) {
+            return false;
+        }
+        tables.remove(eldest.getKey());
+        tableSpace -= eldest.getValue().bytes;
+        return true;
+    }
 
-        result = result == null ? zeroAtInfinity : result;
-        if (!result.equals(zeroAtInfinity) && !isOnCurve((AffinePoint) result)) {
-            throw new Exception("Point off the curve");
+    /**
+     * Set how many bytes the fixed-base tables of hot points can take
+     * together. New tables are tuned to a sixteenth of the budget; a budget
+     * too small for any table turns the promotion off.
+     * 
+     * @param bytes budget in bytes of heap
+     */
+    public void setTableBudget(long bytes) {
+        synchronized (tables) {
+            tableBudget = bytes;
+            tableParameters = null;
+            while (tableSpace > tableBudget && evictTable(null)) {
+                // Dropped the least recently used table
+            }
         }
-        return result;
+    }
+
+    /**
+     * Get how many bytes the fixed-base tables can take together
+     * 
+     * @return budget in bytes of heap
+     */
+    public long getTableBudget() {
+        return tableBudget;
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ... in a given coordinate system.
+     * 
+     * @param cs   coordinate system of pp
+     * @param pp   point P
+     * @param size number of odd multiples
+     * @return table[i] = (2i + 1)P
+     */
+    private FieldPoint[] oddMultiples(CoordinateSystem cs, FieldPoint pp, int size) {
+        long[][] t = scratch.get();
+        FieldPoint[] table = new FieldPoint[size];
+        table[0] = pp;
+        if (size > 1) {
+            FieldPoint twice = newFieldPoint();
+            cs.doubleInto(twice, pp, t);
+            for (int i = 1; i < size; i++) {
+                table[i] = newFieldPoint();
+                cs.addInto(table[i], table[i - 1], twice, t);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Set the width of NAF used by scalarMultiply. Wider windows need fewer
+     * additions but 2^(w-2) precomputed points.
+     * 
+     * @param w width, at least 2
+     */
+    public void setWindowWidth(int w) {
+        WindowNaf.checkWidth(w);
+        windowWidth = w;
+    }
+
+    /**
+     * Get the width of NAF used by scalarMultiply
+     * 
+     * @return width w
+     */
+    public int getWindowWidth() {
+        return windowWidth;
     }
 
     /**
@@ -350,15 +682,47 @@ public class EllipticCurve {
      * @return an affine point
      */
     public AffinePoint toAffine(ProjectivePoint pp) {
-        try {
-            BigInteger zInv = pp.z.modInverse(p);
-            return new AffinePoint(pp.x.multiply(zInv).mod(p), pp.y.multiply(zInv).mod(p));
-        } catch (ArithmeticException e) {
-            // e.printStackTrace();
-            // System.out.println("Point: " + pp.toString());
+        FieldPoint fp = projective.toFieldPoint(pp);
+        if (field.isZero(fp.z)) {
             // Zero at infinity
             return new AffinePoint(zero, zero);
         }
+        long[][] t = scratch.get();
+        field.invert(t[0], fp.z);
+        projective.toAffine(t[1], t[2], fp, t[0], t);
+        return new AffinePoint(field.fromField(t[1]), field.fromField(t[2]));
+    }
+
+    /**
+     * Transform many projective points into affine at once. All of them share a
+     * single inversion (Montgomery's trick), which is much cheaper than calling
+     * toAffine on every one of them.
+     * 
+     * @param points projective points, affine ones are passed through
+     * @return affine points in the same order
+     */
+    public ArrayList<AffinePoint> toAffineBatch(List<Point> points) {
+        int n = points.size();
+        FieldPoint[] fps = new FieldPoint[n];
+        for (int i = 0; i < n; i++) {
+            Point pp = points.get(i);
+            fps[i] = pp instanceof ProjectivePoint ? projective.toFieldPoint(pp) : newFieldPoint();
+        }
+        normalizeBatch(fps);
+
+        ArrayList<AffinePoint> result = new ArrayList<AffinePoint>(n);
+        for (int i = 0; i < n; i++) {
+            Point pp = points.get(i);
+            if (!(pp instanceof ProjectivePoint)) {
+                result.add((AffinePoint) pp);
+            } else if (field.isZero(fps[i].z)) {
+                // Zero at infinity
+                result.add(new AffinePoint(zero, zero));
+            } else {
+                result.add(new AffinePoint(field.fromField(fps[i].x), field.fromField(fps[i].y)));
+            }
+        }
+        return result;
     }
 
     /**
@@ -381,4 +745,317 @@ public class EllipticCurve {
         return pp.y.modPow(two, p).equals(pp.x.modPow(three, p).add(a.multiply(pp.x)).add(b).mod(p));
     }
 
+    /**
+     * Throw if an affine result of an operation is not on this curve
+     * 
+     * @param result result of an operation
+     * @return result
+     * @throws Exception If the point is affine and not on the curve
+     */
+    private Point checkOnCurve(Point result) throws Exception {
+        if (result instanceof AffinePoint && !result.equals(affine.infinity()) && !isOnCurve((AffinePoint) result)) {
+            throw new Exception("Point off the curve");
+        }
+        return result;
+    }
+
+    /**
+     * Create a mutable accumulator for in-place operations in the coordinates of
+     * the basepoint. It starts as zero at infinity.
+     * 
+     * @return new accumulator
+     */
+    public FieldPoint newAccumulator() {
+        return newFieldPoint();
+    }
+
+    /**
+     * Overwrite an accumulator with a Point. Affine points can be loaded into any
+     * coordinates, other points have to be in the coordinates of the basepoint.
+     * 
+     * @param dst accumulator
+     * @param src Point to load
+     */
+    public void load(FieldPoint dst, Point src) {
+        dst.set(toFieldPoint(src, coordinates));
+    }
+
+    /**
+     * Read an accumulator as a Point in the coordinates of the basepoint.
+     * 
+     * @param src accumulator
+     * @return Point with the value of src
+     */
+    public Point store(FieldPoint src) {
+        return coordinates.fromFieldPoint(src);
+    }
+
+    /**
+     * dst = a + b in the coordinates of the basepoint, without allocating. dst
+     * can be the same accumulator as a or b.
+     * 
+     * @param dst accumulator for the result
+     * @param a   first summand
+     * @param b   second summand
+     */
+    public void addInto(FieldPoint dst, FieldPoint a, FieldPoint b) {
+        coordinates.addInto(dst, a, b, scratch.get());
+    }
+
+    /**
+     * dst = 2 * src in the coordinates of the basepoint, without allocating. dst
+     * can be the same accumulator as src.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double
+     */
+    public void doubleInto(FieldPoint dst, FieldPoint src) {
+        coordinates.doubleInto(dst, src, scratch.get());
+    }
+
+    /**
+     * dst = 2^m * src in the coordinates of the basepoint, without allocating.
+     * dst can be the same accumulator as src.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double
+     * @param m   number of doublings
+     */
+    public void doubleTimesInto(FieldPoint dst, FieldPoint src, int m) {
+        coordinates.doubleTimesInto(dst, src, m, scratch.get());
+    }
+
+    /**
+     * dst = a + b in projective coordinates, whatever the coordinates of the
+     * basepoint are. Accumulators holding affine points (Z = 1) are valid
+     * projective points, so this lets them be combined without inversions.
+     * 
+     * @param dst accumulator for the result
+     * @param a   first summand
+     * @param b   second summand
+     */
+    public void projectiveAddInto(FieldPoint dst, FieldPoint a, FieldPoint b) {
+        projective.addInto(dst, a, b, scratch.get());
+    }
+
+    /**
+     * dst = 2 * src in projective coordinates, whatever the coordinates of the
+     * basepoint are.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double
+     */
+    public void projectiveDoubleInto(FieldPoint dst, FieldPoint src) {
+        projective.doubleInto(dst, src, scratch.get());
+    }
+
+    /**
+     * dst = 2^m * src in projective coordinates, whatever the coordinates of the
+     * basepoint are. Long chains run in Jacobian coordinates on the way.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double
+     * @param m   number of doublings
+     */
+    public void projectiveDoubleTimesInto(FieldPoint dst, FieldPoint src, int m) {
+        projective.doubleTimesInto(dst, src, m, scratch.get());
+    }
+
+    /**
+     * dst = a + b in Jacobian coordinates, whatever the coordinates of the
+     * basepoint are. b has to have Z = 1, like the points of a normalized table,
+     * or be zero at infinity; zero at infinity (0 : 1 : 0) of newAccumulator is
+     * valid for a. The mixed formula needs no inversion, 7M + 4S.
+     * 
+     * @param dst accumulator for the result
+     * @param a   first summand in Jacobian coordinates
+     * @param b   second summand with Z = 1
+     */
+    public void jacobianAddMixedInto(FieldPoint dst, FieldPoint a, FieldPoint b) {
+        // If any point is zero at infinity
+        if (field.isZero(a.z)) {
+            dst.set(b);
+            return;
+        } else if (field.isZero(b.z)) {
+            if (dst != a) {
+                dst.set(a);
+            }
+            return;
+        }
+
+        long[][] t = scratch.get();
+        long[] Z1Z1 = t[0], U2 = t[1], S2 = t[2], H = t[3], R = t[4], tmp = t[5];
+        field.square(Z1Z1, a.z);
+        // U2 = b.x * a.z^2
+        field.multiply(U2, b.x, Z1Z1);
+        // S2 = b.y * a.z^3
+        field.multiply(tmp, Z1Z1, a.z);
+        field.multiply(S2, b.y, tmp);
+        // H = U2 - a.x
+        field.subtract(H, U2, a.x);
+        // R = 2(S2 - a.y)
+        field.subtract(R, S2, a.y);
+        field.add(R, R, R);
+
+        // If H = 0 result is zero at infinity or if R = 0 do doubling
+        if (field.isZero(H)) {
+            if (field.isZero(R)) {
+                jacobianDoubleInto(dst, a);
+            } else {
+                field.copy(dst.x, fieldZero);
+                field.copy(dst.y, fieldOne);
+                field.copy(dst.z, fieldZero);
+            }
+            return;
+        }
+
+        long[] HH = t[6], I = t[7], J = t[8], V = t[9];
+        long[] x3 = t[10], y3 = t[11], z3 = t[12];
+        field.square(HH, H);
+        // I = 4H^2, J = HI, V = a.x * I
+        field.add(I, HH, HH);
+        field.add(I, I, I);
+        field.multiply(J, H, I);
+        field.multiply(V, a.x, I);
+        // x3 = R^2 - J - 2V
+        field.square(x3, R);
+        field.subtract(x3, x3, J);
+        field.subtract(x3, x3, V);
+        field.subtract(x3, x3, V);
+        // y3 = R(V - x3) - 2 * a.y * J
+        field.subtract(tmp, V, x3);
+        field.multiply(y3, R, tmp);
+        field.multiply(tmp, a.y, J);
+        field.subtract(y3, y3, tmp);
+        field.subtract(y3, y3, tmp);
+        // z3 = (a.z + H)^2 - a.z^2 - H^2
+        field.add(tmp, a.z, H);
+        field.square(z3, tmp);
+        field.subtract(z3, z3, Z1Z1);
+        field.subtract(z3, z3, HH);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    /**
+     * dst = 2 * src in Jacobian coordinates, whatever the coordinates of the
+     * basepoint are. A single step of the repeated doubling the coordinate
+     * systems share, 4M + 4S.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double in Jacobian coordinates
+     */
+    public void jacobianDoubleInto(FieldPoint dst, FieldPoint src) {
+        if (dst != src) {
+            dst.set(src);
+        }
+        projective.jacobianDoubleTimes(dst.x, dst.y, dst.z, 1, scratch.get());
+    }
+
+    /**
+     * Read a Jacobian accumulator as a Point in the coordinates of the
+     * basepoint. An affine result costs an inversion, a projective one (XZ : Y :
+     * Z^3) none.
+     * 
+     * @param src accumulator in Jacobian coordinates
+     * @return Point with the value of src
+     */
+    public Point storeJacobian(FieldPoint src) {
+        if (field.isZero(src.z)) {
+            return coordinates.infinity();
+        }
+        long[][] t = scratch.get();
+        FieldPoint dst = newFieldPoint();
+        if (coordinates == affine) {
+            // x = X * Z^-2, y = Y * Z^-3
+            field.invert(t[2], src.z);
+            field.square(t[0], t[2]);
+            field.multiply(t[1], t[0], t[2]);
+            field.multiply(dst.x, src.x, t[0]);
+            field.multiply(dst.y, src.y, t[1]);
+            field.copy(dst.z, fieldOne);
+        } else {
+            field.multiply(dst.x, src.x, src.z);
+            field.copy(dst.y, src.y);
+            field.square(t[0], src.z);
+            field.multiply(dst.z, t[0], src.z);
+        }
+        return coordinates.fromFieldPoint(dst);
+    }
+
+    /**
+     * Scale projective accumulators in place to Z = 1, sharing a single inversion
+     * between all of them. Afterwards they hold the same points in affine
+     * coordinates. Zero at infinity is left as it is.
+     * 
+     * @param points distinct accumulators in projective coordinates
+     */
+    public void normalizeBatch(FieldPoint[] points) {
+        int n = points.length;
+        long[][] z = new long[n][];
+        long[][] zInv = new long[n][];
+        for (int i = 0; i < n; i++) {
+            z[i] = points[i].z;
+            zInv[i] = field.newElement();
+        }
+        field.invertBatch(zInv, z);
+
+        long[][] t = scratch.get();
+        for (int i = 0; i < n; i++) {
+            if (field.isZero(points[i].z)) {
+                continue;
+            }
+            projective.toAffine(t[0], t[1], points[i], zInv[i], t);
+            field.copy(points[i].x, t[0]);
+            field.copy(points[i].y, t[1]);
+            field.copy(points[i].z, fieldOne);
+        }
+    }
+
+    /**
+     * Move a Point into the internal representation of a given coordinate
+     * system. Affine points are valid in every system, other points from a
+     * different system are converted through affine coordinates, which costs an
+     * inversion.
+     * 
+     * @param pp Point in any coordinates
+     * @param cs target coordinate system
+     * @return the same point as a FieldPoint in cs
+     */
+    private FieldPoint toFieldPoint(Point pp, CoordinateSystem cs) {
+        if (cs.owns(pp)) {
+            return cs.toFieldPoint(pp);
+        } else if (pp instanceof AffinePoint) {
+            return affine.toFieldPoint(pp);
+        } else {
+            return affine.toFieldPoint(toAffine((ProjectivePoint) pp));
+        }
+    }
+
+    /**
+     * New FieldPoint set to zero at infinity, (0 : 1 : 0).
+     */
+    private FieldPoint newFieldPoint() {
+        return new FieldPoint(field.newElement(), field.one(), field.newElement());
+    }
+
+    private void setInfinity(FieldPoint dst) {
+        Arrays.fill(dst.x, 0);
+        field.copy(dst.y, fieldOne);
+        Arrays.fill(dst.z, 0);
+    }
+
+    /**
+     * Allocate scratch registers for the formulas of one thread.
+     */
+    private long[][] newScratch() {
+        long[][] t = new long[SCRATCH_SIZE][];
+        for (int i = 0; i < SCRATCH_SIZE; i++) {
+            t[i] = field.newElement();
+        }
+        return t;
+    }
+
 }
@@ -0,0 +1,32 @@
+/**
+ * Point whose coordinates are kept in the internal representation of a
+ * PrimeField. EllipticCurve converts Points to this form on the way in and
+ * back on the way out, so whole chains of operations stay in the backend.
+ * The meaning of (x, y, z) depends on the coordinate system it came from;
+ * affine points use z = 1. In every system z = 0 means zero at infinity.
+ */
+public class FieldPoint {
+
+    public long[] x;
+    public long[] y;
+    public long[] z;
+
+    public FieldPoint(long[] x, long[] y, long[] z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Overwrite this point with the coordinates of another one from the same
+     * field
+     *
+     * @param src point to copy
+     */
+    public void set(FieldPoint src) {
+        System.arraycopy(src.x, 0, x, 0, x.length);
+        System.arraycopy(src.y, 0, y, 0, y.length);
+        System.arraycopy(src.z, 0, z, 0, z.length);
+    }
+
+}
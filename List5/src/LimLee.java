@@ -1,10 +1,35 @@
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 public class LimLee {
+    /**
+     * First int of a file of precomputed points. The file continues with a
+     * version, a SHA-256 fingerprint of the curve, the base point and the field
+     * representation, then l, a, b, h, v and the number of limbs of a field
+     * element, padded to HEADER_SIZE bytes. Entries follow as little-endian
+     * longs: for j from 0 to v - 1 and u from 1 to 2^h - 1 the limbs of x, y and
+     * z of row j, entry u, with z = 1, or z = 0 for zero at infinity.
+     */
+    public static final int MAGIC = 0x4c4c5442;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
     private LimLeeParameters params;
     private EllipticCurve ec;
-    private Point[][] precomputedPoints;
+    private Point base;
+    private FieldPoint[][] precomputedPoints;
+    // Entries of a table loaded by loadPoints, read in place by fastPow
+    private LongBuffer mapped;
     public int onlineSquares;
     public int onlineMults;
 
@@ -15,138 +40,323 @@ public class LimLee {
      * @param ec     Elliptic curve for the operations
      */
     public LimLee(LimLeeParameters params, EllipticCurve ec) {
+        this(params, ec, ec.getBasepoint());
+    }
+
+    /**
+     * Construct an instance of Lim-Lee exponentiation algorithm for a fixed point
+     * other than the basepoint.
+     * 
+     * @param params Precomputed algorithm parameters
+     * @param ec     Elliptic curve for the operations
+     * @param base   Point multiplied by fastPow, affine or in the coordinates of
+     *               the basepoint
+     */
+    public LimLee(LimLeeParameters params, EllipticCurve ec, Point base) {
         this.params = params;
         this.ec = ec;
+        this.base = base;
         // size: v * 2^h, preload with zero at inf
-        precomputedPoints = new AffinePoint[params.v + 1][(1 << params.h)];
-        for (Point[] row : precomputedPoints) {
-            Arrays.fill(row, ec.getZeroAtInfinity());
+        precomputedPoints = new FieldPoint[params.v + 1][(1 << params.h)];
+        FieldPoint zeroAtInfinity = ec.newAccumulator();
+        for (FieldPoint[] row : precomputedPoints) {
+            Arrays.fill(row, zeroAtInfinity);
         }
 
     }
 
     /**
      * Precompute points for the exponentiation. The number of points is equal to
-     * the storage parameter.
+     * the storage parameter. The points g_ij = 2^(ia + jb) * BP are computed once
+     * with chains of doublings, then row j of the table holds their subset sums
+     * over i: entry u is entry u without its top bit plus one g_ij, a single
+     * addition. Rows are independent and filled in parallel. Points are computed
+     * in projective coordinates and brought to Z = 1 together at the end, so the
+     * whole table costs a single inversion.
      * 
      * @throws Exception If there's an error in the EC operation and the point
      *                   generated is not on the curve.
      */
     public void precomputePoints() throws Exception {
-        // u -> [1, 2^h)
-        // v -> [0, v)
-        for (int u = 1; u < (int) Math.pow(2.0, params.h); u++) {
-
-            int a = params.a;
-            int b = params.b;
-            int v = params.v;
-
-            // At j = 0 calculate r_i's (g^2^ia)
-            // Initialize binary representation of u
-            String binaryU = Integer.toBinaryString(u);
-            binaryU = String.format("%" + (params.h) + "s", binaryU).replaceAll(" ", "0");
-            Point result = null;
-
-            // Go through every bit of u
-            for (int i = 0; i < params.h; i++) {
-                // If bit at i is 1, then calculate g^(2^ia) = 2^ia * BP -> i*a doublings
-                // lsb
-                if (binaryU.charAt(params.h - 1 - i) == '1') {
-                    Point partialSum = ec.getBasepoint();
-                    for (int ii = 0; ii < i * a; ii++) {
-                        partialSum = ec.doublePoint(partialSum);
-                    }
-                    result = result == null ? partialSum : ec.addPoints(result, partialSum);
-                }
-            }
-            precomputedPoints[0][u] = result;
+        int h = params.h;
+        int v = params.v;
+        int rowSize = 1 << h;
 
+        // g[i][0] = 2^(ia) * BP down the big blocks, then g[i][j] = 2^(jb) *
+        // g[i][0] along every one of them
+        FieldPoint[][] g = new FieldPoint[h][v];
+        g[0][0] = ec.newAccumulator();
+        ec.load(g[0][0], base);
+        for (int i = 1; i < h; i++) {
+            g[i][0] = ec.newAccumulator();
+            ec.projectiveDoubleTimesInto(g[i][0], g[i - 1][0], params.a);
+        }
+        IntStream.range(0, h).parallel().forEach(i -> {
             for (int j = 1; j < v; j++) {
+                g[i][j] = ec.newAccumulator();
+                ec.projectiveDoubleTimesInto(g[i][j], g[i][j - 1], params.b);
+            }
+        });
 
-                // Double the point at G[0][u] j*b times
-                result = precomputedPoints[0][u];
-
-                for (int ii = 0; ii < j * b; ii++) {
-                    result = ec.doublePoint(result);
+        FieldPoint[] table = new FieldPoint[(rowSize - 1) * v];
+        IntStream.range(0, v).parallel().forEach(j -> {
+            FieldPoint[] row = precomputedPoints[j];
+            for (int u = 1; u < rowSize; u++) {
+                int top = 31 - Integer.numberOfLeadingZeros(u);
+                FieldPoint entry = ec.newAccumulator();
+                if (u == 1 << top) {
+                    entry.set(g[top][j]);
+                } else {
+                    ec.projectiveAddInto(entry, row[u ^ (1 << top)], g[top][j]);
                 }
-                precomputedPoints[j][u] = result;
-
+                row[u] = entry;
+                table[j * (rowSize - 1) + u - 1] = entry;
             }
-        }
+        });
+
+        // Affine coordinates of the whole table with one inversion
+        ec.normalizeBatch(table);
+        mapped = null;
     }
 
     /**
-     * Calculate Y = e * BP, where BP is a basepoint of the elliptic curve ec.
+     * Calculate Y = e * BP, where BP is the base point of this instance (the
+     * basepoint of the elliptic curve ec unless given otherwise).
      * 
-     * @param e Exponent / scalar
+     * @param e Exponent / scalar, non-negative and at most l bits long
      * @return Point Y
-     * @throws Exception If there's an error in the EC operation and the point
-     *                   generated is not on the curve
+     * @throws IllegalArgumentException If e is negative or longer than l bits
+     * @throws Exception                If there's an error in the EC operation
+     *                                  and the point generated is not on the
+     *                                  curve
      */
     public Point fastPow(BigInteger e) throws Exception {
+        FieldPoint r = ec.newAccumulator();
+        multiply(r, toWords(e));
 
-        // Reset counters
-        onlineSquares = onlineMults = 0;
+        onlineSquares = params.b;
+        onlineMults = params.b * params.v;
+        return ec.storeJacobian(r);
+    }
 
-        // lsb order
-        String eBinary = new StringBuilder(e.toString(2)).reverse().toString();
+    /**
+     * Calculate Y_n = e_n * BP for many exponents at once, in parallel. The
+     * counters of online operations get the totals of the batch.
+     * 
+     * @param exponents Exponents / scalars, non-negative and at most l bits long
+     * @return Points Y_n in the order of the exponents
+     * @throws IllegalArgumentException If an exponent is negative or longer than
+     *                                  l bits
+     * @throws Exception                If there's an error in the EC operation
+     *                                  and the point generated is not on the
+     *                                  curve
+     */
+    public Point[] fastPow(BigInteger[] exponents) throws Exception {
+        // Checked before any work starts
+        long[][] words = new long[exponents.length][];
+        for (int n = 0; n < exponents.length; n++) {
+            words[n] = toWords(exponents[n]);
+        }
+        Point[] results = new Point[exponents.length];
+        IntStream.range(0, exponents.length).parallel().forEach(n -> {
+            FieldPoint r = ec.newAccumulator();
+            multiply(r, words[n]);
+            results[n] = ec.storeJacobian(r);
+        });
 
-        // Neutral element (internet said it's the zero at inf)
-        Point r = ec.getZeroAtInfinity();
+        onlineSquares = params.b * exponents.length;
+        onlineMults = params.b * params.v * exponents.length;
+        return results;
+    }
 
+    /**
+     * Online phase: r = e * BP for the exponent e in words, one doubling per bit
+     * of a subblock and one table addition per subblock, with the digits I_jk
+     * read along the schedule of the parameters. r is Jacobian whatever the
+     * coordinates of BP and the entries of the table have Z = 1, so every
+     * addition is mixed and none of them inverts.
+     */
+    private void multiply(FieldPoint r, long[] words) {
+        int[] schedule = params.schedule();
+        FieldPoint entry = mapped == null ? null : ec.newAccumulator();
+        int n = 0;
         for (int k = params.b - 1; k >= 0; k--) {
+            ec.jacobianDoubleInto(r, r);
 
-            r = ec.doublePoint(r);
-            onlineSquares++;
-
-            // Calculate I_jk
             for (int j = params.v - 1; j >= 0; j--) {
                 int ijk = 0;
-
                 for (int i = 0; i < params.h; i++) {
+                    int bit = schedule[n++];
+                    if (bit >= 0) {
+                        ijk |= (int) (words[bit >>> 6] >>> bit & 1) << i;
+                    }
+                }
+                if (entry == null || ijk == 0) {
+                    ec.jacobianAddMixedInto(r, r, precomputedPoints[j][ijk]);
+                } else {
+                    read(entry, j, ijk);
+                    ec.jacobianAddMixedInto(r, r, entry);
+                }
+            }
+        }
+    }
 
-                    // Read correct bit from block e_ijk
-                    int currentBit = i * params.a + j * params.b;
+    /**
+     * The l bits of e in 64-bit words, least significant first. Bits above the
+     * length of e are 0.
+     * 
+     * @throws IllegalArgumentException if e is negative or longer than l bits
+     */
+    private long[] toWords(BigInteger e) {
+        if (e.signum() < 0 || e.bitLength() > params.l) {
+            throw new IllegalArgumentException("Exponent must be non-negative and at most " + params.l + " bits long");
+        }
+        long[] words = new long[(params.l + 63) / 64];
+        byte[] bytes = e.toByteArray();
+        for (int i = 0; i < bytes.length && i < 8 * words.length; i++) {
+            words[i >>> 3] |= (bytes[bytes.length - 1 - i] & 0xffL) << (8 * (i & 7));
+        }
+        return words;
+    }
 
-                    if (checkIfKExists(i, j, k)) {
-                        currentBit += k;
-                    } else
-                        continue;
+    /**
+     * Write the precomputed points to a file, to be mapped by loadPoints instead
+     * of computing them again. See MAGIC for the format.
+     * 
+     * @param path file to create or overwrite
+     * @throws IOException If writing fails or there is no table to write
+     */
+    public void savePoints(Path path) throws IOException {
+        int limbs = fieldLimbs();
+        FieldPoint entry = ec.newAccumulator();
+        read(entry, 0, 1);
+        if (!isBase(entry)) {
+            throw new IOException("Points not precomputed");
+        }
 
-                    if (currentBit >= eBinary.length()) {
-                        System.out.println("(i:" + i + ",j:" + j + ",k:" + k + ")");
-                    }
+        int rowSize = 1 << params.h;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 8 * entryCount() * 3 * limbs)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(buffer);
+        LongBuffer entries = buffer.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        for (int j = 0; j < params.v; j++) {
+            for (int u = 1; u < rowSize; u++) {
+                read(entry, j, u);
+                entries.put(entry.x).put(entry.y).put(entry.z);
+            }
+        }
 
-                    if (eBinary.charAt(currentBit) == '1') {
-                        ijk += (int) Math.pow(2.0, i);
-                    }
-                }
+        buffer.position(0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
 
-                r = ec.addPoints(r, precomputedPoints[j][ijk]);
-                onlineMults++;
+    /**
+     * Map a file written by savePoints in place of precomputePoints. The entries
+     * stay in the file and fastPow reads them from the mapping, so loading costs
+     * no point operations whatever the size of the table.
+     * 
+     * @param path file written by savePoints
+     * @throws IOException If reading fails or the file was written for another
+     *                     curve, base point, field representation or parameters
+     */
+    public void loadPoints(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
 
-            }
+        ByteBuffer expected = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(expected);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a file of Lim-Lee points");
+        } else if (!buffer.duplicate().limit(HEADER_SIZE).equals(expected.position(0))) {
+            throw new IOException("Points of another curve, base point or parameters");
+        } else if (buffer.capacity() != HEADER_SIZE + 8L * entryCount() * 3 * fieldLimbs()) {
+            throw new IOException("Truncated file of Lim-Lee points");
+        }
 
+        LongBuffer entries = buffer.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        FieldPoint entry = ec.newAccumulator();
+        readEntry(entries, entry, 0, 1);
+        if (!isBase(entry)) {
+            throw new IOException("Points of another base point");
         }
+        mapped = entries;
+    }
+
+    /**
+     * Copy entry u of row j of the table into dst, from the mapped file if there
+     * is one.
+     */
+    private void read(FieldPoint dst, int j, int u) {
+        if (mapped == null) {
+            dst.set(precomputedPoints[j][u]);
+        } else {
+            readEntry(mapped, dst, j, u);
+        }
+    }
 
-        return r;
+    private void readEntry(LongBuffer entries, FieldPoint dst, int j, int u) {
+        int limbs = dst.x.length;
+        int offset = (j * ((1 << params.h) - 1) + u - 1) * 3 * limbs;
+        entries.get(offset, dst.x).get(offset + limbs, dst.y).get(offset + 2 * limbs, dst.z);
+    }
 
+    /**
+     * Check an entry against BP, which is entry 1 of row 0 in every table
+     */
+    private boolean isBase(FieldPoint entry) {
+        FieldPoint bp = ec.newAccumulator();
+        ec.load(bp, base);
+        ec.normalizeBatch(new FieldPoint[] { bp });
+        return Arrays.equals(bp.x, entry.x) && Arrays.equals(bp.y, entry.y) && Arrays.equals(bp.z, entry.z);
     }
 
     /**
-     * Check if a given bit k belongs to a block e_ij
-     * 
-     * @param i Index of a big block
-     * @param j Index of a subblock
-     * @param k Index of specific bit in that subblock
-     * @return true if such bit exists; false if it doesn't
+     * MAGIC, version, fingerprint and parameters, padded to HEADER_SIZE
      */
-    private boolean checkIfKExists(int i, int j, int k) {
-        // length of a last blocks form i = 1 to h - 2
-        int bLast0 = (params.a - (params.v - 1) * params.b);
+    private void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putInt(VERSION).put(fingerprint());
+        buffer.putInt(params.l).putInt(params.a).putInt(params.b).putInt(params.h).putInt(params.v)
+                .putInt(fieldLimbs());
+        buffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * SHA-256 of a, b, p and q of the curve and of BP in the representation of
+     * the field, so a table from a different backend doesn't load either.
+     */
+    private byte[] fingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (BigInteger parameter : new BigInteger[] { ec.getA(), ec.getB(), ec.getP(), ec.getQ() }) {
+                byte[] bytes = parameter.toByteArray();
+                digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+            FieldPoint bp = ec.newAccumulator();
+            ec.load(bp, base);
+            ec.normalizeBatch(new FieldPoint[] { bp });
+            ByteBuffer limbs = ByteBuffer.allocate(8 * 3 * bp.x.length).order(ByteOrder.LITTLE_ENDIAN);
+            limbs.asLongBuffer().put(bp.x).put(bp.y).put(bp.z);
+            digest.update(limbs);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int fieldLimbs() {
+        return ec.newAccumulator().x.length;
+    }
 
-        return (i < params.h - 1 && (j < params.v - 1 || (j == params.v - 1 && k <= bLast0 - 1)))
-                || (i == params.h - 1 && (j < params.vLast - 1 || (j == params.vLast - 1 && k <= params.bLast - 1)));
+    private int entryCount() {
+        return params.v * ((1 << params.h) - 1);
     }
 
 }
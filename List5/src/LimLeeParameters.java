@@ -1,17 +1,21 @@
 import java.math.BigInteger;
 
 public class LimLeeParameters {
-    public int a;
-    public int b;
-    public int l;
-    public int h;
-    public int v;
-    public int aLast;
-    public int bLast;
-    public int vLast;
-    public BigInteger storage;
-    public BigInteger squarings;
-    public BigInteger multiplications;
+    public final int a;
+    public final int b;
+    public final int l;
+    public final int h;
+    public final int v;
+    public final int aLast;
+    public final int bLast;
+    public final int vLast;
+    public final BigInteger storage;
+    public final BigInteger squarings;
+    public final BigInteger multiplications;
+
+    // Bits of the exponent read by the online phase, built on first use; the
+    // parameters are final so it can't go stale
+    private int[] schedule;
 
     /**
      * Create an instance of Lim-Lee parameters. Calculate all necessary parameters
@@ -75,4 +79,74 @@ public class LimLeeParameters {
         return firstParentheses.add(secondParentheses.multiply(thirdParentheses));
     }
 
+    /**
+     * Positions of the exponent bits read by the online phase of Lim-Lee, in its
+     * order: k from b - 1 down to 0, then j from v - 1 down to 0, then i from 0
+     * to h - 1. Bit i of the digit I_jk is the bit of the exponent at the
+     * position in the schedule, -1 marks the bits missing from short last blocks.
+     * Built once and shared by every table with these parameters.
+     * 
+     * @return schedule of b * v * h positions
+     */
+    public synchronized int[] schedule() {
+        if (schedule == null) {
+            int[] positions = new int[b * v * h];
+            int n = 0;
+            for (int k = b - 1; k >= 0; k--) {
+                for (int j = v - 1; j >= 0; j--) {
+                    for (int i = 0; i < h; i++) {
+                        positions[n++] = hasBit(i, j, k) ? i * a + j * b + k : -1;
+                    }
+                }
+            }
+            schedule = positions;
+        }
+        return schedule;
+    }
+
+    /**
+     * Check if a given bit k belongs to a block e_ij
+     * 
+     * @param i Index of a big block
+     * @param j Index of a subblock
+     * @param k Index of specific bit in that subblock
+     * @return true if such bit exists; false if it doesn't
+     */
+    private boolean hasBit(int i, int j, int k) {
+        // length of a last blocks form i = 1 to h - 2
+        int bLast0 = (a - (v - 1) * b);
+
+        return (i < h - 1 && (j < v - 1 || (j == v - 1 && k <= bLast0 - 1)))
+                || (i == h - 1 && (j < vLast - 1 || (j == vLast - 1 && k <= bLast - 1)));
+    }
+
+    /**
+     * Find a, b with the lowest number of operations for exponents of length l
+     * whose storage doesn't exceed the bound.
+     * 
+     * @param l Bit length of the exponent
+     * @param S Storage bound
+     * @return optimal parameters, null if none fit in S
+     */
+    public static LimLeeParameters optimal(int l, int S) {
+        LimLeeParameters best = null;
+        BigInteger bestOps = null;
+        BigInteger bound = BigInteger.valueOf(S);
+
+        for (int a = 1; a <= l; a++) {
+            for (int b = 1; b <= a; b++) {
+                LimLeeParameters test = new LimLeeParameters(a, b, l);
+                if (test.storage.compareTo(bound) > 0) {
+                    continue;
+                }
+                BigInteger ops = test.squarings.add(test.multiplications);
+                if (best == null || ops.compareTo(bestOps) < 0) {
+                    best = test;
+                    bestOps = ops;
+                }
+            }
+        }
+        return best;
+    }
+
 }
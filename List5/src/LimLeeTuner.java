@@ -0,0 +1,267 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Choice of Lim-Lee parameters from the measured costs of the online phase on
+ * a given curve and base point, instead of counting squarings and
+ * multiplications as equal. fastPow does b Jacobian doublings and one mixed
+ * addition per subblock, and a digit I_jk = 0 adds zero at infinity for free;
+ * both operations are timed once per tuner. The
+ * table is bounded by a budget in bytes, so it can be sized to a cache level.
+ */
+public class LimLeeTuner {
+
+    // Rounds of measurement and time spent on every operation in a round, in
+    // nanoseconds
+    private static final int ROUNDS = 6;
+    private static final long MEASURE_TIME = 2_000_000;
+    // Most operations between two reads of the clock
+    private static final int BATCH = 64;
+    // Exponents per candidate and rounds of the benchmark
+    private static final int BENCHMARK_EXPONENTS = 16;
+    private static final int BENCHMARK_ROUNDS = 3;
+    // Heap taken by a FieldPoint besides its limbs: the object and the headers
+    // of its three arrays
+    private static final int POINT_OVERHEAD = 32 + 3 * 16;
+
+    private final EllipticCurve ec;
+    private final Point base;
+    private final double doublingTime;
+    private final double additionTime;
+    private final int entryBytes;
+
+    /**
+     * Tuner for tables of the basepoint of a curve
+     *
+     * @param ec Elliptic curve for the operations
+     */
+    public LimLeeTuner(EllipticCurve ec) {
+        this(ec, ec.getBasepoint());
+    }
+
+    /**
+     * Main constructor of class, measures the operations of fastPow
+     *
+     * @param ec   Elliptic curve for the operations
+     * @param base Point multiplied by fastPow, affine or in the coordinates of
+     *             the basepoint
+     */
+    public LimLeeTuner(EllipticCurve ec, Point base) {
+        this.ec = ec;
+        this.base = base;
+
+        // entry is 2 * BP with Z = 1 like the entries of a table, r walks
+        // through its multiples in Jacobian coordinates
+        FieldPoint entry = ec.newAccumulator();
+        ec.load(entry, base);
+        ec.projectiveDoubleInto(entry, entry);
+        ec.normalizeBatch(new FieldPoint[] { entry });
+        FieldPoint r = ec.newAccumulator();
+        ec.jacobianDoubleInto(r, entry);
+
+        double doubling = Double.MAX_VALUE;
+        double addition = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            doubling = Math.min(doubling, time(r, entry, false));
+            addition = Math.min(addition, time(r, entry, true));
+        }
+        doublingTime = doubling;
+        additionTime = addition;
+        entryBytes = entryBytes(r.x.length);
+    }
+
+    /**
+     * Average time of a Jacobian doubling or mixed addition run for
+     * MEASURE_TIME, in batches growing up to BATCH
+     */
+    private double time(FieldPoint r, FieldPoint entry, boolean add) {
+        long count = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batch; i++) {
+                if (add) {
+                    ec.jacobianAddMixedInto(r, r, entry);
+                } else {
+                    ec.jacobianDoubleInto(r, r);
+                }
+            }
+            count += batch;
+            batch = Math.min(2 * batch, BATCH);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_TIME);
+        return Math.max((double) elapsed / count, 1e-3);
+    }
+
+    /**
+     * Get measured time of a doubling
+     *
+     * @return nanoseconds per jacobianDoubleInto
+     */
+    public double getDoublingTime() {
+        return doublingTime;
+    }
+
+    /**
+     * Get measured time of a table addition
+     *
+     * @return nanoseconds per jacobianAddMixedInto
+     */
+    public double getAdditionTime() {
+        return additionTime;
+    }
+
+    /**
+     * Get heap taken by one entry of a table
+     *
+     * @return bytes per precomputed point
+     */
+    public int getEntryBytes() {
+        return entryBytes;
+    }
+
+    /**
+     * Heap taken by one entry of a table in a field of a given size
+     *
+     * @param limbs words of a field element
+     * @return bytes per precomputed point
+     */
+    public static int entryBytes(int limbs) {
+        return POINT_OVERHEAD + 3 * 8 * limbs;
+    }
+
+    /**
+     * Number of points a LimLee table with given parameters holds, v rows of
+     * 2^h - 1 points
+     *
+     * @param params Lim-Lee parameters
+     * @return entries of the table
+     */
+    public static long tableSize(LimLeeParameters params) {
+        return params.v * ((1L << params.h) - 1);
+    }
+
+    /**
+     * Expected time of fastPow for a random exponent: b - 1 doublings (the first
+     * one doubles zero at infinity) and an addition for every subblock whose
+     * digit isn't 0, which happens with probability 1 - 2^-m for a digit of m
+     * bits. The conversion of the result is the same for all parameters and
+     * left out.
+     *
+     * @param params Lim-Lee parameters
+     * @return nanoseconds per fastPow
+     */
+    public double predictedTime(LimLeeParameters params) {
+        int[] schedule = params.schedule();
+        double additions = 0;
+        for (int n = 0; n < schedule.length; n += params.h) {
+            int bits = 0;
+            for (int i = 0; i < params.h; i++) {
+                if (schedule[n + i] >= 0) {
+                    bits++;
+                }
+            }
+            additions += 1 - Math.pow(2, -bits);
+        }
+        return (params.b - 1) * doublingTime + additions * additionTime;
+    }
+
+    /**
+     * Parameters with the lowest predicted time whose table fits in a budget.
+     *
+     * @param l      Bit length of the exponent
+     * @param budget Bytes the table may take
+     * @return best parameters, null if no table fits
+     */
+    public LimLeeParameters tune(int l, long budget) {
+        List<LimLeeParameters> ranked = candidates(l, budget);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    /**
+     * Parameters whose table fits in a budget, picked by running fastPow with
+     * the best predicted ones. Tables of all benchmarked candidates are built
+     * and kept at the same time, so the rounds can alternate between them.
+     *
+     * @param l          Bit length of the exponent
+     * @param budget     Bytes the table may take
+     * @param benchmarks Number of best predicted candidates to benchmark
+     * @return fastest parameters, null if no table fits
+     * @throws Exception If there's an error in the EC operation and the point
+     *                   generated is not on the curve
+     */
+    public LimLeeParameters tune(int l, long budget, int benchmarks) throws Exception {
+        List<LimLeeParameters> ranked = candidates(l, budget);
+        int n = Math.min(benchmarks, ranked.size());
+        if (n <= 1) {
+            return ranked.isEmpty() ? null : ranked.get(0);
+        }
+
+        LimLee[] tables = new LimLee[n];
+        for (int c = 0; c < n; c++) {
+            tables[c] = new LimLee(ranked.get(c), ec, base);
+            tables[c].precomputePoints();
+        }
+        Random random = new Random(l);
+        BigInteger[] exponents = new BigInteger[BENCHMARK_EXPONENTS];
+        for (int i = 0; i < exponents.length; i++) {
+            exponents[i] = new BigInteger(l, random);
+        }
+
+        // Round 0 warms up the JIT and doesn't count
+        long[] best = new long[n];
+        for (int round = 0; round <= BENCHMARK_ROUNDS; round++) {
+            for (int c = 0; c < n; c++) {
+                long start = System.nanoTime();
+                for (BigInteger e : exponents) {
+                    tables[c].fastPow(e);
+                }
+                long elapsed = System.nanoTime() - start;
+                if (round == 1 || (round > 1 && elapsed < best[c])) {
+                    best[c] = elapsed;
+                }
+            }
+        }
+
+        int fastest = 0;
+        for (int c = 1; c < n; c++) {
+            if (best[c] < best[fastest]) {
+                fastest = c;
+            }
+        }
+        return ranked.get(fastest);
+    }
+
+    /**
+     * Parameters whose table fits in a budget, by increasing predicted time. For
+     * a number of big blocks h only the shortest a = ceil(l/h) is tried, longer
+     * blocks just add bits; for a number of subblocks v only the shortest b =
+     * ceil(a/v), a longer one just adds doublings. That leaves a few hundred of
+     * the l^2 / 2 pairs (a, b).
+     */
+    private List<LimLeeParameters> candidates(int l, long budget) {
+        long entries = budget / entryBytes;
+        List<LimLeeParameters> candidates = new ArrayList<LimLeeParameters>();
+        Set<Long> seen = new HashSet<Long>();
+
+        for (int h = 1; h <= l && (1L << h) - 1 <= entries; h++) {
+            int a = (l + h - 1) / h;
+            for (int v = 1; v <= a && v <= entries / ((1L << h) - 1); v++) {
+                int b = (a + v - 1) / v;
+                if (seen.add(((long) a << 32) | b)) {
+                    candidates.add(new LimLeeParameters(a, b, l));
+                }
+            }
+        }
+
+        candidates.sort(Comparator.comparingDouble(this::predictedTime));
+        return candidates;
+    }
+
+}
@@ -0,0 +1,188 @@
+import java.math.BigInteger;
+
+/**
+ * Generic prime field backend keeping elements in Montgomery form a*R (mod p),
+ * where R = 2^(32n) and n is the number of 32-bit limbs needed for p.
+ * Multiplication uses the CIOS variant of Montgomery reduction, so no division
+ * is ever done outside of conversions.
+ */
+public class MontgomeryField extends PrimeField {
+
+    private static final long MASK = 0xFFFFFFFFL;
+
+    // p split into 32-bit limbs
+    private final long[] pLimbs;
+    // -p^-1 mod 2^32
+    private final long pInv;
+    // R mod p (1 in Montgomery form)
+    private final long[] rModP;
+    // R^2 mod p, used to convert into Montgomery form
+    private final long[] r2ModP;
+
+    /**
+     * Main constructor of class
+     *
+     * @param p Size of finite field, odd prime
+     */
+    public MontgomeryField(BigInteger p) {
+        super(p, (p.bitLength() + 31) / 32);
+
+        pLimbs = new long[limbs];
+        toLimbs(p, pLimbs, 32);
+
+        BigInteger wordSize = BigInteger.ONE.shiftLeft(32);
+        pInv = p.modInverse(wordSize).negate().mod(wordSize).longValue();
+
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * limbs);
+        rModP = newElement();
+        toLimbs(r.mod(p), rModP, 32);
+        r2ModP = newElement();
+        toLimbs(r.multiply(r).mod(p), r2ModP, 32);
+    }
+
+    @Override
+    public void set(long[] r, BigInteger x) {
+        long[] plain = newElement();
+        toLimbs(x.mod(p), plain, 32);
+        // x * R^2 * R^-1 = x * R
+        multiply(r, plain, r2ModP);
+    }
+
+    @Override
+    public BigInteger fromField(long[] a) {
+        long[] plain = newElement();
+        long[] unit = newElement();
+        unit[0] = 1;
+        // a * R * 1 * R^-1 = a
+        multiply(plain, a, unit);
+        return fromLimbs(plain, 32);
+    }
+
+    @Override
+    public void add(long[] r, long[] a, long[] b) {
+        long carry = 0;
+        for (int i = 0; i < limbs; i++) {
+            long s = a[i] + b[i] + carry;
+            r[i] = s & MASK;
+            carry = s >>> 32;
+        }
+        if (carry != 0 || compareToP(r) >= 0) {
+            subtractP(r);
+        }
+    }
+
+    @Override
+    public void subtract(long[] r, long[] a, long[] b) {
+        long borrow = 0;
+        for (int i = 0; i < limbs; i++) {
+            long s = a[i] - b[i] - borrow;
+            r[i] = s & MASK;
+            borrow = (s >>> 63);
+        }
+        if (borrow != 0) {
+            // Went below zero, add p back
+            long carry = 0;
+            for (int i = 0; i < limbs; i++) {
+                long s = r[i] + pLimbs[i] + carry;
+                r[i] = s & MASK;
+                carry = s >>> 32;
+            }
+        }
+    }
+
+    @Override
+    public void multiply(long[] r, long[] a, long[] b) {
+        int n = limbs;
+        // r serves as the low n words of the accumulator t, top two words are kept
+        // in locals
+        for (int j = 0; j < n; j++) {
+            r[j] = 0;
+        }
+        long tN = 0;
+
+        for (int i = 0; i < n; i++) {
+            // t = t + a * b_i
+            long bi = b[i];
+            long c = 0;
+            for (int j = 0; j < n; j++) {
+                long s = r[j] + a[j] * bi + c;
+                r[j] = s & MASK;
+                c = s >>> 32;
+            }
+            long s = tN + c;
+            tN = s & MASK;
+            long tN1 = s >>> 32;
+
+            // t = (t + m * p) / 2^32, where m makes the lowest word zero
+            long m = (r[0] * pInv) & MASK;
+            s = r[0] + m * pLimbs[0];
+            c = s >>> 32;
+            for (int j = 1; j < n; j++) {
+                s = r[j] + m * pLimbs[j] + c;
+                r[j - 1] = s & MASK;
+                c = s >>> 32;
+            }
+            s = tN + c;
+            r[n - 1] = s & MASK;
+            tN = tN1 + (s >>> 32);
+        }
+
+        // t < 2p, so one subtraction is enough
+        if (tN != 0 || compareToP(r) >= 0) {
+            subtractP(r);
+        }
+    }
+
+    @Override
+    public boolean isZero(long[] a) {
+        for (int i = 0; i < limbs; i++) {
+            if (a[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean areEqual(long[] a, long[] b) {
+        for (int i = 0; i < limbs; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long[] one() {
+        return rModP.clone();
+    }
+
+    /**
+     * Compare a number in limbs with p
+     *
+     * @param a limbs of a number
+     * @return -1, 0 or 1 as a is less than, equal to or greater than p
+     */
+    private int compareToP(long[] a) {
+        for (int i = limbs - 1; i >= 0; i--) {
+            if (a[i] != pLimbs[i]) {
+                return a[i] < pLimbs[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * r = r - p, dropping the borrow out of the top limb
+     */
+    private void subtractP(long[] r) {
+        long borrow = 0;
+        for (int i = 0; i < limbs; i++) {
+            long s = r[i] - pLimbs[i] - borrow;
+            r[i] = s & MASK;
+            borrow = (s >>> 63);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+import java.math.BigInteger;
+
+/**
+ * Prime field backend specialized for the NIST P-521 prime p = 2^521 - 1.
+ * Elements are kept fully reduced in 18 limbs of 29 bits. Since
+ * 2^522 = 2 (mod p) a product is reduced by folding its upper half onto the
+ * lower one with a shift, no division or Montgomery reduction is needed.
+ */
+public class P521Field extends PrimeField {
+
+    /**
+     * The Mersenne prime 2^521 - 1
+     */
+    public static final BigInteger P521 = BigInteger.ONE.shiftLeft(521).subtract(BigInteger.ONE);
+
+    private static final int LIMBS = 18;
+    private static final int BITS = 29;
+    private static final long MASK = (1L << BITS) - 1;
+    // Limb 17 holds bits 493..521, bit 521 is its bit 28
+    private static final long TOP_MASK = (1L << 28) - 1;
+    // 4p with every limb above 2^29, so subtraction never goes below zero
+    private static final long FOUR_P_LOW = (1L << 30) - 4;
+    private static final long FOUR_P = (1L << 30) - 2;
+
+    public P521Field() {
+        super(P521, LIMBS);
+    }
+
+    @Override
+    public void set(long[] r, BigInteger x) {
+        toLimbs(x.mod(p), r, BITS);
+    }
+
+    @Override
+    public BigInteger fromField(long[] a) {
+        return fromLimbs(a, BITS);
+    }
+
+    @Override
+    public void add(long[] r, long[] a, long[] b) {
+        for (int i = 0; i < LIMBS; i++) {
+            r[i] = a[i] + b[i];
+        }
+        reduce(r);
+    }
+
+    @Override
+    public void subtract(long[] r, long[] a, long[] b) {
+        r[0] = a[0] + FOUR_P_LOW - b[0];
+        for (int i = 1; i < LIMBS; i++) {
+            r[i] = a[i] + FOUR_P - b[i];
+        }
+        reduce(r);
+    }
+
+    @Override
+    public void multiply(long[] r, long[] a, long[] b) {
+        // Column k collects a_i * b_j for i + j = k and, folded with 2^522 = 2,
+        // twice a_i * b_j for i + j = k + 18. At most 35 products below 2^58,
+        // so the sum fits in an unsigned long.
+        for (int k = 0; k < LIMBS; k++) {
+            long low = 0;
+            for (int i = 0; i <= k; i++) {
+                low += a[i] * b[k - i];
+            }
+            long high = 0;
+            for (int i = k + 1; i < LIMBS; i++) {
+                high += a[i] * b[k + LIMBS - i];
+            }
+            r[k] = low + (high << 1);
+        }
+        reduce(r);
+    }
+
+    @Override
+    public void square(long[] r, long[] a) {
+        // Same columns as in multiply, but every product a_i * a_j with i != j is
+        // computed once and doubled
+        for (int k = 0; k < LIMBS; k++) {
+            long low = 0;
+            for (int i = 0, j = k; i < j; i++, j--) {
+                low += a[i] * a[j];
+            }
+            low <<= 1;
+            if ((k & 1) == 0) {
+                low += a[k >> 1] * a[k >> 1];
+            }
+
+            long high = 0;
+            for (int i = k + 1, j = LIMBS - 1; i < j; i++, j--) {
+                high += a[i] * a[j];
+            }
+            high <<= 1;
+            if ((k & 1) == 0 && k < LIMBS - 1) {
+                int m = (k + LIMBS) >> 1;
+                high += a[m] * a[m];
+            }
+            r[k] = low + (high << 1);
+        }
+        reduce(r);
+    }
+
+    @Override
+    public boolean isZero(long[] a) {
+        for (int i = 0; i < LIMBS; i++) {
+            if (a[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean areEqual(long[] a, long[] b) {
+        for (int i = 0; i < LIMBS; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bring limbs holding unsigned values back to 29 bits each and the whole
+     * number to [0, p).
+     *
+     * @param r limbs to reduce in place
+     */
+    private static void reduce(long[] r) {
+        // Carry propagation, carry out of the top limb is worth 2^522 = 2
+        long c = 0;
+        do {
+            for (int i = 0; i < LIMBS; i++) {
+                long v = r[i] + c;
+                r[i] = v & MASK;
+                c = v >>> BITS;
+            }
+            c <<= 1;
+        } while (c != 0);
+
+        // r < 2^522, while r >= 2^521 replace it with r - p = r - 2^521 + 1
+        while ((r[LIMBS - 1] >>> 28) != 0) {
+            r[LIMBS - 1] &= TOP_MASK;
+            c = 1;
+            for (int i = 0; i < LIMBS && c != 0; i++) {
+                long v = r[i] + c;
+                r[i] = v & MASK;
+                c = v >>> BITS;
+            }
+        }
+
+        // r = p is the only remaining non-canonical value
+        if (r[LIMBS - 1] == TOP_MASK) {
+            for (int i = 0; i < LIMBS - 1; i++) {
+                if (r[i] != MASK) {
+                    return;
+                }
+            }
+            for (int i = 0; i < LIMBS; i++) {
+                r[i] = 0;
+            }
+        }
+    }
+
+}
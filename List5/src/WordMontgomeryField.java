@@ -0,0 +1,67 @@
+import java.math.BigInteger;
+
+/**
+ * Prime field backend for p < 2^62. Every element is a single limb holding the
+ * Montgomery form from WordField, so multiplication is one Math.multiplyHigh
+ * based reduction instead of a loop over 32-bit limbs.
+ */
+public class WordMontgomeryField extends PrimeField {
+
+    private final WordField word;
+
+    /**
+     * Main constructor of class
+     *
+     * @param p Size of finite field, odd prime below 2^62
+     */
+    public WordMontgomeryField(BigInteger p) {
+        super(p, 1);
+        word = new WordField(p);
+    }
+
+    @Override
+    public void set(long[] r, BigInteger x) {
+        r[0] = word.toField(x);
+    }
+
+    @Override
+    public BigInteger fromField(long[] a) {
+        return BigInteger.valueOf(word.fromField(a[0]));
+    }
+
+    @Override
+    public void add(long[] r, long[] a, long[] b) {
+        r[0] = word.add(a[0], b[0]);
+    }
+
+    @Override
+    public void subtract(long[] r, long[] a, long[] b) {
+        r[0] = word.subtract(a[0], b[0]);
+    }
+
+    @Override
+    public void multiply(long[] r, long[] a, long[] b) {
+        r[0] = word.multiply(a[0], b[0]);
+    }
+
+    @Override
+    public void invert(long[] r, long[] a) {
+        r[0] = word.invert(a[0]);
+    }
+
+    @Override
+    public boolean isZero(long[] a) {
+        return a[0] == 0;
+    }
+
+    @Override
+    public boolean areEqual(long[] a, long[] b) {
+        return a[0] == b[0];
+    }
+
+    @Override
+    public long[] one() {
+        return new long[] { word.one() };
+    }
+
+}
@@ -1,4 +1,11 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Scanner;
@@ -13,6 +20,10 @@ public class App {
             new BigInteger("829561"), new BigInteger("830513"),
             new JacobianPoint(new BigInteger("555159"), new BigInteger("373454"), BigInteger.ONE));
 
+    // Attack mode, "attack [traces] [file]"; without a file the traces go to a
+    // temporary one deleted after the analysis
+    private final static long TRACES = 1000000;
+
     public static void main(String[] args) throws Exception {
 
         // Assert that p mod 12 == 1
@@ -23,23 +34,31 @@ public class App {
 
         SecureRandom random = new SecureRandom();
 
-        System.out.println("test / attack");
+        System.out.println("test / attack [traces] [file]");
         Scanner in = new Scanner(System.in);
-        String input = in.nextLine();
+        String[] words = in.nextLine().trim().split("\\s+");
         in.close();
+        String input = words[0];
 
         switch (input) {
             // Test correctness of double-and-add method and Jacobian coordinates operations
             case "test": {
                 int correctAnswers = 0;
+                ArrayList<Point> resultsA = new ArrayList<Point>();
+                ArrayList<Point> resultsJ = new ArrayList<Point>();
                 for (int i = 0; i < 100; i++) {
                     BigInteger k = BigInteger.valueOf(random.nextLong(2, TEST_CURVE.getQ().longValue()));
-                    ArrayList<Point> intermediateA = TEST_CURVE.doubleAndAdd(k,
-                            TEST_CURVE.toAffine(TEST_CURVE.getBasepoint()));
-                    ArrayList<Point> intermediateJ = TEST_CURVE.doubleAndAdd(k, TEST_CURVE.getBasepoint());
-                    AffinePoint bigPA = (AffinePoint) intermediateA.get(intermediateA.size() - 1);
-                    JacobianPoint bigPJ = (JacobianPoint) intermediateJ.get(intermediateJ.size() - 1);
-                    AffinePoint bigPJConverted = TEST_CURVE.toAffine(bigPJ);
+                    // Only the results are compared, so no intermediate points are kept
+                    resultsA.add(TEST_CURVE.doubleAndAdd(k, TEST_CURVE.toAffine(TEST_CURVE.getBasepoint()), null));
+                    resultsJ.add(TEST_CURVE.doubleAndAdd(k, TEST_CURVE.getBasepoint(), null));
+                }
+
+                // Convert all Jacobian results with a single inversion
+                ArrayList<AffinePoint> resultsJConverted = TEST_CURVE.toAffineBatch(resultsJ);
+                for (int i = 0; i < 100; i++) {
+                    AffinePoint bigPA = (AffinePoint) resultsA.get(i);
+                    JacobianPoint bigPJ = (JacobianPoint) resultsJ.get(i);
+                    AffinePoint bigPJConverted = resultsJConverted.get(i);
 
                     System.out.println("Affine: " + bigPA.toString() + "; Jacobian: " + bigPJ.toString()
                             + "; Converted to affine: " + bigPJConverted.toString());
@@ -53,9 +72,36 @@ public class App {
                 break;
             }
             case "attack": {
-                // TODO implement someday
-                // Generate with uniform distribution k value from [2, TEST_CURVE.Q - 1]
-                int k = random.nextInt(2, TEST_CURVE.getQ().intValue());
+                long count = words.length > 1 ? Long.parseLong(words[1]) : TRACES;
+                boolean temporary = words.length < 3;
+                Path file = temporary ? Files.createTempFile("traces", ".bin") : Paths.get(words[2]);
+                TraceAnalyzer analyzer = new TraceAnalyzer();
+
+                try {
+                    // Generate traces of k * G for k uniform in [2, TEST_CURVE.Q - 1] on all cores
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    TraceGenerator generator = new TraceGenerator(TEST_CURVE, TEST_CURVE.getBasepoint(), threads);
+                    long start = System.currentTimeMillis();
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                        generator.generate(count, out);
+                    }
+                    System.out.println("Generated " + count + " traces on " + threads + " threads in "
+                            + (System.currentTimeMillis() - start) + "ms");
+
+                    // Recover k from the recorded operations
+                    start = System.currentTimeMillis();
+                    try (InputStream traces = new BufferedInputStream(Files.newInputStream(file))) {
+                        analyzer.analyze(traces);
+                    }
+                    System.out.println("Analyzed " + analyzer.getTraces() + " traces in "
+                            + (System.currentTimeMillis() - start) + "ms");
+                } finally {
+                    if (temporary) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                System.out.println("Scalars recovered: " + analyzer.getRecovered());
+                System.out.println("Bits recovered: " + analyzer.getBitAccuracy() * 100 + "%");
                 break;
             }
             default: {
@@ -0,0 +1,263 @@
+import java.math.BigInteger;
+
+/**
+ * Chudnovsky coordinates (X : Y : Z : Z^2 : Z^3), Jacobian coordinates that
+ * keep the powers of Z in FieldPoint.u and FieldPoint.v. Addition reads them
+ * instead of computing them for both operands, 11M + 3S instead of 11M + 5S,
+ * and doubling pays 1M + 1S to update them, so they suit addition-heavy
+ * workloads. Points without the cached powers (affine inputs, normalized
+ * tables) are accepted and the powers are computed on the fly.
+ */
+public class ChudnovskyCoordinates extends JacobianCoordinates {
+
+    private final ChudnovskyPoint infinity = new ChudnovskyPoint(BigInteger.ZERO, BigInteger.ONE, BigInteger.ZERO,
+            BigInteger.ZERO, BigInteger.ZERO);
+
+    /**
+     * Main constructor of class
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a of the curve, already in field
+     */
+    public ChudnovskyCoordinates(PrimeField field, long[] fieldA) {
+        super(field, fieldA);
+    }
+
+    @Override
+    public boolean owns(Point pp) {
+        return pp instanceof ChudnovskyPoint;
+    }
+
+    @Override
+    public Point infinity() {
+        return infinity;
+    }
+
+    @Override
+    public FieldPoint toFieldPoint(Point pp) {
+        ChudnovskyPoint ppp = (ChudnovskyPoint) pp;
+        FieldPoint fp = new FieldPoint(field.toField(ppp.x), field.toField(ppp.y), field.toField(ppp.z));
+        fp.u = field.toField(ppp.zz);
+        fp.v = field.toField(ppp.zzz);
+        return fp;
+    }
+
+    @Override
+    public Point fromFieldPoint(FieldPoint fp) {
+        if (field.isZero(fp.z)) {
+            return infinity;
+        }
+        long[] zz = field.newElement();
+        long[] zzz = field.newElement();
+        field.copy(zz, squareOfZ(fp, zz));
+        field.copy(zzz, cubeOfZ(fp, zz, zzz));
+        return new ChudnovskyPoint(field.fromField(fp.x), field.fromField(fp.y), field.fromField(fp.z),
+                field.fromField(zz), field.fromField(zzz));
+    }
+
+    /**
+     * Chudnovsky addition. Operands with Z = 1 take the mixed formula.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        if (field.areEqual(qq.z, fieldOne)) {
+            addMixed(dst, pp, qq, t);
+        } else if (field.areEqual(pp.z, fieldOne)) {
+            addMixed(dst, qq, pp, t);
+        } else {
+            add(dst, pp, qq, t);
+        }
+    }
+
+    /**
+     * General Chudnovsky addition, 11M + 3S with the powers of Z cached.
+     */
+    private void add(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        long[] Z1Z1 = squareOfZ(pp, t[0]), Z1Z1Z1 = cubeOfZ(pp, Z1Z1, t[1]);
+        long[] Z2Z2 = squareOfZ(qq, t[2]), Z2Z2Z2 = cubeOfZ(qq, Z2Z2, t[3]);
+        long[] U1 = t[4], U2 = t[5], S1 = t[6], S2 = t[7];
+        // U1 = pp.x * qq.z^2, U2 = qq.x * pp.z^2
+        field.multiply(U1, pp.x, Z2Z2);
+        field.multiply(U2, qq.x, Z1Z1);
+        // S1 = pp.y * qq.z^3, S2 = qq.y * pp.z^3
+        field.multiply(S1, pp.y, Z2Z2Z2);
+        field.multiply(S2, qq.y, Z1Z1Z1);
+
+        // If U1 = U2 result is zero at infinity or if S1 = S2 do doubling
+        if (field.areEqual(U1, U2)) {
+            if (field.areEqual(S1, S2)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        // The powers of Z are used up, t[0..3] are free again
+        long[] H = t[8], R = t[9], HH = t[10], HHH = t[11], U1HH = t[12], tmp = t[0];
+        long[] x3 = t[13], y3 = t[14], z3 = t[15];
+        // H = U2 - U1
+        field.subtract(H, U2, U1);
+        // R = S2 - S1
+        field.subtract(R, S2, S1);
+        field.square(HH, H);
+        field.multiply(HHH, HH, H);
+        field.multiply(U1HH, U1, HH);
+        // x3 = R^2 - H^3 - 2U1H^2
+        field.square(x3, R);
+        field.subtract(x3, x3, HHH);
+        field.subtract(x3, x3, U1HH);
+        field.subtract(x3, x3, U1HH);
+        // y3 = R(U1H^2 - x3) - S1H^3
+        field.subtract(tmp, U1HH, x3);
+        field.multiply(y3, R, tmp);
+        field.multiply(tmp, S1, HHH);
+        field.subtract(y3, y3, tmp);
+        // z3 = H * pp.z * qq.z
+        field.multiply(tmp, H, pp.z);
+        field.multiply(z3, tmp, qq.z);
+
+        store(dst, x3, y3, z3);
+    }
+
+    /**
+     * Mixed Chudnovsky-affine addition, qq has to have Z = 1 or be zero at
+     * infinity. 8M + 3S with the powers of pp.z cached.
+     */
+    @Override
+    public void addMixed(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        long[] Z1Z1 = squareOfZ(pp, t[0]), Z1Z1Z1 = cubeOfZ(pp, Z1Z1, t[1]);
+        long[] U2 = t[2], S2 = t[3], H = t[4], R = t[5];
+        // U2 = qq.x * pp.z^2, S2 = qq.y * pp.z^3
+        field.multiply(U2, qq.x, Z1Z1);
+        field.multiply(S2, qq.y, Z1Z1Z1);
+        // H = U2 - pp.x, R = S2 - pp.y
+        field.subtract(H, U2, pp.x);
+        field.subtract(R, S2, pp.y);
+
+        // If H = 0 result is zero at infinity or if R = 0 do doubling
+        if (field.isZero(H)) {
+            if (field.isZero(R)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        long[] HH = t[6], HHH = t[7], V = t[8], tmp = t[9];
+        long[] x3 = t[10], y3 = t[11], z3 = t[12];
+        field.square(HH, H);
+        field.multiply(HHH, HH, H);
+        // V = pp.x * H^2
+        field.multiply(V, pp.x, HH);
+        // x3 = R^2 - H^3 - 2V
+        field.square(x3, R);
+        field.subtract(x3, x3, HHH);
+        field.subtract(x3, x3, V);
+        field.subtract(x3, x3, V);
+        // y3 = R(V - x3) - pp.y * H^3
+        field.subtract(tmp, V, x3);
+        field.multiply(y3, R, tmp);
+        field.multiply(tmp, pp.y, HHH);
+        field.subtract(y3, y3, tmp);
+        // z3 = pp.z * H
+        field.multiply(z3, pp.z, H);
+
+        store(dst, x3, y3, z3);
+    }
+
+    @Override
+    public double additionCost(CostProfile costs) {
+        return costs.cost(11, 3, 0);
+    }
+
+    @Override
+    public double mixedAdditionCost(CostProfile costs) {
+        return costs.cost(8, 3, 0);
+    }
+
+    /**
+     * Jacobian doubling and 1M + 1S for the powers
+     */
+    @Override
+    public double doublingCost(CostProfile costs) {
+        return super.doublingCost(costs) + costs.cost(1, 1, 0);
+    }
+
+    /**
+     * Jacobian doubling, then the powers of the new Z.
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        super.doubleInto(dst, pp, t);
+        if (!field.isZero(dst.z)) {
+            updatePowers(dst);
+        }
+    }
+
+    /**
+     * Write the result and the powers of its Z into dst
+     */
+    private void store(FieldPoint dst, long[] x3, long[] y3, long[] z3) {
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+        updatePowers(dst);
+    }
+
+    /**
+     * dst.u = dst.z^2, dst.v = dst.z^3
+     */
+    private void updatePowers(FieldPoint dst) {
+        if (dst.u == null) {
+            dst.u = field.newElement();
+        }
+        if (dst.v == null) {
+            dst.v = field.newElement();
+        }
+        field.square(dst.u, dst.z);
+        field.multiply(dst.v, dst.u, dst.z);
+    }
+
+    /**
+     * Z^2 of pp, cached or computed into tmp
+     */
+    private long[] squareOfZ(FieldPoint pp, long[] tmp) {
+        if (pp.u != null) {
+            return pp.u;
+        }
+        field.square(tmp, pp.z);
+        return tmp;
+    }
+
+    /**
+     * Z^3 of pp, cached or computed into tmp from zz = Z^2
+     */
+    private long[] cubeOfZ(FieldPoint pp, long[] zz, long[] tmp) {
+        if (pp.v != null) {
+            return pp.v;
+        }
+        field.multiply(tmp, zz, pp.z);
+        return tmp;
+    }
+
+}
@@ -0,0 +1,62 @@
+import java.math.BigInteger;
+
+/**
+ * Point in Chudnovsky coordinates (X : Y : Z : Z^2 : Z^3), a Jacobian point
+ * that carries the powers of Z needed by addition.
+ */
+public class ChudnovskyPoint extends Point {
+
+    public BigInteger z;
+    public BigInteger zz;
+    public BigInteger zzz;
+
+    public ChudnovskyPoint(BigInteger x, BigInteger y, BigInteger z, BigInteger zz, BigInteger zzz) {
+        if (x.equals(BigInteger.ZERO) && y.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO)) {
+            throw new ArithmeticException();
+        } else {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.zz = zz;
+            this.zzz = zzz;
+        }
+    }
+
+    @Override
+    public boolean equals(Object q) {
+        if (q instanceof ChudnovskyPoint) {
+            ChudnovskyPoint qq = (ChudnovskyPoint) q;
+            // U1 = Y_2 * Z_1 ^ 3
+            BigInteger U1 = qq.y.multiply(zzz);
+            // U2 = Y_1 * Z_2 ^ 3
+            BigInteger U2 = y.multiply(qq.zzz);
+            // V1 = X_2 * Z_1 ^ 2
+            BigInteger V1 = qq.x.multiply(zz);
+            // V2 = X_1 * Z_2 ^ 2
+            BigInteger V2 = x.multiply(qq.zz);
+
+            return V1.equals(V2) && U1.equals(U2);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Equal points can have any Z, Z^2 and Z^3, so the hash can't depend on the
+     * coordinates. Points are meant to be compared with equals, not hashed.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + "," + y + "," + z + "," + zz + "," + zzz + ")";
+    }
+
+    public boolean isInfinity() {
+        return x.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO);
+    }
+
+}
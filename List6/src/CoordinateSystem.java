@@ -0,0 +1,170 @@
+import java.math.BigInteger;
+
+/**
+ * Arithmetic of points of E_a,b(F_p) written in one coordinate system. A curve
+ * picks the system of its basepoint once at construction, so the loops of
+ * scalar multiplication call a single implementation instead of checking the
+ * class of every point on every step. New coordinate systems are added by
+ * extending this class and registering it in EllipticCurve.
+ *
+ * Formulas write the result into dst, which may be one of the operands, so
+ * every intermediate value lives in the scratch registers t and dst is written
+ * only at the end. In every system a FieldPoint with z = 0 is zero at infinity
+ * and an affine point (x, y, 1) is a valid point.
+ */
+public abstract class CoordinateSystem {
+
+    protected final PrimeField field;
+    // a in the representation of the field
+    protected final long[] fieldA;
+    protected final long[] fieldZero;
+    protected final long[] fieldOne;
+    // Shape of the curve, doubling formulas have cheaper variants for these a
+    protected final boolean aIsZero;
+    protected final boolean aIsMinusThree;
+
+    /**
+     * Constructor for the coordinate systems
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a in equation y^2 = x^3 + a*x + b, already in field
+     */
+    protected CoordinateSystem(PrimeField field, long[] fieldA) {
+        this.field = field;
+        this.fieldA = fieldA;
+        this.fieldZero = field.newElement();
+        this.fieldOne = field.one();
+        this.aIsZero = field.isZero(fieldA);
+        this.aIsMinusThree = field.areEqual(fieldA, field.toField(BigInteger.valueOf(-3)));
+    }
+
+    /**
+     * Check if a Point is written in this coordinate system
+     *
+     * @param pp any Point
+     * @return true if it is; false if it isn't
+     */
+    public abstract boolean owns(Point pp);
+
+    /**
+     * Get the Point representing zero at infinity in this coordinate system
+     *
+     * @return Point zero at infinity
+     */
+    public abstract Point infinity();
+
+    /**
+     * Move a Point of this coordinate system into the internal representation of
+     * the field backend.
+     *
+     * @param pp Point owned by this system
+     * @return the same point as a FieldPoint
+     */
+    public abstract FieldPoint toFieldPoint(Point pp);
+
+    /**
+     * Move a FieldPoint back into a Point of this coordinate system.
+     *
+     * @param fp point in internal representation
+     * @return fp as a Point
+     */
+    public abstract Point fromFieldPoint(FieldPoint fp);
+
+    /**
+     * dst = pp + qq
+     */
+    public abstract void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t);
+
+    /**
+     * dst = 2 * pp
+     */
+    public abstract void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t);
+
+    /**
+     * Cost of addInto on two points of this system
+     *
+     * @param costs costs of the operations of the field
+     * @return cost in multiplications
+     */
+    public abstract double additionCost(CostProfile costs);
+
+    /**
+     * Cost of addInto with a second operand of Z = 1, like a normalized table
+     *
+     * @param costs costs of the operations of the field
+     * @return cost in multiplications
+     */
+    public double mixedAdditionCost(CostProfile costs) {
+        return additionCost(costs);
+    }
+
+    /**
+     * Cost of doubleInto
+     *
+     * @param costs costs of the operations of the field
+     * @return cost in multiplications
+     */
+    public abstract double doublingCost(CostProfile costs);
+
+    /**
+     * dst = -pp, in all systems of short Weierstrass curves the same x and z with
+     * negated y, so the values cached from z stay valid
+     */
+    public void negate(FieldPoint dst, FieldPoint pp) {
+        field.copy(dst.x, pp.x);
+        field.subtract(dst.y, fieldZero, pp.y);
+        field.copy(dst.z, pp.z);
+        if (dst != pp) {
+            dst.setCache(pp);
+        }
+    }
+
+    /**
+     * Affine coordinates of a point that is not zero at infinity, given the
+     * inverse of its z coordinate.
+     *
+     * @param x    destination for the affine x
+     * @param y    destination for the affine y
+     * @param fp   point in this coordinate system
+     * @param zInv inverse of fp.z
+     * @param t    scratch registers
+     */
+    public abstract void toAffine(long[] x, long[] y, FieldPoint fp, long[] zInv, long[][] t);
+
+    /**
+     * New FieldPoint set to zero at infinity, (0 : 1 : 0).
+     */
+    public FieldPoint newInfinity() {
+        return new FieldPoint(field.newElement(), field.one(), field.newElement());
+    }
+
+    protected void copyInto(FieldPoint dst, FieldPoint src) {
+        if (dst != src) {
+            dst.set(src);
+        }
+    }
+
+    protected void setInfinity(FieldPoint dst) {
+        field.copy(dst.x, fieldZero);
+        field.copy(dst.y, fieldOne);
+        field.copy(dst.z, fieldZero);
+    }
+
+    /**
+     * u = 3u (mod p)
+     */
+    protected void times3(long[] u, long[] tmp) {
+        field.add(tmp, u, u);
+        field.add(u, tmp, u);
+    }
+
+    /**
+     * u = 8u (mod p)
+     */
+    protected void times8(long[] u) {
+        field.add(u, u, u);
+        field.add(u, u, u);
+        field.add(u, u, u);
+    }
+
+}
@@ -0,0 +1,176 @@
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Costs of squaring and inversion relative to multiplication in a field
+ * backend. They decide which coordinate system pays off: an inversion per
+ * operation in affine coordinates against a dozen multiplications in projective
+ * ones. The ratio depends on the size of p and on the backend, so it is
+ * measured once per modulus, on the first scalar multiplication, and kept for
+ * the rest of the run; a profile stored elsewhere can be passed in instead (see
+ * EllipticCurve.setCostProfile). A measurement out of plausible bounds, e.g.
+ * disturbed by other load on the machine, gives DEFAULT instead.
+ */
+public class CostProfile {
+
+    // Time every operation runs before the measurement so the JIT compiles it,
+    // rounds of measurement and time spent on every operation in a round, in
+    // nanoseconds
+    private static final long WARMUP_TIME = 30_000_000;
+    private static final int ROUNDS = 6;
+    private static final long MEASURE_TIME = 1_000_000;
+    // Most operations between two reads of the clock
+    private static final int BATCH = 64;
+
+    // Measured operations
+    private static final int MULTIPLY = 0;
+    private static final int SQUARE = 1;
+    private static final int INVERT = 2;
+
+    // Plausible ratios; schoolbook and Montgomery squaring save at most half of
+    // a multiplication, an inversion costs at least a few
+    private static final double MIN_SQUARING = 0.5;
+    private static final double MAX_SQUARING = 1.2;
+    private static final double MIN_INVERSION = 2;
+    private static final double MAX_INVERSION = 1000;
+
+    /**
+     * Costs commonly assumed for prime fields of cryptographic size, S = 0.8M and
+     * I = 100M
+     */
+    public static final CostProfile DEFAULT = new CostProfile(0.8, 100);
+
+    private static final Map<BigInteger, CostProfile> measured = new ConcurrentHashMap<BigInteger, CostProfile>();
+
+    private final double squaring;
+    private final double inversion;
+
+    /**
+     * Main constructor of class
+     *
+     * @param squaring  cost of a squaring in multiplications
+     * @param inversion cost of an inversion in multiplications
+     */
+    public CostProfile(double squaring, double inversion) {
+        this.squaring = squaring;
+        this.inversion = inversion;
+    }
+
+    /**
+     * Profile of a field backend, measured on first use for its modulus
+     *
+     * @param field Arithmetic backend of F_p
+     * @return costs of its operations
+     */
+    public static CostProfile of(PrimeField field) {
+        return measured.computeIfAbsent(field.getP(), p -> measure(field));
+    }
+
+    /**
+     * Time multiplications, squarings and inversions of random elements. Every
+     * operation runs for about MEASURE_TIME per round, so small fields, whose
+     * operations take nanoseconds, get as reliable a ratio as large ones. The
+     * rounds interleave the operations and the fastest one counts, the early
+     * ones run before the JIT has compiled the code. They are run for
+     * WARMUP_TIME each first, and ratios out of bounds give DEFAULT.
+     */
+    private static CostProfile measure(PrimeField field) {
+        Random random = new Random(field.getP().hashCode());
+        long[] a = field.toField(new BigInteger(field.getP().bitLength(), random).mod(field.getP()));
+        long[] b = field.toField(new BigInteger(field.getP().bitLength(), random).mod(field.getP()));
+        long[] r = field.newElement();
+        if (field.isZero(a)) {
+            field.copy(a, field.one());
+        }
+
+        for (int op = MULTIPLY; op <= INVERT; op++) {
+            time(field, op, a, b, r, WARMUP_TIME);
+        }
+        double[] best = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int op = 0; op < best.length; op++) {
+                best[op] = Math.min(best[op], time(field, op, a, b, r, MEASURE_TIME));
+            }
+        }
+        double squaring = best[SQUARE] / best[MULTIPLY];
+        double inversion = best[INVERT] / best[MULTIPLY];
+        if (squaring < MIN_SQUARING || squaring > MAX_SQUARING || inversion < MIN_INVERSION
+                || inversion > MAX_INVERSION) {
+            return DEFAULT;
+        }
+        return new CostProfile(squaring, inversion);
+    }
+
+    /**
+     * Time of an operation run for a given time, in batches growing up to BATCH
+     * so slow operations don't overshoot. The fastest batch counts, which
+     * leaves out those stretched by garbage collection or other threads.
+     * Results feed the next operation, so none of them can be skipped.
+     */
+    private static double time(PrimeField field, int op, long[] a, long[] b, long[] r, long duration) {
+        double best = Double.MAX_VALUE;
+        int batch = 1;
+        long start = System.nanoTime();
+        long now = start;
+        do {
+            long batchStart = now;
+            for (int i = 0; i < batch; i++) {
+                switch (op) {
+                    case MULTIPLY:
+                        field.multiply(r, a, b);
+                        field.multiply(b, r, a);
+                        break;
+                    case SQUARE:
+                        field.square(r, b);
+                        field.square(b, r);
+                        break;
+                    default:
+                        field.invert(r, a);
+                        field.invert(a, r);
+                }
+            }
+            now = System.nanoTime();
+            best = Math.min(best, (double) (now - batchStart) / (2 * batch));
+            batch = Math.min(2 * batch, BATCH);
+        } while (now - start < duration);
+        return Math.max(best, 1e-3);
+    }
+
+    /**
+     * Get cost of a squaring
+     *
+     * @return S/M
+     */
+    public double getSquaring() {
+        return squaring;
+    }
+
+    /**
+     * Get cost of an inversion
+     *
+     * @return I/M
+     */
+    public double getInversion() {
+        return inversion;
+    }
+
+    /**
+     * Cost of a sequence of operations in multiplications
+     *
+     * @param multiplications number of multiplications, by constants too
+     * @param squarings       number of squarings
+     * @param inversions      number of inversions
+     * @return mM + sS + iI in M
+     */
+    public double cost(double multiplications, double squarings, double inversions) {
+        return multiplications + squarings * squaring + inversions * inversion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("S = %.2fM, I = %.1fM", squaring, inversion);
+    }
+
+}
@@ -0,0 +1,61 @@
+import java.math.BigInteger;
+
+/**
+ * Point (X : Y : Z : T) of the twisted Edwards model ax^2 + y^2 = 1 + dx^2y^2
+ * of a curve in extended coordinates, standing for (X/Z, Y/Z) with T = XY/Z.
+ * The neutral element is (0 : 1 : 1 : 0). See TwistedEdwardsCurve.
+ */
+public class EdwardsPoint extends Point {
+
+    public BigInteger z;
+    public BigInteger t;
+
+    public EdwardsPoint(BigInteger x, BigInteger y, BigInteger z, BigInteger t) {
+        if (z.equals(BigInteger.ZERO)) {
+            throw new ArithmeticException();
+        } else {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.t = t;
+        }
+    }
+
+    @Override
+    public boolean equals(Object q) {
+        if (q instanceof EdwardsPoint) {
+            EdwardsPoint qq = (EdwardsPoint) q;
+            // U1 = Y_2 * Z_1
+            BigInteger U1 = qq.y.multiply(z);
+            // U2 = Y_1 * Z_2
+            BigInteger U2 = y.multiply(qq.z);
+            // V1 = X_2 * Z_1
+            BigInteger V1 = qq.x.multiply(z);
+            // V2 = X_1 * Z_2
+            BigInteger V2 = x.multiply(qq.z);
+
+            return V1.equals(V2) && U1.equals(U2);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Extended coordinates of a point are unique only up to Z, the hash is
+     * the same for all points so that it agrees with equals.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + "," + y + "," + z + "," + t + ")";
+    }
+
+    public boolean isNeutral() {
+        return x.equals(BigInteger.ZERO) && y.equals(z);
+    }
+
+}
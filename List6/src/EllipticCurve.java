@@ -1,5 +1,7 @@
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Class representing an elliptic curve E_a,b(F_p) of order q with its basepoint
@@ -17,9 +19,56 @@ public class EllipticCurve {
     private final BigInteger zero = BigInteger.ZERO;
     private final BigInteger one = BigInteger.ONE;
     private final BigInteger two = BigInteger.TWO;
-    private final BigInteger three = BigInteger.valueOf(3);
-    private final BigInteger four = BigInteger.valueOf(4);
-    private final BigInteger eight = BigInteger.valueOf(8);
+
+    // Arithmetic backend for F_p and constants in its representation
+    private PrimeField field;
+    private long[] fieldA;
+    private long[] fieldZero;
+    private long[] fieldOne;
+
+    // Known coordinate systems and the one of the basepoint
+    private AffineCoordinates affine;
+    private JacobianCoordinates jacobian;
+    private ChudnovskyCoordinates chudnovsky;
+    private ModifiedJacobianCoordinates modifiedJacobian;
+    private CoordinateSystem[] systems;
+    private CoordinateSystem coordinates;
+
+    // Costs of the field operations that pick the system multiplications run in,
+    // measured on first use (see workingSystem)
+    private CostProfile costs;
+
+    // Width of NAF in scalarMultiply
+    private static final int DEFAULT_WINDOW_WIDTH = 4;
+    private int windowWidth = DEFAULT_WINDOW_WIDTH;
+
+    // Entries of the traces of doubleAndAddTrace
+    public static final byte TRACE_DOUBLE = 0;
+    public static final byte TRACE_ADD = 1;
+
+    // GLV endomorphism (x, y) -> (beta*x, y) = lambda * (x, y) of curves with
+    // a = 0, null if unknown. The scalar lattice {(u, v) : u + v*lambda = 0 (mod
+    // q)} is reduced to the short basis (glvA1, glvB1), (glvA2, glvB2).
+    private long[] glvBeta;
+    private BigInteger glvLambda;
+    private BigInteger glvA1, glvB1, glvA2, glvB2;
+    // Set once the endomorphism is given or looked for, the search runs on the
+    // first multiplication instead of in the constructor
+    private volatile boolean endomorphismSearched;
+
+    // Montgomery and twisted Edwards models of the curve, null if it has none
+    // (see findModels). Points of order 2 are looked for on at most
+    // MODEL_ATTEMPTS points of the curve, on the first use of the models.
+    // scalarMultiply runs on the Edwards model only if useEdwardsModel asks so.
+    private static final int MODEL_ATTEMPTS = 16;
+    private MontgomeryCurve montgomery;
+    private TwistedEdwardsCurve edwards;
+    private volatile boolean modelsSearched;
+    private volatile boolean edwardsByDefault;
+
+    // Reusable temporaries for the formulas, one set per thread
+    private static final int SCRATCH_SIZE = 16;
+    private final ThreadLocal<long[][]> scratch = ThreadLocal.withInitial(this::newScratch);
 
     /**
      * Main constructor of class
@@ -36,7 +85,18 @@ public class EllipticCurve {
         this.setP(p);
         this.setQ(q);
         this.setBasepoint(basepoint);
-        zeroAtInfinity = calculateZeroAtInfinity();
+        field = PrimeField.forModulus(p);
+        fieldA = field.toField(a);
+        fieldZero = field.newElement();
+        fieldOne = field.one();
+        affine = new AffineCoordinates(field, fieldA, calculateZeroAtInfinity());
+        jacobian = new JacobianCoordinates(field, fieldA);
+        chudnovsky = new ChudnovskyCoordinates(field, fieldA);
+        modifiedJacobian = new ModifiedJacobianCoordinates(field, fieldA);
+        systems = new CoordinateSystem[] { affine, new ProjectiveCoordinates(field, fieldA), jacobian, chudnovsky,
+                modifiedJacobian };
+        coordinates = coordinatesOf(basepoint);
+        zeroAtInfinity = coordinates.infinity();
     }
 
     /**
@@ -113,13 +173,31 @@ public class EllipticCurve {
         return zeroAtInfinity;
     }
 
+    /**
+     * Get the arithmetic backend of F_p
+     * 
+     * @return PrimeField of the curve
+     */
+    public PrimeField getField() {
+        return field;
+    }
+
+    /**
+     * Get the coordinate system of the basepoint, used by the accumulators
+     * 
+     * @return CoordinateSystem of the basepoint
+     */
+    public CoordinateSystem getCoordinateSystem() {
+        return coordinates;
+    }
+
     /**
      * As there is no infinity in BigInteger let's generate point off the curve to
-     * be a point of reference for zero at infinity.
+     * be a point of reference for zero at infinity in affine coordinates.
      * 
-     * @return Point to serve as zero at infinity
+     * @return AffinePoint to serve as zero at infinity
      */
-    private Point calculateZeroAtInfinity() {
+    private AffinePoint calculateZeroAtInfinity() {
 
         AffinePoint o = new AffinePoint(zero, zero);
 
@@ -130,285 +208,1100 @@ public class EllipticCurve {
             // o(x,y) = o(x,y+1)
             o.y = (o.y.add(one));
         }
-        if (basepoint instanceof AffinePoint) {
-            return o;
+        return o;
+    }
 
-        } else if (basepoint instanceof ProjectivePoint) {
-            return new ProjectivePoint(zero, one, zero);
-        } else if (basepoint instanceof JacobianPoint) {
-            return new JacobianPoint(zero, one, zero);
-        } else {
-            return null;
+    /**
+     * Find the coordinate system a Point is written in
+     * 
+     * @param pp any Point
+     * @return CoordinateSystem of pp
+     * @throws IllegalArgumentException if no known system owns pp
+     */
+    private CoordinateSystem coordinatesOf(Point pp) {
+        for (CoordinateSystem cs : systems) {
+            if (cs.owns(pp)) {
+                return cs;
+            }
         }
-
+        throw new IllegalArgumentException("Unknown coordinate system of " + pp.getClass().getName());
     }
 
     /**
-     * Add two different points from this elliptic curve
+     * Add two different points from this elliptic curve. If the points are in
+     * different coordinate systems qPoint is converted into the system of pPoint,
+     * except for affine points which fit every system as they are, so an affine
+     * and a Jacobian point are added with the mixed formula.
      * 
      * @param Point pPoint
      * @param Point qPoint
      * @return pPoint + qPoint on elliptic curve
      */
     public Point addPoints(Point pPoint, Point qPoint) {
+        CoordinateSystem cs = coordinatesOf(pPoint instanceof AffinePoint ? qPoint : pPoint);
+        FieldPoint r = toFieldPoint(pPoint, cs);
+        cs.addInto(r, r, toFieldPoint(qPoint, cs), scratch.get());
+        return cs.fromFieldPoint(r);
+    }
+
+    /**
+     * Add an affine point to a point in Jacobian coordinates with the mixed
+     * formula, which is cheaper than converting qPoint and adding two Jacobian
+     * points.
+     * 
+     * @param pPoint point in Jacobian coordinates
+     * @param qPoint point in affine coordinates
+     * @return pPoint + qPoint in Jacobian coordinates
+     */
+    public JacobianPoint addMixed(JacobianPoint pPoint, AffinePoint qPoint) {
+        JacobianCoordinates cs = (JacobianCoordinates) coordinatesOf(pPoint);
+        FieldPoint r = cs.toFieldPoint(pPoint);
+        cs.addMixed(r, r, affine.toFieldPoint(qPoint), scratch.get());
+        return (JacobianPoint) cs.fromFieldPoint(r);
+    }
+
+    /**
+     * Double the point on this elliptic curve
+     * 
+     * @param Point pPoint
+     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
+     */
+    public Point doublePoint(Point pPoint) {
+        CoordinateSystem cs = coordinatesOf(pPoint);
+        FieldPoint r = cs.toFieldPoint(pPoint);
+        cs.doubleInto(r, r, scratch.get());
+        return cs.fromFieldPoint(r);
+    }
+
+    /**
+     * Scalar multiplication of a point on elliptic curve with a width-w NAF of n
+     * (see setWindowWidth). Odd multiples of point are precomputed, then every
+     * digit costs a doubling and only non-zero digits an addition. On curves
+     * with a known endomorphism (see setEndomorphism) n is first split into two
+     * halves, which halves the number of doublings. Otherwise, if
+     * useEdwardsModel is on, the NAF runs on the twisted Edwards model with its
+     * cheaper unified addition and the result is mapped back. The NAF runs in
+     * the coordinate system that is the cheapest for the measured costs of the
+     * field (see getCostProfile), the result comes in the coordinates of point.
+     * 
+     * @param n
+     * @param point
+     * @return point times n
+     */
+    public Point scalarMultiply(BigInteger n, Point point) {
+        if (hasEndomorphism()) {
+            return glvMultiply(n, point);
+        }
+        return edwardsByDefault ? edwardsMultiply(n, point) : wnafMultiply(n, point);
+    }
+
+    /**
+     * Choose whether scalarMultiply runs on the twisted Edwards model of this
+     * curve instead of the Weierstrass form. It's off by default, as the
+     * models are found by multiplying points of the curve.
+     * 
+     * @param use true to multiply on the Edwards model
+     * @throws IllegalStateException if use is true and the curve has no twisted
+     *                               Edwards model
+     */
+    public void useEdwardsModel(boolean use) {
+        if (use) {
+            requireModels();
+        }
+        edwardsByDefault = use;
+    }
+
+    /**
+     * Scalar multiplication with a width-w NAF of n
+     */
+    private Point wnafMultiply(BigInteger n, Point point) {
+        CoordinateSystem cs = coordinatesOf(point);
+        long[][] t = scratch.get();
+        int[] digits = WindowNaf.recode(n.abs(), windowWidth);
+        int size = WindowNaf.tableSize(windowWidth);
+        CoordinateSystem ws = workingSystem(cs, 1, digits.length + 1, size - 1,
+                (double) digits.length / (windowWidth + 1), size);
+        FieldPoint[] table = oddMultiples(ws, toFieldPoint(point, ws), size);
+        FieldPoint result = newFieldPoint();
+        FieldPoint negative = newFieldPoint();
+
+        for (int i = digits.length - 1; i >= 0; i--) {
+            ws.doubleInto(result, result, t);
+            int d = digits[i];
+            if (d > 0) {
+                ws.addInto(result, result, table[d >> 1], t);
+            } else if (d < 0) {
+                ws.negate(negative, table[-d >> 1]);
+                ws.addInto(result, result, negative, t);
+            }
+        }
+
+        if (n.signum() < 0) {
+            ws.negate(result, result);
+        }
+        return fromWorking(result, ws, cs);
+    }
+
+    /**
+     * Multi-scalar multiplication k[0] * points[0] + ... + k[n-1] * points[n-1].
+     * Small sums are computed with interleaved wNAF (Straus, Shamir's trick),
+     * sharing the doublings between all terms; large ones with the bucket method
+     * of Pippenger, whose cost per term drops as the number of terms grows. The
+     * method with fewer estimated point operations is used.
+     * 
+     * @param k      scalars
+     * @param points points, in the coordinates of points[0] or affine
+     * @return the sum, in the coordinates of points[0]
+     */
+    public Point multiScalarMultiply(BigInteger[] k, Point[] points) {
+        if (k.length != points.length) {
+            throw new IllegalArgumentException("Number of scalars and points differ");
+        }
+        int n = k.length;
+        if (n == 0) {
+            return zeroAtInfinity;
+        }
 
-        if (pPoint instanceof AffinePoint && qPoint instanceof AffinePoint) {
+        CoordinateSystem cs = coordinatesOf(points[0]);
+        BigInteger[] scalars = new BigInteger[n];
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            scalars[i] = k[i].abs();
+            bits = Math.max(bits, scalars[i].bitLength());
+        }
 
-            AffinePoint pp = (AffinePoint) pPoint;
-            AffinePoint qq = (AffinePoint) qPoint;
-            // If any point is zero at infinity
-            if (pp.equals(toAffine(zeroAtInfinity))) {
-                return qPoint;
-            } else if (qq.equals(toAffine(zeroAtInfinity))) {
-                return pPoint;
+        // Pick the method by point operations, then the system by their costs
+        int window = pippengerWindow(n, bits);
+        boolean usePippenger = pippengerCost(n, bits, window) < strausCost(n, bits, windowWidth);
+        int size = WindowNaf.tableSize(windowWidth);
+        CoordinateSystem ws;
+        if (usePippenger) {
+            int windows = (bits + window - 1) / window;
+            ws = workingSystem(cs, n, bits, windows * 2.0 * (1 << window), (double) windows * n, n);
+        } else {
+            ws = workingSystem(cs, n, bits + n, n * (size - 1), (double) n * bits / (windowWidth + 1), n * size);
+        }
+
+        // Work with |k[i]| and negated points for negative scalars
+        FieldPoint[] base = new FieldPoint[n];
+        for (int i = 0; i < n; i++) {
+            base[i] = toFieldPoint(points[i], ws);
+            if (k[i].signum() < 0) {
+                ws.negate(base[i], base[i]);
             }
+        }
+
+        if (usePippenger) {
+            return fromWorking(pippenger(ws, scalars, base, bits, window), ws, cs);
+        }
+        FieldPoint[][] tables = new FieldPoint[n][];
+        for (int i = 0; i < n; i++) {
+            tables[i] = oddMultiples(ws, base[i], size);
+        }
+        return fromWorking(straus(ws, scalars, tables), ws, cs);
+    }
 
-            // If p_x = q_x result is zero at infinity or if p = q do doubling
-            if (pp.x.equals(qq.x)) {
-                if (pp.y.equals(qq.y)) {
-                    return doublePoint(pPoint);
-                } else {
-                    return zeroAtInfinity;
+    /**
+     * Interleaved wNAF: one shared chain of doublings, every term adds its own
+     * precomputed odd multiples.
+     * 
+     * @param cs     coordinate system of the tables
+     * @param k      non-negative scalars
+     * @param tables odd multiples of every point, see oddMultiples
+     * @return k[0] * tables[0][0] + ... + k[n-1] * tables[n-1][0]
+     */
+    private FieldPoint straus(CoordinateSystem cs, BigInteger[] k, FieldPoint[][] tables) {
+        int n = k.length;
+        int[][] digits = new int[n][];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            digits[i] = WindowNaf.recode(k[i], windowWidth);
+            length = Math.max(length, digits[i].length);
+        }
+
+        long[][] t = scratch.get();
+        FieldPoint result = newFieldPoint();
+        FieldPoint negative = newFieldPoint();
+        for (int j = length - 1; j >= 0; j--) {
+            cs.doubleInto(result, result, t);
+            for (int i = 0; i < n; i++) {
+                int d = j < digits[i].length ? digits[i][j] : 0;
+                if (d > 0) {
+                    cs.addInto(result, result, tables[i][d >> 1], t);
+                } else if (d < 0) {
+                    cs.negate(negative, tables[i][-d >> 1]);
+                    cs.addInto(result, result, negative, t);
                 }
             }
+        }
+        return result;
+    }
+
+    /**
+     * Pippenger's bucket method with windows of c bits. In every window each
+     * point is added to the bucket of its digit, then all buckets are summed with
+     * weights 1, ..., 2^c - 1 using two running sums.
+     */
+    private FieldPoint pippenger(CoordinateSystem cs, BigInteger[] k, FieldPoint[] points, int bits, int c) {
+        // Every point is added once per window, so mixed additions pay for the
+        // inversion
+        if (cs instanceof JacobianCoordinates) {
+            normalize(cs, points);
+        }
+
+        long[][] t = scratch.get();
+        FieldPoint[] buckets = new FieldPoint[(1 << c) - 1];
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = newFieldPoint();
+        }
+        FieldPoint result = newFieldPoint();
+        FieldPoint running = newFieldPoint();
+        FieldPoint windowSum = newFieldPoint();
 
-            // (q_y - p_y)/(q_x - p_x)
-            BigInteger alpha = (qq.y.subtract(pp.y))
-                    .multiply((qq.x.subtract(pp.x)).modInverse(p)).mod(p);
-            // x = alpha^2 - p_x - q_x (mod p)
-            BigInteger x = (alpha.modPow(two, p)).subtract(pp.x).subtract(qq.x).mod(p);
-            // y = -p_y + alpha * (p_x - x) (mod p)
-            BigInteger y = (pp.y.negate()).add(alpha.multiply(pp.x.subtract(x))).mod(p);
-
-            return new AffinePoint(x, y);
-        } else if (pPoint instanceof ProjectivePoint && qPoint instanceof ProjectivePoint) {
-
-            ProjectivePoint pp = (ProjectivePoint) pPoint;
-            ProjectivePoint qq = (ProjectivePoint) qPoint;
-
-            // If any point is zero at infinity
-            if (pp.isInfinity()) {
-                return qPoint;
-            } else if (qq.isInfinity()) {
-                return pPoint;
+        for (int start = (bits - 1) / c * c; start >= 0; start -= c) {
+            for (int j = 0; j < c; j++) {
+                cs.doubleInto(result, result, t);
             }
 
-            // U1 = Y_2 * Z_1
-            BigInteger U1 = qq.y.multiply(pp.z).mod(p);
-            // U2 = Y_1 * Z_2
-            BigInteger U2 = pp.y.multiply(qq.z).mod(p);
-            // V1 = X_2 * Z_1
-            BigInteger V1 = qq.x.multiply(pp.z).mod(p);
-            // V2 = X_1 * Z_2
-            BigInteger V2 = pp.x.multiply(qq.z).mod(p);
-
-            // If V1 = V2 result is zero at infinity or if U1 = U2 do doubling
-            if (V1.equals(V2)) {
-                if (U1.equals(U2)) {
-                    return doublePoint(pPoint);
-                } else {
-                    return zeroAtInfinity;
+            for (FieldPoint bucket : buckets) {
+                setInfinity(bucket);
+            }
+            for (int i = 0; i < k.length; i++) {
+                int d = digit(k[i], start, c);
+                if (d > 0) {
+                    cs.addInto(buckets[d - 1], buckets[d - 1], points[i], t);
                 }
             }
 
-            // U = U_1 - U_2
-            BigInteger U = U1.subtract(U2).mod(p);
-            // V = V_1 - V_2
-            BigInteger V = V1.subtract(V2).mod(p);
-            // W = Z_1 * Z_2
-            BigInteger W = pp.z.multiply(qq.z).mod(p);
-            // A = U^2 * W - V^3 - 2*V^2*V2
-            BigInteger A = U.modPow(two, p).multiply(W).subtract(V.modPow(three, p))
-                    .subtract(two.multiply(V.modPow(two, p)).multiply(V2)).mod(p);
-            // x3 = VA
-            BigInteger x3 = V.multiply(A).mod(p);
-            // y3 = U * (V^2 * V2 - A) - V^3 * U2
-            BigInteger y3 = U.multiply(V.modPow(two, p).multiply(V2).subtract(A))
-                    .subtract(V.modPow(three, p).multiply(U2)).mod(p);
-            // z3 = V^3 * W
-            BigInteger z3 = V.modPow(three, p).multiply(W).mod(p);
-
-            return new ProjectivePoint(x3, y3, z3);
-        } else if (pPoint instanceof JacobianPoint && qPoint instanceof JacobianPoint) {
-
-            JacobianPoint pp = (JacobianPoint) pPoint;
-            JacobianPoint qq = (JacobianPoint) qPoint;
-
-            // U1 = pp.x * qq.z^2
-            BigInteger U1 = pp.x.multiply(qq.z.modPow(two, p)).mod(p);
-            // U2 = qq.x * pp.z^2
-            BigInteger U2 = qq.x.multiply(pp.z.modPow(two, p)).mod(p);
-            // S1 = pp.y * qq.z^3
-            BigInteger S1 = pp.y.multiply(qq.z.modPow(three, p)).mod(p);
-            // S2 = qq.y * pp.z^3
-            BigInteger S2 = qq.y.multiply(pp.z.modPow(three, p)).mod(p);
-
-            // If U1 = U2 result is zero at infinity or if S1 = S2 do doubling
-            if (U1.equals(U2)) {
-                if (S1.equals(S2)) {
-                    return doublePoint(pPoint);
-                } else {
-                    return zeroAtInfinity;
+            // windowSum = sum of d * bucket[d]
+            setInfinity(running);
+            setInfinity(windowSum);
+            for (int b = buckets.length - 1; b >= 0; b--) {
+                cs.addInto(running, running, buckets[b], t);
+                cs.addInto(windowSum, windowSum, running, t);
+            }
+            cs.addInto(result, result, windowSum, t);
+        }
+        return result;
+    }
+
+    /**
+     * Bits start, ..., start + c - 1 of k as a number
+     */
+    private static int digit(BigInteger k, int start, int c) {
+        int d = 0;
+        for (int j = c - 1; j >= 0; j--) {
+            d = (d << 1) | (k.testBit(start + j) ? 1 : 0);
+        }
+        return d;
+    }
+
+    /**
+     * Estimated point operations of interleaved wNAF for n scalars of given bits
+     */
+    private static double strausCost(int n, int bits, int w) {
+        return bits + n * (WindowNaf.tableSize(w) + (double) bits / (w + 1));
+    }
+
+    /**
+     * Estimated point operations of Pippenger's method with windows of c bits
+     */
+    private static double pippengerCost(int n, int bits, int c) {
+        return bits + Math.ceil((double) bits / c) * (n + (2.0 * (1 << c)));
+    }
+
+    /**
+     * Width of the windows for which Pippenger's method is the cheapest
+     */
+    private static int pippengerWindow(int n, int bits) {
+        int best = 1;
+        for (int c = 2; c <= 20; c++) {
+            if (pippengerCost(n, bits, c) < pippengerCost(n, bits, best)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Precompute P, 3P, 5P, ... in a given coordinate system. In Jacobian
+     * coordinates the table is brought to Z = 1 with one inversion, so that the
+     * additions with its entries use the mixed formula.
+     * 
+     * @param cs   coordinate system of pp
+     * @param pp   point P
+     * @param size number of odd multiples
+     * @return table[i] = (2i + 1)P
+     */
+    private FieldPoint[] oddMultiples(CoordinateSystem cs, FieldPoint pp, int size) {
+        long[][] t = scratch.get();
+        FieldPoint[] table = new FieldPoint[size];
+        table[0] = pp;
+        if (size > 1) {
+            FieldPoint twice = newFieldPoint();
+            cs.doubleInto(twice, pp, t);
+            for (int i = 1; i < size; i++) {
+                table[i] = newFieldPoint();
+                cs.addInto(table[i], table[i - 1], twice, t);
+            }
+            if (cs instanceof JacobianCoordinates) {
+                normalize(cs, table);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Scale points of a given coordinate system in place to Z = 1 with a single
+     * inversion. Zero at infinity is left as it is.
+     * 
+     * @param cs     coordinate system of points
+     * @param points distinct points to normalize
+     */
+    private void normalize(CoordinateSystem cs, FieldPoint[] points) {
+        int n = points.length;
+        long[][] z = new long[n][];
+        long[][] zInv = new long[n][];
+        for (int i = 0; i < n; i++) {
+            z[i] = points[i].z;
+            zInv[i] = field.newElement();
+        }
+        field.invertBatch(zInv, z);
+
+        long[][] t = scratch.get();
+        for (int i = 0; i < n; i++) {
+            if (field.isZero(points[i].z)) {
+                continue;
+            }
+            cs.toAffine(t[2], t[3], points[i], zInv[i], t);
+            field.copy(points[i].x, t[2]);
+            field.copy(points[i].y, t[3]);
+            field.copy(points[i].z, fieldOne);
+            points[i].u = null;
+            points[i].v = null;
+        }
+    }
+
+    /**
+     * Set the width of NAF used by scalarMultiply. Wider windows need fewer
+     * additions but 2^(w-2) precomputed points.
+     * 
+     * @param w width, at least 2
+     */
+    public void setWindowWidth(int w) {
+        WindowNaf.checkWidth(w);
+        windowWidth = w;
+    }
+
+    /**
+     * Get the width of NAF used by scalarMultiply
+     * 
+     * @return width w
+     */
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Set the costs of the field operations, e.g. a profile measured in an
+     * earlier run, instead of measuring them
+     *
+     * @param costs costs of the operations of F_p
+     */
+    public void setCostProfile(CostProfile costs) {
+        this.costs = costs;
+    }
+
+    /**
+     * Get the costs of the field operations that pick the coordinate system
+     * scalar multiplications run in, measured if they weren't set
+     *
+     * @return costs of the operations of F_p
+     */
+    public CostProfile getCostProfile() {
+        if (costs == null) {
+            costs = CostProfile.of(field);
+        }
+        return costs;
+    }
+
+    /**
+     * Run the arithmetic of Jacobian points with compiled formulas instead of
+     * the written out ones, see FormulaCoordinates. Formulas may use the
+     * constant a.
+     *
+     * @param addition      Jacobian addition
+     * @param mixedAddition addition for Z2 = 1
+     * @param doubling      Jacobian doubling
+     * @throws IllegalArgumentException if a formula needs more registers than
+     *                                  there are scratch registers or the
+     *                                  doubling reads a second point
+     */
+    public void setJacobianFormulas(Formula addition, Formula mixedAddition, Formula doubling) {
+        for (Formula formula : new Formula[] { addition, mixedAddition, doubling }) {
+            if (formula.getRegisters() > SCRATCH_SIZE) {
+                throw new IllegalArgumentException(formula.getName() + " needs " + formula.getRegisters()
+                        + " registers, there are " + SCRATCH_SIZE);
+            }
+        }
+        FormulaCoordinates formulas = new FormulaCoordinates(field, fieldA, addition, mixedAddition, doubling);
+        for (int i = 0; i < systems.length; i++) {
+            if (systems[i] == jacobian) {
+                systems[i] = formulas;
+            }
+        }
+        if (coordinates == jacobian) {
+            coordinates = formulas;
+        }
+        jacobian = formulas;
+    }
+
+    /**
+     * Scalar multiplication of a point on elliptic curve with a chosen method
+     * 
+     * @param n      scalar
+     * @param point  point to multiply
+     * @param method method of scalar multiplication
+     * @return point times n, in the coordinates of point
+     */
+    public Point scalarMultiply(BigInteger n, Point point, ScalarMultiplication method) {
+        switch (method) {
+            case CO_Z_LADDER:
+                return coZLadder(n, point);
+            case GLV:
+                if (!hasEndomorphism()) {
+                    throw new IllegalStateException("No endomorphism known for this curve");
                 }
+                return glvMultiply(n, point);
+            case MONTGOMERY_LADDER:
+                requireModels();
+                return montgomeryLadder(n, point);
+            case EDWARDS:
+                requireModels();
+                return edwardsMultiply(n, point);
+            default:
+                return wnafMultiply(n, point);
+        }
+    }
+
+    /**
+     * Scalar multiplication with a Montgomery ladder on co-Z Jacobian points. The
+     * work per bit of n doesn't depend on its value.
+     * 
+     * @param n     scalar
+     * @param point point to multiply
+     * @return point times n, in the coordinates of point
+     */
+    private Point coZLadder(BigInteger n, Point point) {
+        CoordinateSystem cs = coordinatesOf(point);
+        // q is the order of the curve, so it's a multiple of the order of point
+        BigInteger k = n.mod(q);
+        AffinePoint base = toAffine(point);
+        if (k.signum() == 0 || base.equals(affine.infinity())) {
+            return cs.infinity();
+        }
+
+        FieldPoint r = newFieldPoint();
+        if (!jacobian.coZLadder(r, affine.toFieldPoint(base), k, scratch.get())) {
+            // R0 = -R1 happens only at the last step of k = q - 1 or for points of
+            // small order, leave those to wNAF
+            return scalarMultiply(n, point);
+        }
+
+        Point result = jacobian.fromFieldPoint(r);
+        return cs == jacobian ? result : cs.fromFieldPoint(toFieldPoint(result, cs));
+    }
+
+    /**
+     * Set the GLV endomorphism of a curve with a = 0: a cube root of unity beta in
+     * F_p and a cube root of unity lambda mod q such that (beta*x, y) = lambda *
+     * (x, y) for the basepoint. From now on scalarMultiply uses it.
+     * 
+     * @param beta   non-trivial cube root of unity mod p
+     * @param lambda non-trivial cube root of unity mod q matching beta
+     * @throws IllegalArgumentException if the parameters don't define the
+     *                                  endomorphism of this curve
+     */
+    public synchronized void setEndomorphism(BigInteger beta, BigInteger lambda) {
+        if (a.signum() != 0) {
+            throw new IllegalArgumentException("Endomorphism needs a curve with a = 0");
+        }
+        if (!q.isProbablePrime(30)) {
+            throw new IllegalArgumentException("Endomorphism needs a prime order q to split scalars mod q");
+        }
+        beta = beta.mod(p);
+        lambda = lambda.mod(q);
+        if (beta.equals(one) || !beta.modPow(BigInteger.valueOf(3), p).equals(one)) {
+            throw new IllegalArgumentException("beta is not a non-trivial cube root of unity mod p");
+        }
+        if (lambda.equals(one) || !lambda.modPow(BigInteger.valueOf(3), q).equals(one)) {
+            throw new IllegalArgumentException("lambda is not a non-trivial cube root of unity mod q");
+        }
+
+        AffinePoint g = toAffine(basepoint);
+        if (g.equals(affine.infinity())) {
+            throw new IllegalArgumentException("Endomorphism can't be checked on zero at infinity");
+        }
+        AffinePoint image = new AffinePoint(g.x.multiply(beta).mod(p), g.y);
+        if (!image.equals(toAffine(wnafMultiply(lambda, g)))) {
+            throw new IllegalArgumentException("(beta*x, y) is not lambda * (x, y) on this curve");
+        }
+
+        glvBeta = field.toField(beta);
+        glvLambda = lambda;
+        reduceLattice();
+        endomorphismSearched = true;
+    }
+
+    /**
+     * Check if scalarMultiply uses the GLV endomorphism
+     * 
+     * @return true if the endomorphism is known
+     */
+    public boolean hasEndomorphism() {
+        if (!endomorphismSearched) {
+            findEndomorphism();
+        }
+        return glvLambda != null;
+    }
+
+    /**
+     * Look for the endomorphism of curves with a = 0. It exists if p = 1 (mod 3);
+     * beta and lambda are cube roots of unity, paired by checking the basepoint.
+     * Only done for prime q, otherwise the scalars can't be split mod q. Runs
+     * once, on the first call of hasEndomorphism.
+     */
+    private synchronized void findEndomorphism() {
+        BigInteger three = BigInteger.valueOf(3);
+        if (endomorphismSearched || a.signum() != 0 || !p.mod(three).equals(one) || !q.mod(three).equals(one)
+                || !q.isProbablePrime(30) || toAffine(basepoint).equals(affine.infinity())) {
+            endomorphismSearched = true;
+            return;
+        }
+
+        BigInteger beta = cubeRootOfUnity(p);
+        BigInteger lambda = cubeRootOfUnity(q);
+        for (BigInteger candidate : new BigInteger[] { lambda, lambda.multiply(lambda).mod(q) }) {
+            try {
+                setEndomorphism(beta, candidate);
+                return;
+            } catch (IllegalArgumentException e) {
+                // The other cube root of unity belongs to beta
             }
+        }
+        endomorphismSearched = true;
+    }
 
-            // H = U2 - U1
-            BigInteger H = U2.subtract(U1).mod(p);
-            // R = S2 - S1
-            BigInteger R = S2.subtract(S1).mod(p);
-            // x3 = R^2 - H^3 - 2U1H^2
-            BigInteger x3 = R.modPow(two, p).subtract(H.modPow(three, p))
-                    .subtract(two.multiply(U1).multiply(H.modPow(two, p))).mod(p);
-            // y3 = R(U1H^2 - x3) - S1H^3
-            BigInteger y3 = R.multiply(U1.multiply(H.modPow(two, p)).subtract(x3))
-                    .subtract(S1.multiply(H.modPow(three, p))).mod(p);
-            // z3 = H * pp.z * qq.z
-            BigInteger z3 = H.multiply(pp.z).multiply(qq.z).mod(p);
-
-            return new JacobianPoint(x3, y3, z3);
+    /**
+     * Non-trivial cube root of unity mod a prime m = 1 (mod 3)
+     */
+    private static BigInteger cubeRootOfUnity(BigInteger m) {
+        BigInteger exponent = m.subtract(BigInteger.ONE).divide(BigInteger.valueOf(3));
+        for (BigInteger g = BigInteger.TWO;; g = g.add(BigInteger.ONE)) {
+            BigInteger root = g.modPow(exponent, m);
+            if (!root.equals(BigInteger.ONE)) {
+                return root;
+            }
+        }
+    }
 
+    /**
+     * Short basis of the lattice of (u, v) with u + v*lambda = 0 (mod q) from the
+     * extended Euclidean algorithm on q and lambda (Gallant, Lambert, Vanstone).
+     * Remainders r_i = s_i*q + t_i*lambda give vectors (r_i, -t_i) of the lattice;
+     * the ones around sqrt(q) are short.
+     */
+    private void reduceLattice() {
+        BigInteger sqrtQ = q.sqrt();
+        BigInteger r0 = q, r1 = glvLambda;
+        BigInteger t0 = zero, t1 = one;
+
+        // Stop at the first remainder r1 < sqrt(q), r0 is the last one >= sqrt(q)
+        while (r1.compareTo(sqrtQ) >= 0) {
+            BigInteger quotient = r0.divide(r1);
+            BigInteger r2 = r0.subtract(quotient.multiply(r1));
+            BigInteger t2 = t0.subtract(quotient.multiply(t1));
+            r0 = r1;
+            r1 = r2;
+            t0 = t1;
+            t1 = t2;
+        }
+        glvA1 = r1;
+        glvB1 = t1.negate();
+
+        // Next remainder after r1
+        BigInteger quotient = r0.divide(r1);
+        BigInteger r2 = r0.subtract(quotient.multiply(r1));
+        BigInteger t2 = t0.subtract(quotient.multiply(t1));
+
+        // Shorter of (r0, -t0) and (r2, -t2)
+        if (r0.pow(2).add(t0.pow(2)).compareTo(r2.pow(2).add(t2.pow(2))) <= 0) {
+            glvA2 = r0;
+            glvB2 = t0.negate();
         } else {
-            return zeroAtInfinity;
+            glvA2 = r2;
+            glvB2 = t2.negate();
         }
     }
 
     /**
-     * Double the point on this elliptic curve
+     * Split k into k1 + k2*lambda (mod q) with k1, k2 of about half the length of
+     * q, by subtracting the closest lattice vector to (k, 0).
      * 
-     * @param Point pPoint
-     * @return 2*pPoint which is the same as pPoint + pPoint on elliptic curve
+     * @param k scalar from [0, q)
+     * @return { k1, k2 }, possibly negative
      */
-    public Point doublePoint(Point pPoint) {
+    private BigInteger[] decompose(BigInteger k) {
+        // (c1, c2) = round((k, 0) in the basis)
+        BigInteger det = glvA1.multiply(glvB2).subtract(glvA2.multiply(glvB1));
+        BigInteger c1 = roundDivide(glvB2.multiply(k), det);
+        BigInteger c2 = roundDivide(glvB1.negate().multiply(k), det);
+
+        BigInteger k1 = k.subtract(c1.multiply(glvA1)).subtract(c2.multiply(glvA2));
+        BigInteger k2 = c1.multiply(glvB1).add(c2.multiply(glvB2)).negate();
+        return new BigInteger[] { k1, k2 };
+    }
+
+    /**
+     * x / d rounded to the nearest integer
+     */
+    private static BigInteger roundDivide(BigInteger x, BigInteger d) {
+        if (d.signum() < 0) {
+            x = x.negate();
+            d = d.negate();
+        }
+        // floor((2x + d) / 2d)
+        BigInteger[] qr = x.shiftLeft(1).add(d).divideAndRemainder(d.shiftLeft(1));
+        return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+    }
 
-        if (pPoint instanceof AffinePoint) {
+    /**
+     * Scalar multiplication with the GLV method: n = k1 + k2*lambda (mod q) and
+     * n * P = k1 * P + k2 * (beta*x, y), both halves in one interleaved wNAF. The
+     * odd multiples of the image of P are the images of the odd multiples of P,
+     * so they cost one multiplication each.
+     * 
+     * @param n     scalar
+     * @param point point to multiply
+     * @return point times n, in the coordinates of point
+     */
+    private Point glvMultiply(BigInteger n, Point point) {
+        CoordinateSystem cs = coordinatesOf(point);
+        BigInteger[] k = decompose(n.mod(q));
+        int bits = Math.max(k[0].bitLength(), k[1].bitLength());
+        int size = WindowNaf.tableSize(windowWidth);
+        CoordinateSystem ws = workingSystem(cs, 1, bits + 1, size - 1, 2.0 * bits / (windowWidth + 1), size);
+        FieldPoint[] table = oddMultiples(ws, toFieldPoint(point, ws), size);
+        FieldPoint[] image = new FieldPoint[table.length];
+
+        // (beta*X, Y, Z) in every coordinate system, as x is X over a power of Z
+        long[][] t = scratch.get();
+        for (int i = 0; i < table.length; i++) {
+            image[i] = newFieldPoint();
+            field.multiply(t[0], table[i].x, glvBeta);
+            field.copy(image[i].x, t[0]);
+            field.copy(image[i].y, table[i].y);
+            field.copy(image[i].z, table[i].z);
+        }
 
-            AffinePoint pp = (AffinePoint) pPoint;
-            // p_y = 0 or p = zero at inf
-            if (pp.y.mod(p).equals(zero) || pp.equals(toAffine(zeroAtInfinity))) {
-                return zeroAtInfinity;
+        FieldPoint[][] tables = { table, image };
+        for (int i = 0; i < 2; i++) {
+            if (k[i].signum() < 0) {
+                for (FieldPoint multiple : tables[i]) {
+                    ws.negate(multiple, multiple);
+                }
             }
+        }
+        return fromWorking(straus(ws, new BigInteger[] { k[0].abs(), k[1].abs() }, tables), ws, cs);
+    }
 
-            // (3*p_x^2 + a)/2*p_y
-            BigInteger alpha = ((three.multiply(pp.x.modPow(two, p))).add(a))
-                    .multiply(((two).multiply(pp.y)).modInverse(p)).mod(p);
+    /**
+     * Get the Montgomery model Bv^2 = u^3 + Au^2 + u of this curve
+     * 
+     * @return the model, null if the curve has none
+     */
+    public MontgomeryCurve getMontgomeryModel() {
+        if (!modelsSearched) {
+            findModels();
+        }
+        return montgomery;
+    }
 
-            // x = alpha^2 - 2*p_x (mod p)
-            BigInteger x = alpha.modPow(two, p).subtract(two.multiply(pp.x)).mod(p);
+    /**
+     * Get the twisted Edwards model ax^2 + y^2 = 1 + dx^2y^2 of this curve
+     * 
+     * @return the model, null if the curve has none
+     */
+    public TwistedEdwardsCurve getEdwardsModel() {
+        if (!modelsSearched) {
+            findModels();
+        }
+        return edwards;
+    }
 
-            // y = -p_y + alpha * (p_x - x) (mod p)
-            BigInteger y = (pp.y.negate()).add(alpha.multiply(pp.x.subtract(x))).mod(p);
+    /**
+     * Map a point to the Montgomery model of this curve
+     * 
+     * @param pp Point in any coordinates
+     * @return image of pp
+     * @throws IllegalStateException if the curve has no Montgomery model
+     */
+    public MontgomeryPoint toMontgomery(Point pp) {
+        requireModels();
+        FieldPoint r = montgomery.newInfinity();
+        montgomery.fromWeierstrass(r, toFieldPoint(pp, jacobian), scratch.get());
+        return new MontgomeryPoint(field.fromField(r.x), field.fromField(r.y), field.fromField(r.z));
+    }
 
-            return new AffinePoint(x, y);
-        } else if (pPoint instanceof ProjectivePoint) {
+    /**
+     * Map a point of the Montgomery model back to this curve
+     * 
+     * @param pp point of the Montgomery model
+     * @return preimage of pp, in the coordinates of the basepoint
+     * @throws IllegalStateException if the curve has no Montgomery model
+     */
+    public Point fromMontgomery(MontgomeryPoint pp) {
+        requireModels();
+        FieldPoint r = newFieldPoint();
+        montgomery.toWeierstrass(r, new FieldPoint(field.toField(pp.x), field.toField(pp.y), field.toField(pp.z)),
+                scratch.get());
+        return fromJacobian(r, coordinates);
+    }
+
+    /**
+     * Map a point to the twisted Edwards model of this curve
+     * 
+     * @param pp Point in any coordinates
+     * @return image of pp
+     * @throws IllegalStateException    if the curve has no twisted Edwards model
+     * @throws IllegalArgumentException if pp goes to a point at infinity of the
+     *                                  model (some points of order 2 and 4)
+     */
+    public EdwardsPoint toEdwards(Point pp) {
+        requireModels();
+        long[][] t = scratch.get();
+        FieldPoint m = montgomery.newInfinity();
+        montgomery.fromWeierstrass(m, toFieldPoint(pp, jacobian), t);
+        FieldPoint r = edwards.newNeutral();
+        if (!edwards.fromMontgomery(r, m, t)) {
+            throw new IllegalArgumentException("Point goes to infinity of the twisted Edwards model");
+        }
+        return new EdwardsPoint(field.fromField(r.x), field.fromField(r.y), field.fromField(r.z),
+                field.fromField(r.u));
+    }
+
+    /**
+     * Map a point of the twisted Edwards model back to this curve
+     * 
+     * @param pp point of the twisted Edwards model
+     * @return preimage of pp, in the coordinates of the basepoint
+     * @throws IllegalStateException if the curve has no twisted Edwards model
+     */
+    public Point fromEdwards(EdwardsPoint pp) {
+        requireModels();
+        long[][] t = scratch.get();
+        FieldPoint e = new FieldPoint(field.toField(pp.x), field.toField(pp.y), field.toField(pp.z));
+        e.u = field.toField(pp.t);
+        FieldPoint m = montgomery.newInfinity();
+        edwards.toMontgomery(m, e, t);
+        FieldPoint r = newFieldPoint();
+        montgomery.toWeierstrass(r, m, t);
+        return fromJacobian(r, coordinates);
+    }
+
+    private void requireModels() {
+        if (getMontgomeryModel() == null) {
+            throw new IllegalStateException("No Montgomery or twisted Edwards model known for this curve");
+        }
+    }
 
-            ProjectivePoint pp = (ProjectivePoint) pPoint;
-            // p_y = 0 or p = zero at inf
-            if (pp.y.mod(p).equals(zero) || pp.isInfinity()) {
-                return zeroAtInfinity;
+    /**
+     * Look for the Montgomery and twisted Edwards models. They need a root alpha
+     * of x^3 + ax + b with 3alpha^2 + a a square. Roots are x of points of order
+     * 2, so only curves of even order q have them. Runs once, on the first
+     * use of the models.
+     */
+    private synchronized void findModels() {
+        if (modelsSearched) {
+            return;
+        }
+        if (!q.testBit(0)) {
+            BigInteger root = twoTorsionRoot();
+            if (root != null) {
+                modelsFrom(root);
             }
+        }
+        modelsSearched = true;
+    }
 
-            // W = 3X^2 + aZ^2
-            BigInteger W = three.multiply(pp.x.modPow(two, p))
-                    .add(a.multiply(pp.z.modPow(two, p))).mod(p);
-            // S = YZ
-            BigInteger S = pp.y.multiply(pp.z).mod(p);
-            // B = XYS
-            BigInteger B = S.multiply(pp.x).multiply(pp.y).mod(p);
-            // h = W^2 - 8B
-            BigInteger h = W.modPow(two, p).subtract(eight.multiply(B)).mod(p);
-            // x3 = 2hS
-            BigInteger x3 = h.multiply(S).multiply(two).mod(p);
-            // y3 = W(4B - h) - 8(YS)^2
-            BigInteger y3 = W.multiply(four.multiply(B).subtract(h))
-                    .subtract(eight.multiply((S.multiply(pp.y)).modPow(two, p))).mod(p);
-            // z3 = 8S^3
-            BigInteger z3 = eight.multiply(S.modPow(three, p)).mod(p);
-
-            return new ProjectivePoint(x3, y3, z3);
-        } else if (pPoint instanceof JacobianPoint) {
-
-            JacobianPoint pp = (JacobianPoint) pPoint;
-
-            // pp.y = 0 or pp is zero at infinity
-            if (pp.y.mod(p).equals(zero) || pp.isInfinity())
-                return zeroAtInfinity;
-
-            // S = 4XY^2
-            BigInteger S = four.multiply(pp.x).multiply(pp.y.modPow(two, p)).mod(p);
-            // M = 3X^2 + aZ^4
-            BigInteger M = three.multiply(pp.x.modPow(two, p)).add(a.multiply(pp.z.modPow(four, p))).mod(p);
-            // x3 = M^2 - 2S
-            BigInteger x3 = M.modPow(two, p).subtract(two.multiply(S)).mod(p);
-            // y3 = M(S - x3) - 8Y^4
-            BigInteger y3 = M.multiply(S.subtract(x3)).subtract(eight.multiply(pp.y.modPow(four, p))).mod(p);
-            // z3 = 2YZ
-            BigInteger z3 = two.multiply(pp.y).multiply(pp.z).mod(p);
-
-            return new JacobianPoint(x3, y3, z3);
-        } else {
-            return zeroAtInfinity;
+    /**
+     * Set the models from a root of x^3 + ax + b, or from another root if
+     * 3root^2 + a isn't a square
+     */
+    private void modelsFrom(BigInteger root) {
+        // The other roots solve x^2 + root*x + root^2 + a = 0
+        BigInteger[] roots = { root, null, null };
+        BigInteger sqrt = sqrtModP(root.pow(2).multiply(BigInteger.valueOf(-3)).subtract(a.shiftLeft(2)), p);
+        if (sqrt != null) {
+            BigInteger half = two.modInverse(p);
+            roots[1] = sqrt.subtract(root).multiply(half).mod(p);
+            roots[2] = sqrt.negate().subtract(root).multiply(half).mod(p);
+        }
+
+        for (BigInteger alpha : roots) {
+            BigInteger w = alpha == null ? null : sqrtModP(alpha.pow(2).multiply(BigInteger.valueOf(3)).add(a), p);
+            if (w != null && w.signum() != 0) {
+                montgomery = new MontgomeryCurve(field, a, alpha, w.modInverse(p));
+                // a = -1 on the Edwards model if -(A + 2)/B is a square
+                BigInteger c = sqrtModP(montgomery.getA().add(two).multiply(montgomery.getB().modInverse(p)).negate(),
+                        p);
+                edwards = new TwistedEdwardsCurve(field, montgomery, c == null || c.signum() == 0 ? one : c);
+                return;
+            }
         }
     }
 
     /**
-     * Scalar multiplication of a point on elliptic curve
+     * x of a point of order 2. Points (x, sqrt(x^3 + ax + b)) for x = 0, 1, ...
+     * are multiplied by the odd part of q and then doubled until they are of
+     * order 2; a point misses only if its order is odd.
      * 
-     * @param n
-     * @param point
-     * @return point times n
+     * @return root of x^3 + ax + b, null if none was found
      */
-    public Point scalarMultiply(BigInteger n, Point point) {
-        // Write scalar as binary number
-        String nBinary = n.toString(2);
-        // exponent of 2 at index 0
-        int exp = nBinary.length() - 1;
-        Point result = null;
-
-        for (int i = 0; i < nBinary.length(); i++) {
-            /*
-             * If nBinary[i] == '1' double the point exp times (exp = nBinary.length()-1-i;
-             * exponent for 2 at this place in binary representation) else do nothing
-             */
-            if (nBinary.charAt(i) == '1') {
-                Point partialSum = point;
-                for (int j = 0; j < exp; j++) {
-                    partialSum = doublePoint(partialSum);
+    private BigInteger twoTorsionRoot() {
+        int twos = q.getLowestSetBit();
+        BigInteger odd = q.shiftRight(twos);
+        BigInteger x = zero;
+        for (int attempt = 0; attempt < MODEL_ATTEMPTS; x = x.add(one)) {
+            BigInteger y = sqrtModP(x.pow(3).add(a.multiply(x)).add(b), p);
+            if (y == null) {
+                continue;
+            }
+            attempt++;
+            AffinePoint pp = toAffine(wnafMultiply(odd, toJacobian(new AffinePoint(x, y))));
+            for (int i = 0; i < twos && !pp.equals(affine.infinity()); i++) {
+                if (pp.y.signum() == 0) {
+                    return pp.x;
                 }
+                pp = toAffine(doublePoint(toJacobian(pp)));
+            }
+        }
+        return null;
+    }
 
-                result = result == null ? partialSum : addPoints(result, partialSum);
+    /**
+     * Square root mod an odd prime m (Tonelli, Shanks)
+     * 
+     * @return a square root of n, null if n is not a square
+     */
+    private static BigInteger sqrtModP(BigInteger n, BigInteger m) {
+        n = n.mod(m);
+        BigInteger half = m.shiftRight(1);
+        if (n.signum() == 0) {
+            return n;
+        } else if (!n.modPow(half, m).equals(BigInteger.ONE)) {
+            return null;
+        }
+
+        // m - 1 = 2^e * s with s odd, z is not a square
+        int e = m.subtract(BigInteger.ONE).getLowestSetBit();
+        BigInteger s = m.shiftRight(e);
+        BigInteger z = BigInteger.TWO;
+        while (z.modPow(half, m).equals(BigInteger.ONE)) {
+            z = z.add(BigInteger.ONE);
+        }
+
+        BigInteger c = z.modPow(s, m);
+        BigInteger x = n.modPow(s.add(BigInteger.ONE).shiftRight(1), m);
+        BigInteger t = n.modPow(s, m);
+        while (!t.equals(BigInteger.ONE)) {
+            // Least i with t^(2^i) = 1
+            int i = 0;
+            for (BigInteger t2 = t; !t2.equals(BigInteger.ONE); t2 = t2.multiply(t2).mod(m)) {
+                i++;
             }
+            BigInteger g = c.modPow(BigInteger.ONE.shiftLeft(e - i - 1), m);
+            x = x.multiply(g).mod(m);
+            c = g.multiply(g).mod(m);
+            t = t.multiply(c).mod(m);
+            e = i;
+        }
+        return x;
+    }
 
-            exp = exp - 1;
+    /**
+     * Scalar multiplication with the Montgomery ladder on the Montgomery model,
+     * the same operations for every bit of n
+     * 
+     * @param n     scalar
+     * @param point point to multiply
+     * @return point times n, in the coordinates of point
+     */
+    private Point montgomeryLadder(BigInteger n, Point point) {
+        CoordinateSystem cs = coordinatesOf(point);
+        long[][] t = scratch.get();
+        FieldPoint m = montgomery.newInfinity();
+        montgomery.fromWeierstrass(m, toFieldPoint(point, jacobian), t);
+        // q is the order of the curve, so it's a multiple of the order of point
+        if (!montgomery.multiply(m, m, n.mod(q), t)) {
+            // Points of order 2, v can't be recovered
+            return wnafMultiply(n, point);
         }
+        FieldPoint r = newFieldPoint();
+        montgomery.toWeierstrass(r, m, t);
+        return fromJacobian(r, cs);
+    }
 
-        return result == null ? zeroAtInfinity : result;
+    /**
+     * Scalar multiplication with a width-w NAF of n on the twisted Edwards model,
+     * whose unified additions have no exceptional cases to branch on
+     * 
+     * @param n     scalar
+     * @param point point to multiply
+     * @return point times n, in the coordinates of point
+     */
+    private Point edwardsMultiply(BigInteger n, Point point) {
+        CoordinateSystem cs = coordinatesOf(point);
+        long[][] t = scratch.get();
+        FieldPoint m = montgomery.newInfinity();
+        montgomery.fromWeierstrass(m, toFieldPoint(point, jacobian), t);
+        FieldPoint e = edwards.newNeutral();
+        if (!edwards.fromMontgomery(e, m, t)) {
+            return wnafMultiply(n, point);
+        }
+
+        edwards.multiply(e, e, WindowNaf.recode(n.abs(), windowWidth), WindowNaf.tableSize(windowWidth), t);
+        if (field.isZero(e.z)) {
+            // Only an incomplete model fails, on points with a small order part
+            return wnafMultiply(n, point);
+        }
+        if (n.signum() < 0) {
+            edwards.negate(e, e);
+        }
+
+        edwards.toMontgomery(m, e, t);
+        FieldPoint r = newFieldPoint();
+        montgomery.toWeierstrass(r, m, t);
+        return fromJacobian(r, cs);
     }
 
     /**
      * Scalar multiplication P = k * G done in a double and add method presented
      * during the lecture.
      * 
-     * @param k scalar
+     * @param k scalar, positive
      * @param G point to multiply
      * @return k * G with intermediate points 
      */
     public ArrayList<Point> doubleAndAdd(BigInteger k, Point G) {
-
-        // Write scalar as binary number
-        String kBinary = k.toString(2);
         ArrayList<Point> intermediate = new ArrayList<Point>();
-        Point P = G;
-        intermediate.add(P);
+        doubleAndAdd(k, G, (bit, operation, point) -> intermediate.add(point.get()));
+        return intermediate;
+    }
 
-        for (int i = 1; i < kBinary.length(); i++) {
-            P = doublePoint(P);
-            intermediate.add(P);
-            if (kBinary.charAt(i) == '1')
-                P = addPoints(P, G);
-                intermediate.add(P);
+    /**
+     * Scalar multiplication P = k * G done in a double and add method, passing
+     * every step to a listener instead of collecting the intermediate points. A
+     * point is converted out of the field only if the listener asks for it.
+     * 
+     * @param k        scalar, positive
+     * @param G        point to multiply
+     * @param listener receives every step, null if only the result is needed
+     * @return k * G
+     */
+    public Point doubleAndAdd(BigInteger k, Point G, StepListener listener) {
+        CoordinateSystem cs = coordinatesOf(G);
+        long[][] t = scratch.get();
+        FieldPoint g = cs.toFieldPoint(G);
+        FieldPoint P = cs.toFieldPoint(G);
+        int top = k.bitLength() - 1;
+        Supplier<Point> current = () -> cs.fromFieldPoint(P);
+        if (listener != null) {
+            listener.step(top, StepListener.Operation.START, current);
         }
 
-        return intermediate;
+        for (int i = top - 1; i >= 0; i--) {
+            cs.doubleInto(P, P, t);
+            if (listener != null) {
+                listener.step(i, StepListener.Operation.DOUBLE, current);
+            }
+            if (k.testBit(i)) {
+                cs.addInto(P, P, g, t);
+                if (listener != null) {
+                    listener.step(i, StepListener.Operation.ADD, current);
+                }
+            }
+        }
+
+        return cs.fromFieldPoint(P);
+    }
+
+    /**
+     * Record the sequence of operations of the double and add method for k * G
+     * into a primitive array, without creating any intermediate Points. Every
+     * bit after the leading one gives TRACE_DOUBLE, followed by TRACE_ADD if the
+     * bit is 1.
+     * 
+     * @param k     scalar, positive
+     * @param G     point to multiply
+     * @param trace destination, at least traceLength(k) long
+     * @return number of operations written to trace
+     */
+    public int doubleAndAddTrace(BigInteger k, Point G, byte[] trace) {
+        return doubleAndAddTrace(k, G, trace, null);
+    }
+
+    /**
+     * Record the sequence of operations of the double and add method for k * G
+     * together with the z coordinate after every operation, in the coordinates
+     * of G. Every z is copied whole in the representation of the field backend
+     * (see getField; for Montgomery backends z * R mod p), which determines z
+     * within one curve and is recorded without allocating.
+     * 
+     * @param k     scalar, positive
+     * @param G     point to multiply
+     * @param trace destination for operations, at least traceLength(k) long
+     * @param z     destination for z coordinates, as long as trace, with rows of
+     *              getField().getLimbs() limbs; null if not needed
+     * @return number of operations written to trace
+     */
+    public int doubleAndAddTrace(BigInteger k, Point G, byte[] trace, long[][] z) {
+        int needed = traceLength(k);
+        if (trace.length < needed || (z != null && z.length < needed)) {
+            throw new IllegalArgumentException("Trace needs " + needed + " entries");
+        }
+        CoordinateSystem cs = coordinatesOf(G);
+        long[][] t = scratch.get();
+        FieldPoint g = cs.toFieldPoint(G);
+        FieldPoint P = cs.toFieldPoint(G);
+        int length = 0;
+
+        for (int i = k.bitLength() - 2; i >= 0; i--) {
+            cs.doubleInto(P, P, t);
+            if (z != null) {
+                field.copy(z[length], P.z);
+            }
+            trace[length++] = TRACE_DOUBLE;
+            if (k.testBit(i)) {
+                cs.addInto(P, P, g, t);
+                if (z != null) {
+                    field.copy(z[length], P.z);
+                }
+                trace[length++] = TRACE_ADD;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Longest trace of doubleAndAddTrace for scalars of the bit length of k
+     * 
+     * @param k scalar, positive
+     * @return 2 * (bit length of k - 1)
+     */
+    public static int traceLength(BigInteger k) {
+        return 2 * Math.max(k.bitLength() - 1, 0);
     }
 
     /**
@@ -418,25 +1311,61 @@ public class EllipticCurve {
      * @return an affine coordinates version of pp
      */
     public AffinePoint toAffine(Point pp) {
-        try {
-            if (pp instanceof ProjectivePoint) {
-                ProjectivePoint ppp = (ProjectivePoint) pp;
-                BigInteger zInv = ppp.z.modInverse(p);
-                return new AffinePoint(ppp.x.multiply(zInv).mod(p), ppp.y.multiply(zInv).mod(p));
-            } else if (pp instanceof JacobianPoint) {
-                JacobianPoint ppp = (JacobianPoint) pp;
-                BigInteger z2Inv = ppp.z.modPow(two.negate(), p);
-                BigInteger z3Inv = ppp.z.modPow(three.negate(), p);
-                return new AffinePoint(ppp.x.multiply(z2Inv).mod(p), ppp.y.multiply(z3Inv).mod(p));
+        CoordinateSystem cs = coordinatesOf(pp);
+        if (cs == affine) {
+            return (AffinePoint) pp;
+        }
+
+        FieldPoint fp = cs.toFieldPoint(pp);
+        if (field.isZero(fp.z)) {
+            return (AffinePoint) affine.infinity();
+        }
+        long[][] t = scratch.get();
+        field.invert(t[4], fp.z);
+        cs.toAffine(t[2], t[3], fp, t[4], t);
+        return new AffinePoint(field.fromField(t[2]), field.fromField(t[3]));
+    }
+
+    /**
+     * Transform many Points to AffinePoints at once. All projective and Jacobian
+     * points share a single inversion (Montgomery's trick), which is much cheaper
+     * than calling toAffine on every one of them.
+     * 
+     * @param points Points in any coordinates
+     * @return affine coordinates versions of points, in the same order
+     */
+    public ArrayList<AffinePoint> toAffineBatch(List<Point> points) {
+        int n = points.size();
+        CoordinateSystem[] cs = new CoordinateSystem[n];
+        FieldPoint[] fps = new FieldPoint[n];
+        long[][] z = new long[n][];
+        long[][] zInv = new long[n][];
+
+        for (int i = 0; i < n; i++) {
+            cs[i] = coordinatesOf(points.get(i));
+            // Affine points need no inversion, zero is skipped by invertBatch
+            z[i] = fieldZero;
+            if (cs[i] != affine) {
+                fps[i] = cs[i].toFieldPoint(points.get(i));
+                z[i] = fps[i].z;
+            }
+            zInv[i] = field.newElement();
+        }
+        field.invertBatch(zInv, z);
+
+        ArrayList<AffinePoint> result = new ArrayList<AffinePoint>(n);
+        long[][] t = scratch.get();
+        for (int i = 0; i < n; i++) {
+            if (cs[i] == affine) {
+                result.add((AffinePoint) points.get(i));
+            } else if (field.isZero(z[i])) {
+                result.add((AffinePoint) affine.infinity());
             } else {
-                // if not those two then the point is affine
-                return (AffinePoint) pp;
+                cs[i].toAffine(t[2], t[3], fps[i], zInv[i], t);
+                result.add(new AffinePoint(field.fromField(t[2]), field.fromField(t[3])));
             }
-
-        } catch (ArithmeticException e) {
-            // Zero at infinity
-            return new AffinePoint(zero, zero);
         }
+        return result;
     }
 
     /**
@@ -449,4 +1378,218 @@ public class EllipticCurve {
         return new ProjectivePoint(pp.x, pp.y, BigInteger.ONE);
     }
 
+    /**
+     * Transform a Point to JacobianPoint. Chudnovsky and modified Jacobian points
+     * only drop their cached values.
+     * 
+     * @param pp
+     * @return a Jacobian coordinates version of pp
+     */
+    public JacobianPoint toJacobian(Point pp) {
+        return (JacobianPoint) jacobian.fromFieldPoint(toFieldPoint(pp, jacobian));
+    }
+
+    /**
+     * Transform a Point to ChudnovskyPoint, computing Z^2 and Z^3.
+     * 
+     * @param pp
+     * @return a Chudnovsky coordinates version of pp
+     */
+    public ChudnovskyPoint toChudnovsky(Point pp) {
+        return (ChudnovskyPoint) chudnovsky.fromFieldPoint(toFieldPoint(pp, chudnovsky));
+    }
+
+    /**
+     * Transform a Point to ModifiedJacobianPoint, computing aZ^4.
+     * 
+     * @param pp
+     * @return a modified Jacobian coordinates version of pp
+     */
+    public ModifiedJacobianPoint toModifiedJacobian(Point pp) {
+        return (ModifiedJacobianPoint) modifiedJacobian.fromFieldPoint(toFieldPoint(pp, modifiedJacobian));
+    }
+
+    /**
+     * Create a mutable accumulator for in-place operations in the coordinates of
+     * the basepoint. It starts as zero at infinity.
+     * 
+     * @return new accumulator
+     */
+    public FieldPoint newAccumulator() {
+        return newFieldPoint();
+    }
+
+    /**
+     * Overwrite an accumulator with a Point. Points in other coordinates than
+     * the basepoint are converted.
+     * 
+     * @param dst accumulator
+     * @param src Point to load
+     */
+    public void load(FieldPoint dst, Point src) {
+        dst.set(toFieldPoint(src, coordinates));
+    }
+
+    /**
+     * Read an accumulator as a Point in the coordinates of the basepoint.
+     * 
+     * @param src accumulator
+     * @return Point with the value of src
+     */
+    public Point store(FieldPoint src) {
+        return coordinates.fromFieldPoint(src);
+    }
+
+    /**
+     * dst = a + b in the coordinates of the basepoint, without allocating. dst
+     * can be the same accumulator as a or b.
+     * 
+     * @param dst accumulator for the result
+     * @param a   first summand
+     * @param b   second summand
+     */
+    public void addInto(FieldPoint dst, FieldPoint a, FieldPoint b) {
+        coordinates.addInto(dst, a, b, scratch.get());
+    }
+
+    /**
+     * dst = 2 * src in the coordinates of the basepoint, without allocating. dst
+     * can be the same accumulator as src.
+     * 
+     * @param dst accumulator for the result
+     * @param src point to double
+     */
+    public void doubleInto(FieldPoint dst, FieldPoint src) {
+        coordinates.doubleInto(dst, src, scratch.get());
+    }
+
+    /**
+     * Move a Point into the internal representation of a given coordinate
+     * system. Affine points are valid in every system and the Jacobian family
+     * (Jacobian, Chudnovsky, modified Jacobian) shares X, Y and Z, so only the
+     * cached values are dropped. Other points from a different system are
+     * converted through affine coordinates, which costs an inversion.
+     * 
+     * @param pp Point in any coordinates
+     * @param cs target coordinate system
+     * @return the same point as a FieldPoint in cs
+     */
+    private FieldPoint toFieldPoint(Point pp, CoordinateSystem cs) {
+        if (cs.owns(pp)) {
+            return cs.toFieldPoint(pp);
+        } else if (pp instanceof AffinePoint) {
+            return affine.toFieldPoint(pp);
+        }
+        CoordinateSystem source = coordinatesOf(pp);
+        if (cs instanceof JacobianCoordinates && source instanceof JacobianCoordinates) {
+            FieldPoint fp = source.toFieldPoint(pp);
+            fp.u = null;
+            fp.v = null;
+            return fp;
+        }
+        return affine.toFieldPoint(toAffine(pp));
+    }
+
+    /**
+     * Coordinate system to run a scalar multiplication of points given in cs
+     * in: the one with the lowest cost of its operations, converting the inputs
+     * and the result included (see getCostProfile). Systems of the Jacobian
+     * family normalize their tables to Z = 1 with one inversion and add them
+     * with the mixed formula, so they are the mixed representation. Single
+     * additions and doublings stay in the system of their operands, there the
+     * conversions alone would cost more than any saving.
+     *
+     * @param cs             system of the inputs and of the result
+     * @param inputs         number of input points
+     * @param doublings      number of doublings
+     * @param additions      number of additions of two results
+     * @param tableAdditions number of additions of a table entry
+     * @param tableSize      number of table entries, normalized in the
+     *                       Jacobian family
+     * @return the cheapest system, cs unless another one is cheaper
+     */
+    private CoordinateSystem workingSystem(CoordinateSystem cs, int inputs, double doublings, double additions,
+            double tableAdditions, int tableSize) {
+        CostProfile c = getCostProfile();
+        CoordinateSystem best = cs;
+        double bestCost = Double.MAX_VALUE;
+        for (CoordinateSystem ws : systems) {
+            double cost = doublings * ws.doublingCost(c) + additions * ws.additionCost(c);
+            if (ws instanceof JacobianCoordinates) {
+                // Batch inversion and scaling of every entry, see normalize
+                cost += tableAdditions * ws.mixedAdditionCost(c) + c.cost(6.0 * tableSize, tableSize, 1);
+            } else {
+                cost += tableAdditions * ws.additionCost(c);
+            }
+            cost += inputs * conversionCost(cs, ws, c) + conversionCost(ws, cs, c);
+            if (cost < bestCost || cost == bestCost && ws == cs) {
+                best = ws;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Cost of moving a point from one system into another, free for affine
+     * points and within the Jacobian family, an inversion otherwise
+     */
+    private static double conversionCost(CoordinateSystem from, CoordinateSystem to, CostProfile c) {
+        if (from == to || from instanceof AffineCoordinates
+                || from instanceof JacobianCoordinates && to instanceof JacobianCoordinates) {
+            return 0;
+        }
+        return c.cost(3, 1, 1);
+    }
+
+    /**
+     * Move the result of a multiplication run in ws into a Point of cs
+     */
+    private Point fromWorking(FieldPoint r, CoordinateSystem ws, CoordinateSystem cs) {
+        if (ws == cs) {
+            return cs.fromFieldPoint(r);
+        } else if (ws instanceof JacobianCoordinates && cs instanceof JacobianCoordinates) {
+            // Values cached by one system mean something else in another one
+            r.u = null;
+            r.v = null;
+            return cs.fromFieldPoint(r);
+        }
+        return cs.fromFieldPoint(toFieldPoint(ws.fromFieldPoint(r), cs));
+    }
+
+    /**
+     * Move a Jacobian FieldPoint into a Point of a given coordinate system, with
+     * an inversion only if cs is not one of the Jacobian family
+     */
+    private Point fromJacobian(FieldPoint r, CoordinateSystem cs) {
+        if (cs instanceof JacobianCoordinates) {
+            return cs.fromFieldPoint(r);
+        }
+        return cs.fromFieldPoint(toFieldPoint(jacobian.fromFieldPoint(r), cs));
+    }
+
+    /**
+     * New FieldPoint set to zero at infinity, (0 : 1 : 0).
+     */
+    private FieldPoint newFieldPoint() {
+        return new FieldPoint(field.newElement(), field.one(), field.newElement());
+    }
+
+    private void setInfinity(FieldPoint dst) {
+        field.copy(dst.x, fieldZero);
+        field.copy(dst.y, fieldOne);
+        field.copy(dst.z, fieldZero);
+    }
+
+    /**
+     * Allocate scratch registers for the formulas of one thread.
+     */
+    private long[][] newScratch() {
+        long[][] t = new long[SCRATCH_SIZE][];
+        for (int i = 0; i < SCRATCH_SIZE; i++) {
+            t[i] = field.newElement();
+        }
+        return t;
+    }
+
 }
@@ -0,0 +1,64 @@
+/**
+ * Point whose coordinates are kept in the internal representation of a
+ * PrimeField. EllipticCurve converts Points to this form on the way in and
+ * back on the way out, so whole chains of operations stay in the backend.
+ * The meaning of (x, y, z) depends on the coordinate system it came from;
+ * affine points use z = 1. In every system z = 0 means zero at infinity.
+ *
+ * Some systems cache values derived from z in u and v (Chudnovsky: Z^2 and
+ * Z^3, modified Jacobian: aZ^4 in u). They are null when not known, so any
+ * code that changes z without updating them has to set them to null. Points of
+ * TwistedEdwardsCurve keep their T coordinate in u.
+ */
+public class FieldPoint {
+
+    public long[] x;
+    public long[] y;
+    public long[] z;
+    public long[] u;
+    public long[] v;
+
+    public FieldPoint(long[] x, long[] y, long[] z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Overwrite this point with the coordinates of another one from the same
+     * field, including the cached values
+     *
+     * @param src point to copy
+     */
+    public void set(FieldPoint src) {
+        System.arraycopy(src.x, 0, x, 0, x.length);
+        System.arraycopy(src.y, 0, y, 0, y.length);
+        System.arraycopy(src.z, 0, z, 0, z.length);
+        setCache(src);
+    }
+
+    /**
+     * Overwrite the cached values with the ones of another point with the same z
+     *
+     * @param src point to copy the cached values from
+     */
+    public void setCache(FieldPoint src) {
+        u = copyOf(src.u, u);
+        v = copyOf(src.v, v);
+    }
+
+    /**
+     * Copy a cached value into dst, allocating it if needed
+     */
+    private static long[] copyOf(long[] src, long[] dst) {
+        if (src == null) {
+            return null;
+        }
+        if (dst == null) {
+            return src.clone();
+        }
+        System.arraycopy(src, 0, dst, 0, dst.length);
+        return dst;
+    }
+
+}
@@ -0,0 +1,584 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point formula written in the operation format of the Explicit-Formulas
+ * Database (Bernstein, Lange), compiled into a straight-line program over the
+ * registers of a field backend. The source has one operation per line,
+ *
+ * <pre>
+ * # comment
+ * Z1Z1 = Z1^2
+ * U2 = X2*Z1Z1
+ * H = U2-X1
+ * I = 4*HH
+ * t5 = a*t4
+ * X3 = T
+ * </pre>
+ *
+ * with squares, products, sums and differences of named values, small integer
+ * multiples k*x (done with additions) and renaming. The inputs are the
+ * coordinates X1, Y1, Z1 of the first point and X2, Y2, Z2 of the second one,
+ * the outputs X3, Y3, Z3, and the named constants are given at compilation.
+ * Temporaries can be redefined, inputs and constants can't.
+ *
+ * Compilation turns x*x into a square, shares repeated operations, drops the
+ * ones the outputs don't depend on and allocates registers by the lifetimes of
+ * the values, so the program needs few of them and every field operation in it
+ * is one the result needs. Sums and differences may reuse the register of a
+ * dying operand, products never do as the backends don't allow it. The
+ * operation counts of the compiled program are reported in the usual notation.
+ */
+public class Formula {
+
+    // Coordinates of the operands and of the result, in the order of the codes
+    // of the inputs
+    private static final String[] INPUTS = { "X1", "Y1", "Z1", "X2", "Y2", "Z2" };
+    private static final String[] OUTPUTS = { "X3", "Y3", "Z3" };
+
+    // Operations of the program
+    private static final byte MULTIPLY = 0;
+    private static final byte SQUARE = 1;
+    private static final byte ADD = 2;
+    private static final byte SUBTRACT = 3;
+    private static final byte COPY = 4;
+
+    private final String name;
+    private final String[] constants;
+
+    // Compiled program. Results are registers; operands are registers (>= 0),
+    // inputs (-1 - index in INPUTS) or constants (-1 - INPUTS.length - index).
+    private byte[] ops;
+    private int[] results;
+    private int[] left;
+    private int[] right;
+    // Registers holding X3, Y3, Z3 at the end
+    private final int[] outputs = new int[OUTPUTS.length];
+    private int registers;
+    private boolean binary;
+
+    // Operation counts
+    private int multiplications;
+    private int squarings;
+    private int constantMultiplications;
+    private int additions;
+
+    /**
+     * Compile a formula
+     *
+     * @param name      name of the formula, e.g. add-2007-bl
+     * @param source    operations, one per line
+     * @param constants names of the constants the source may use
+     * @throws IllegalArgumentException if the source doesn't parse, reads an
+     *                                  undefined value, redefines an input or a
+     *                                  constant or doesn't define all outputs
+     */
+    public Formula(String name, String source, String... constants) {
+        this.name = name;
+        this.constants = constants.clone();
+        compile(parse(source));
+    }
+
+    /**
+     * Get name of the formula
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Number of registers the program needs
+     *
+     * @return length of the scratch array required by run and execute
+     */
+    public int getRegisters() {
+        return registers;
+    }
+
+    /**
+     * Check if the formula reads the second point
+     *
+     * @return true for additions; false for doublings
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Number of general multiplications, M
+     */
+    public int getMultiplications() {
+        return multiplications;
+    }
+
+    /**
+     * Number of squarings, S
+     */
+    public int getSquarings() {
+        return squarings;
+    }
+
+    /**
+     * Number of multiplications by a named constant, D
+     */
+    public int getConstantMultiplications() {
+        return constantMultiplications;
+    }
+
+    /**
+     * Number of additions and subtractions, small multiples included
+     */
+    public int getAdditions() {
+        return additions;
+    }
+
+    /**
+     * Operation counts of the compiled program
+     *
+     * @return e.g. "7M + 4S + 14add", D for multiplications by constants
+     */
+    public String getCost() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(multiplications).append("M + ").append(squarings).append('S');
+        if (constantMultiplications > 0) {
+            sb.append(" + ").append(constantMultiplications).append('D');
+        }
+        sb.append(" + ").append(additions).append("add");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getCost() + ", " + registers + " registers";
+    }
+
+    /**
+     * Run the program, leaving X3, Y3, Z3 in the registers given by output. The
+     * operands are only read.
+     *
+     * @param field     Arithmetic backend of F_p
+     * @param pp        first point
+     * @param qq        second point, may be null if the formula isn't binary
+     * @param constants values of the constants, in the order of compilation
+     * @param t         scratch registers, at least getRegisters() of them
+     */
+    public void run(PrimeField field, FieldPoint pp, FieldPoint qq, long[][] constants, long[][] t) {
+        for (int i = 0; i < ops.length; i++) {
+            long[] r = t[results[i]];
+            long[] a = operand(left[i], pp, qq, constants, t);
+            switch (ops[i]) {
+                case MULTIPLY:
+                    field.multiply(r, a, operand(right[i], pp, qq, constants, t));
+                    break;
+                case SQUARE:
+                    field.square(r, a);
+                    break;
+                case ADD:
+                    field.add(r, a, operand(right[i], pp, qq, constants, t));
+                    break;
+                case SUBTRACT:
+                    field.subtract(r, a, operand(right[i], pp, qq, constants, t));
+                    break;
+                default:
+                    field.copy(r, a);
+            }
+        }
+    }
+
+    /**
+     * dst = result of the formula on pp and qq. dst may be one of the operands.
+     *
+     * @see #run
+     */
+    public void execute(PrimeField field, FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] constants,
+            long[][] t) {
+        run(field, pp, qq, constants, t);
+        field.copy(dst.x, t[outputs[0]]);
+        field.copy(dst.y, t[outputs[1]]);
+        field.copy(dst.z, t[outputs[2]]);
+    }
+
+    /**
+     * Register holding an output after run
+     *
+     * @param i 0 for X3, 1 for Y3, 2 for Z3
+     * @return index into the scratch registers
+     */
+    public int output(int i) {
+        return outputs[i];
+    }
+
+    /**
+     * The compiled program as Java statements against a PrimeField called field,
+     * with the operands pp and qq, the result dst, the scratch registers t and
+     * the constants under their names. Straight-line code to paste into a
+     * CoordinateSystem once a formula has proved itself.
+     *
+     * @return source of the statements
+     */
+    public String toJava() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("// ").append(name).append(", ").append(getCost()).append('\n');
+        for (int i = 0; i < ops.length; i++) {
+            String r = "t[" + results[i] + "]";
+            String a = operandName(left[i]);
+            switch (ops[i]) {
+                case MULTIPLY:
+                    sb.append("field.multiply(").append(r).append(", ").append(a).append(", ")
+                            .append(operandName(right[i]));
+                    break;
+                case SQUARE:
+                    sb.append("field.square(").append(r).append(", ").append(a);
+                    break;
+                case ADD:
+                    sb.append("field.add(").append(r).append(", ").append(a).append(", ")
+                            .append(operandName(right[i]));
+                    break;
+                case SUBTRACT:
+                    sb.append("field.subtract(").append(r).append(", ").append(a).append(", ")
+                            .append(operandName(right[i]));
+                    break;
+                default:
+                    sb.append("field.copy(").append(r).append(", ").append(a);
+            }
+            sb.append(");\n");
+        }
+        String[] coordinates = { "x", "y", "z" };
+        for (int i = 0; i < outputs.length; i++) {
+            sb.append("field.copy(dst.").append(coordinates[i]).append(", t[").append(outputs[i]).append("]);\n");
+        }
+        return sb.toString();
+    }
+
+    private static long[] operand(int code, FieldPoint pp, FieldPoint qq, long[][] constants, long[][] t) {
+        if (code >= 0) {
+            return t[code];
+        }
+        switch (code) {
+            case -1:
+                return pp.x;
+            case -2:
+                return pp.y;
+            case -3:
+                return pp.z;
+            case -4:
+                return qq.x;
+            case -5:
+                return qq.y;
+            case -6:
+                return qq.z;
+            default:
+                return constants[-1 - INPUTS.length - code];
+        }
+    }
+
+    private String operandName(int code) {
+        if (code >= 0) {
+            return "t[" + code + "]";
+        }
+        if (code >= -INPUTS.length) {
+            return (code >= -3 ? "pp." : "qq.") + "xyz".charAt((-1 - code) % 3);
+        }
+        return constants[-1 - INPUTS.length - code];
+    }
+
+    /**
+     * Operation on values of the formula. Values 0..5 are the inputs, then the
+     * constants, then one value per operation.
+     */
+    private static class Node {
+        final byte op;
+        final int left;
+        final int right;
+        final boolean byConstant;
+
+        Node(byte op, int left, int right, boolean byConstant) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.byConstant = byConstant;
+        }
+    }
+
+    /**
+     * Parse the source into operations in single assignment form, sharing
+     * repeated ones. Returns the nodes followed by the values of the outputs.
+     */
+    private List<Node> parse(String source) {
+        int base = INPUTS.length + constants.length;
+        Map<String, Integer> values = new HashMap<String, Integer>();
+        for (int i = 0; i < INPUTS.length; i++) {
+            values.put(INPUTS[i], i);
+        }
+        for (int i = 0; i < constants.length; i++) {
+            if (values.put(constants[i], INPUTS.length + i) != null) {
+                throw new IllegalArgumentException(name + ": constant " + constants[i] + " is already defined");
+            }
+        }
+        List<Node> nodes = new ArrayList<Node>();
+        Map<String, Integer> shared = new HashMap<String, Integer>();
+
+        String[] lines = source.split("\n");
+        for (int n = 0; n < lines.length; n++) {
+            String line = lines[n];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.replace(" ", "").replace("\t", "");
+            if (line.isEmpty()) {
+                continue;
+            }
+            String where = name + ", line " + (n + 1) + ": ";
+            int eq = line.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException(where + "expected name = expression");
+            }
+            String target = line.substring(0, eq);
+            String expression = line.substring(eq + 1);
+            Integer old = values.get(target);
+            if (old != null && old < base) {
+                throw new IllegalArgumentException(where + target + " is an input or a constant");
+            }
+            if (!target.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+                throw new IllegalArgumentException(where + "bad name " + target);
+            }
+
+            int value;
+            int operator = operatorIndex(expression);
+            if (operator < 0) {
+                // Renaming
+                value = lookup(values, expression, where);
+            } else {
+                char op = expression.charAt(operator);
+                String a = expression.substring(0, operator);
+                String b = expression.substring(operator + 1);
+                if (op == '^') {
+                    if (!b.equals("2")) {
+                        throw new IllegalArgumentException(where + "only squares are supported");
+                    }
+                    int x = lookup(values, a, where);
+                    value = emit(nodes, shared, base, new Node(SQUARE, x, x, false));
+                } else if (op == '*' && (isNumber(a) || isNumber(b))) {
+                    int k = Integer.parseInt(isNumber(a) ? a : b);
+                    int x = lookup(values, isNumber(a) ? b : a, where);
+                    value = multiple(nodes, shared, base, k, x, where);
+                } else {
+                    int x = lookup(values, a, where);
+                    int y = lookup(values, b, where);
+                    if (op == '*') {
+                        boolean byConstant = isConstant(x) || isConstant(y);
+                        value = x == y ? emit(nodes, shared, base, new Node(SQUARE, x, x, false))
+                                : emit(nodes, shared, base, new Node(MULTIPLY, x, y, byConstant));
+                    } else if (op == '+') {
+                        value = emit(nodes, shared, base, new Node(ADD, x, y, false));
+                    } else {
+                        value = emit(nodes, shared, base, new Node(SUBTRACT, x, y, false));
+                    }
+                }
+            }
+            values.put(target, value);
+        }
+
+        // Outputs that are inputs or constants are copied, so dst can be an operand
+        for (String output : OUTPUTS) {
+            Integer value = values.get(output);
+            if (value == null) {
+                throw new IllegalArgumentException(name + ": " + output + " is not defined");
+            }
+            if (value < base) {
+                values.put(output, emit(nodes, shared, base, new Node(COPY, value, value, false)));
+            }
+        }
+        for (String output : OUTPUTS) {
+            nodes.add(new Node(COPY, values.get(output), -1, false));
+        }
+        return nodes;
+    }
+
+    /**
+     * Index of the operator of a binary expression, -1 for a single name
+     */
+    private static int operatorIndex(String expression) {
+        for (int i = 1; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '*' || c == '+' || c == '-' || c == '^') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNumber(String s) {
+        return s.matches("[0-9]+");
+    }
+
+    private boolean isConstant(int value) {
+        return value >= INPUTS.length && value < INPUTS.length + constants.length;
+    }
+
+    private static int lookup(Map<String, Integer> values, String s, String where) {
+        Integer value = values.get(s);
+        if (value == null) {
+            throw new IllegalArgumentException(where + "undefined value " + s);
+        }
+        return value;
+    }
+
+    /**
+     * k * x with a chain of doublings and additions
+     */
+    private int multiple(List<Node> nodes, Map<String, Integer> shared, int base, int k, int x, String where) {
+        if (k < 1) {
+            throw new IllegalArgumentException(where + "multiple " + k + " is not positive");
+        }
+        int value = x;
+        for (int bit = 30 - Integer.numberOfLeadingZeros(k); bit >= 0; bit--) {
+            value = emit(nodes, shared, base, new Node(ADD, value, value, false));
+            if ((k >>> bit & 1) != 0) {
+                value = emit(nodes, shared, base, new Node(ADD, value, x, false));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Append a node unless the same operation is already there
+     */
+    private static int emit(List<Node> nodes, Map<String, Integer> shared, int base, Node node) {
+        int a = node.left, b = node.right;
+        if ((node.op == MULTIPLY || node.op == ADD) && a > b) {
+            a = node.right;
+            b = node.left;
+        }
+        String key = node.op + ":" + a + ":" + b;
+        Integer value = shared.get(key);
+        if (value == null) {
+            value = base + nodes.size();
+            nodes.add(node);
+            shared.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Drop dead operations, allocate registers and count operations
+     */
+    private void compile(List<Node> parsed) {
+        int base = INPUTS.length + constants.length;
+        int count = parsed.size() - OUTPUTS.length;
+
+        // Operations the outputs depend on
+        BitSet live = new BitSet(count);
+        for (int i = count; i < parsed.size(); i++) {
+            markLive(parsed, parsed.get(i).left, base, live);
+        }
+        // Last operation reading every value, outputs are held to the end
+        int[] lastUse = new int[count];
+        Arrays.fill(lastUse, -1);
+        for (int i = 0; i < count; i++) {
+            if (live.get(i)) {
+                Node node = parsed.get(i);
+                if (node.left >= base) {
+                    lastUse[node.left - base] = i;
+                }
+                if (node.right >= base) {
+                    lastUse[node.right - base] = i;
+                }
+            }
+        }
+        for (int i = count; i < parsed.size(); i++) {
+            lastUse[parsed.get(i).left - base] = Integer.MAX_VALUE;
+        }
+
+        int length = live.cardinality();
+        ops = new byte[length];
+        results = new int[length];
+        left = new int[length];
+        right = new int[length];
+        int[] register = new int[count];
+        BitSet used = new BitSet();
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (!live.get(i)) {
+                continue;
+            }
+            Node node = parsed.get(i);
+            ops[j] = node.op;
+            left[j] = code(node.left, base, register);
+            right[j] = code(node.right, base, register);
+            boolean aliasing = node.op == ADD || node.op == SUBTRACT;
+            if (aliasing) {
+                release(node, i, base, lastUse, register, used);
+            }
+            int r = used.nextClearBit(0);
+            used.set(r);
+            register[i] = r;
+            results[j] = r;
+            if (!aliasing) {
+                release(node, i, base, lastUse, register, used);
+            }
+            registers = Math.max(registers, r + 1);
+
+            switch (node.op) {
+                case MULTIPLY:
+                    if (node.byConstant) {
+                        constantMultiplications++;
+                    } else {
+                        multiplications++;
+                    }
+                    break;
+                case SQUARE:
+                    squarings++;
+                    break;
+                case ADD:
+                case SUBTRACT:
+                    additions++;
+                    break;
+                default:
+            }
+            binary |= isSecondPoint(node.left) || isSecondPoint(node.right);
+            j++;
+        }
+        for (int i = 0; i < OUTPUTS.length; i++) {
+            outputs[i] = register[parsed.get(count + i).left - base];
+        }
+    }
+
+    private static void markLive(List<Node> nodes, int value, int base, BitSet live) {
+        if (value < base || live.get(value - base)) {
+            return;
+        }
+        live.set(value - base);
+        Node node = nodes.get(value - base);
+        markLive(nodes, node.left, base, live);
+        markLive(nodes, node.right, base, live);
+    }
+
+    /**
+     * Free the registers of the operands of operation i read for the last time
+     */
+    private static void release(Node node, int i, int base, int[] lastUse, int[] register, BitSet used) {
+        if (node.left >= base && lastUse[node.left - base] == i) {
+            used.clear(register[node.left - base]);
+        }
+        if (node.right >= base && lastUse[node.right - base] == i) {
+            used.clear(register[node.right - base]);
+        }
+    }
+
+    private static int code(int value, int base, int[] register) {
+        return value >= base ? register[value - base] : -1 - value;
+    }
+
+    private static boolean isSecondPoint(int value) {
+        return value >= 3 && value < INPUTS.length;
+    }
+
+}
@@ -0,0 +1,336 @@
+import java.math.BigInteger;
+
+/**
+ * Jacobian coordinates whose addition, mixed addition and doubling run compiled
+ * Formulas, so published formulas can be tried without writing them out by
+ * hand. The formulas only have to be right for the generic case; this class
+ * handles the operands at infinity, and an addition giving Z3 = 0 is redone as
+ * a doubling when the operands are equal or gives infinity when they are
+ * opposite. That holds for every formula with Z3 a multiple of Z1 * Z2 * (U2 -
+ * U1), like all Jacobian additions of the Explicit-Formulas Database. The
+ * formulas may use the constant a.
+ *
+ * Without arguments the system takes the fastest formulas of the database for
+ * the shape of the curve. Everything else, like the co-Z ladder, is inherited.
+ */
+public class FormulaCoordinates extends JacobianCoordinates {
+
+    /**
+     * add-2007-bl, 11M + 5S
+     */
+    public static final String ADD_2007_BL = String.join("\n",
+            "Z1Z1 = Z1^2",
+            "Z2Z2 = Z2^2",
+            "U1 = X1*Z2Z2",
+            "U2 = X2*Z1Z1",
+            "t0 = Z2*Z2Z2",
+            "S1 = Y1*t0",
+            "t1 = Z1*Z1Z1",
+            "S2 = Y2*t1",
+            "H = U2-U1",
+            "t2 = 2*H",
+            "I = t2^2",
+            "J = H*I",
+            "t3 = S2-S1",
+            "r = 2*t3",
+            "V = U1*I",
+            "t4 = r^2",
+            "t5 = 2*V",
+            "t6 = t4-J",
+            "X3 = t6-t5",
+            "t7 = V-X3",
+            "t8 = S1*J",
+            "t9 = 2*t8",
+            "t10 = r*t7",
+            "Y3 = t10-t9",
+            "t11 = Z1+Z2",
+            "t12 = t11^2",
+            "t13 = t12-Z1Z1",
+            "t14 = t13-Z2Z2",
+            "Z3 = t14*H");
+
+    /**
+     * madd-2007-bl, 7M + 4S, assumes Z2 = 1
+     */
+    public static final String MADD_2007_BL = String.join("\n",
+            "Z1Z1 = Z1^2",
+            "U2 = X2*Z1Z1",
+            "t0 = Z1*Z1Z1",
+            "S2 = Y2*t0",
+            "H = U2-X1",
+            "HH = H^2",
+            "I = 4*HH",
+            "J = H*I",
+            "t1 = S2-Y1",
+            "r = 2*t1",
+            "V = X1*I",
+            "t2 = r^2",
+            "t3 = 2*V",
+            "t4 = t2-J",
+            "X3 = t4-t3",
+            "t5 = V-X3",
+            "t6 = Y1*J",
+            "t7 = 2*t6",
+            "t8 = r*t5",
+            "Y3 = t8-t7",
+            "t9 = Z1+H",
+            "t10 = t9^2",
+            "t11 = t10-Z1Z1",
+            "Z3 = t11-HH");
+
+    /**
+     * dbl-2009-l, 2M + 5S, for a = 0
+     */
+    public static final String DBL_2009_L = String.join("\n",
+            "A = X1^2",
+            "B = Y1^2",
+            "C = B^2",
+            "t0 = X1+B",
+            "t1 = t0^2",
+            "t2 = t1-A",
+            "t3 = t2-C",
+            "D = 2*t3",
+            "E = 3*A",
+            "F = E^2",
+            "t4 = 2*D",
+            "X3 = F-t4",
+            "t5 = D-X3",
+            "t6 = 8*C",
+            "t7 = E*t5",
+            "Y3 = t7-t6",
+            "t8 = Y1*Z1",
+            "Z3 = 2*t8");
+
+    /**
+     * dbl-2001-b, 3M + 5S, for a = -3
+     */
+    public static final String DBL_2001_B = String.join("\n",
+            "delta = Z1^2",
+            "gamma = Y1^2",
+            "beta = X1*gamma",
+            "t0 = X1-delta",
+            "t1 = X1+delta",
+            "t2 = t0*t1",
+            "alpha = 3*t2",
+            "t3 = alpha^2",
+            "t4 = 8*beta",
+            "X3 = t3-t4",
+            "t5 = Y1+Z1",
+            "t6 = t5^2",
+            "t7 = t6-gamma",
+            "Z3 = t7-delta",
+            "t8 = 4*beta",
+            "t9 = t8-X3",
+            "t10 = gamma^2",
+            "t11 = 8*t10",
+            "t12 = alpha*t9",
+            "Y3 = t12-t11");
+
+    /**
+     * dbl-2007-bl, 1M + 8S + 1D, for any a
+     */
+    public static final String DBL_2007_BL = String.join("\n",
+            "XX = X1^2",
+            "YY = Y1^2",
+            "YYYY = YY^2",
+            "ZZ = Z1^2",
+            "t0 = X1+YY",
+            "t1 = t0^2",
+            "t2 = t1-XX",
+            "t3 = t2-YYYY",
+            "S = 2*t3",
+            "t4 = ZZ^2",
+            "t5 = a*t4",
+            "t6 = 3*XX",
+            "M = t6+t5",
+            "t7 = M^2",
+            "t8 = 2*S",
+            "T = t7-t8",
+            "X3 = T",
+            "t9 = S-T",
+            "t10 = 8*YYYY",
+            "t11 = M*t9",
+            "Y3 = t11-t10",
+            "t12 = Y1+Z1",
+            "t13 = t12^2",
+            "t14 = t13-YY",
+            "Z3 = t14-ZZ");
+
+    private final Formula addition;
+    private final Formula mixedAddition;
+    private final Formula doubling;
+    // Values of the constants of the formulas, just a
+    private final long[][] constants;
+
+    /**
+     * Constructor with the formulas of the database for the shape of the curve
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a of the curve, already in field
+     */
+    public FormulaCoordinates(PrimeField field, long[] fieldA) {
+        this(field, fieldA, new Formula("add-2007-bl", ADD_2007_BL, "a"),
+                new Formula("madd-2007-bl", MADD_2007_BL, "a"), defaultDoubling(field, fieldA));
+    }
+
+    /**
+     * Main constructor of class
+     *
+     * @param field         Arithmetic backend of F_p
+     * @param fieldA        Paramater a of the curve, already in field
+     * @param addition      Jacobian addition compiled with the constant a
+     * @param mixedAddition addition for Z2 = 1, compiled with the constant a
+     * @param doubling      Jacobian doubling compiled with the constant a
+     * @throws IllegalArgumentException if the doubling reads a second point
+     */
+    public FormulaCoordinates(PrimeField field, long[] fieldA, Formula addition, Formula mixedAddition,
+            Formula doubling) {
+        super(field, fieldA);
+        if (doubling.isBinary()) {
+            throw new IllegalArgumentException(doubling.getName() + " reads a second point");
+        }
+        this.addition = addition;
+        this.mixedAddition = mixedAddition;
+        this.doubling = doubling;
+        this.constants = new long[][] { fieldA };
+    }
+
+    private static Formula defaultDoubling(PrimeField field, long[] fieldA) {
+        if (field.isZero(fieldA)) {
+            return new Formula("dbl-2009-l", DBL_2009_L, "a");
+        } else if (field.areEqual(fieldA, field.toField(BigInteger.valueOf(-3)))) {
+            return new Formula("dbl-2001-b", DBL_2001_B, "a");
+        }
+        return new Formula("dbl-2007-bl", DBL_2007_BL, "a");
+    }
+
+    /**
+     * Get the compiled addition
+     *
+     * @return Formula of addInto
+     */
+    public Formula getAddition() {
+        return addition;
+    }
+
+    /**
+     * Get the compiled mixed addition
+     *
+     * @return Formula of addMixed
+     */
+    public Formula getMixedAddition() {
+        return mixedAddition;
+    }
+
+    /**
+     * Get the compiled doubling
+     *
+     * @return Formula of doubleInto
+     */
+    public Formula getDoubling() {
+        return doubling;
+    }
+
+    @Override
+    public double additionCost(CostProfile costs) {
+        return cost(addition, costs);
+    }
+
+    @Override
+    public double mixedAdditionCost(CostProfile costs) {
+        return cost(mixedAddition, costs);
+    }
+
+    @Override
+    public double doublingCost(CostProfile costs) {
+        return cost(doubling, costs);
+    }
+
+    /**
+     * Operation counts of a compiled formula in multiplications
+     */
+    private static double cost(Formula formula, CostProfile costs) {
+        return costs.cost(formula.getMultiplications() + formula.getConstantMultiplications(),
+                formula.getSquarings(), 0);
+    }
+
+    /**
+     * Addition with the compiled formulas. Operands with Z = 1 take the mixed
+     * one.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        if (field.areEqual(qq.z, fieldOne)) {
+            addMixed(dst, pp, qq, t);
+        } else if (field.areEqual(pp.z, fieldOne)) {
+            addMixed(dst, qq, pp, t);
+        } else {
+            add(addition, dst, pp, qq, t);
+        }
+    }
+
+    /**
+     * Mixed addition with the compiled formula, qq has to have Z = 1 or be zero
+     * at infinity.
+     */
+    @Override
+    public void addMixed(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        add(mixedAddition, dst, pp, qq, t);
+    }
+
+    /**
+     * Doubling with the compiled formula
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        // pp.y = 0 or pp is zero at infinity
+        if (field.isZero(pp.y) || field.isZero(pp.z)) {
+            setInfinity(dst);
+            return;
+        }
+        doubling.execute(field, dst, pp, null, constants, t);
+    }
+
+    private void add(Formula formula, FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        formula.run(field, pp, qq, constants, t);
+        long[] x3 = t[formula.output(0)], y3 = t[formula.output(1)], z3 = t[formula.output(2)];
+        if (field.isZero(z3)) {
+            // pp = qq or pp = -qq, the formula gives neither
+            if (sameAffine(pp, qq, t)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    /**
+     * Check if two finite points with the same x have the same y, Y1 * Z2^3 = Y2 *
+     * Z1^3
+     */
+    private boolean sameAffine(FieldPoint pp, FieldPoint qq, long[][] t) {
+        long[] a = t[0], b = t[1], tmp = t[2];
+        field.square(tmp, qq.z);
+        field.multiply(a, tmp, qq.z);
+        field.multiply(tmp, pp.y, a);
+        field.copy(a, tmp);
+        field.square(tmp, pp.z);
+        field.multiply(b, tmp, pp.z);
+        field.multiply(tmp, qq.y, b);
+        return field.areEqual(a, tmp);
+    }
+
+}
@@ -0,0 +1,414 @@
+import java.math.BigInteger;
+
+/**
+ * Jacobian coordinates (X : Y : Z) standing for the affine point
+ * (X/Z^2, Y/Z^3). Addition and doubling need no inversion and doubling is
+ * cheaper than in homogeneous projective coordinates.
+ */
+public class JacobianCoordinates extends CoordinateSystem {
+
+    private final JacobianPoint infinity = new JacobianPoint(BigInteger.ZERO, BigInteger.ONE, BigInteger.ZERO);
+
+    /**
+     * Main constructor of class
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a of the curve, already in field
+     */
+    public JacobianCoordinates(PrimeField field, long[] fieldA) {
+        super(field, fieldA);
+    }
+
+    @Override
+    public boolean owns(Point pp) {
+        return pp instanceof JacobianPoint;
+    }
+
+    @Override
+    public Point infinity() {
+        return infinity;
+    }
+
+    @Override
+    public FieldPoint toFieldPoint(Point pp) {
+        JacobianPoint ppp = (JacobianPoint) pp;
+        return new FieldPoint(field.toField(ppp.x), field.toField(ppp.y), field.toField(ppp.z));
+    }
+
+    @Override
+    public Point fromFieldPoint(FieldPoint fp) {
+        if (field.isZero(fp.z)) {
+            return infinity;
+        }
+        return new JacobianPoint(field.fromField(fp.x), field.fromField(fp.y), field.fromField(fp.z));
+    }
+
+    /**
+     * Jacobian addition. Operands with Z = 1 (the basepoint, normalized tables)
+     * take the cheaper mixed formula.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        if (field.areEqual(qq.z, fieldOne)) {
+            addMixed(dst, pp, qq, t);
+        } else if (field.areEqual(pp.z, fieldOne)) {
+            addMixed(dst, qq, pp, t);
+        } else {
+            add(dst, pp, qq, t);
+        }
+    }
+
+    /**
+     * General Jacobian addition, 11M + 5S.
+     */
+    private void add(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        long[] Z1Z1 = t[0], Z2Z2 = t[1], U1 = t[2], U2 = t[3], S1 = t[4], S2 = t[5], tmp = t[6];
+        field.square(Z1Z1, pp.z);
+        field.square(Z2Z2, qq.z);
+        // U1 = pp.x * qq.z^2
+        field.multiply(U1, pp.x, Z2Z2);
+        // U2 = qq.x * pp.z^2
+        field.multiply(U2, qq.x, Z1Z1);
+        // S1 = pp.y * qq.z^3
+        field.multiply(tmp, Z2Z2, qq.z);
+        field.multiply(S1, pp.y, tmp);
+        // S2 = qq.y * pp.z^3
+        field.multiply(tmp, Z1Z1, pp.z);
+        field.multiply(S2, qq.y, tmp);
+
+        // If U1 = U2 result is zero at infinity or if S1 = S2 do doubling
+        if (field.areEqual(U1, U2)) {
+            if (field.areEqual(S1, S2)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        long[] H = t[7], R = t[8], HH = t[9], HHH = t[10], U1HH = t[11];
+        long[] x3 = t[12], y3 = t[13], z3 = t[14];
+        // H = U2 - U1
+        field.subtract(H, U2, U1);
+        // R = S2 - S1
+        field.subtract(R, S2, S1);
+        field.square(HH, H);
+        field.multiply(HHH, HH, H);
+        field.multiply(U1HH, U1, HH);
+        // x3 = R^2 - H^3 - 2U1H^2
+        field.square(x3, R);
+        field.subtract(x3, x3, HHH);
+        field.subtract(x3, x3, U1HH);
+        field.subtract(x3, x3, U1HH);
+        // y3 = R(U1H^2 - x3) - S1H^3
+        field.subtract(tmp, U1HH, x3);
+        field.multiply(y3, R, tmp);
+        field.multiply(tmp, S1, HHH);
+        field.subtract(y3, y3, tmp);
+        // z3 = H * pp.z * qq.z
+        field.multiply(tmp, H, pp.z);
+        field.multiply(z3, tmp, qq.z);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    /**
+     * Mixed Jacobian-affine addition, qq has to have Z = 1 or be zero at
+     * infinity. Saves the powers of qq.z, 7M + 4S instead of 11M + 5S.
+     */
+    public void addMixed(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        long[] Z1Z1 = t[0], U2 = t[1], S2 = t[2], H = t[3], R = t[4], tmp = t[5];
+        field.square(Z1Z1, pp.z);
+        // U2 = qq.x * pp.z^2
+        field.multiply(U2, qq.x, Z1Z1);
+        // S2 = qq.y * pp.z^3
+        field.multiply(tmp, Z1Z1, pp.z);
+        field.multiply(S2, qq.y, tmp);
+        // H = U2 - pp.x
+        field.subtract(H, U2, pp.x);
+        // R = 2(S2 - pp.y)
+        field.subtract(R, S2, pp.y);
+        field.add(R, R, R);
+
+        // If H = 0 result is zero at infinity or if R = 0 do doubling
+        if (field.isZero(H)) {
+            if (field.isZero(R)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        long[] HH = t[6], I = t[7], J = t[8], V = t[9];
+        long[] x3 = t[10], y3 = t[11], z3 = t[12];
+        field.square(HH, H);
+        // I = 4H^2, J = HI, V = pp.x * I
+        field.add(I, HH, HH);
+        field.add(I, I, I);
+        field.multiply(J, H, I);
+        field.multiply(V, pp.x, I);
+        // x3 = R^2 - J - 2V
+        field.square(x3, R);
+        field.subtract(x3, x3, J);
+        field.subtract(x3, x3, V);
+        field.subtract(x3, x3, V);
+        // y3 = R(V - x3) - 2 * pp.y * J
+        field.subtract(tmp, V, x3);
+        field.multiply(y3, R, tmp);
+        field.multiply(tmp, pp.y, J);
+        field.subtract(y3, y3, tmp);
+        field.subtract(y3, y3, tmp);
+        // z3 = (pp.z + H)^2 - pp.z^2 - H^2
+        field.add(tmp, pp.z, H);
+        field.square(z3, tmp);
+        field.subtract(z3, z3, Z1Z1);
+        field.subtract(z3, z3, HH);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    @Override
+    public double additionCost(CostProfile costs) {
+        return costs.cost(11, 5, 0);
+    }
+
+    @Override
+    public double mixedAdditionCost(CostProfile costs) {
+        return costs.cost(7, 4, 0);
+    }
+
+    /**
+     * 4M + 4S for a = -3, 3M + 4S for a = 0, 4M + 6S otherwise
+     */
+    @Override
+    public double doublingCost(CostProfile costs) {
+        if (aIsMinusThree) {
+            return costs.cost(4, 4, 0);
+        }
+        return aIsZero ? costs.cost(3, 4, 0) : costs.cost(4, 6, 0);
+    }
+
+    /**
+     * Jacobian doubling.
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        // pp.y = 0 or pp is zero at infinity
+        if (field.isZero(pp.y) || field.isZero(pp.z)) {
+            setInfinity(dst);
+            return;
+        }
+
+        long[] YY = t[0], XX = t[1], ZZ = t[2], S = t[3], M = t[4];
+        long[] x3 = t[5], y3 = t[6], z3 = t[7], tmp = t[8];
+        field.square(YY, pp.y);
+        // S = 4XY^2
+        field.multiply(S, pp.x, YY);
+        field.add(S, S, S);
+        field.add(S, S, S);
+        // M = 3X^2 + aZ^4
+        if (aIsMinusThree) {
+            // 3X^2 - 3Z^4 = 3(X - Z^2)(X + Z^2)
+            field.square(ZZ, pp.z);
+            field.subtract(XX, pp.x, ZZ);
+            field.add(tmp, pp.x, ZZ);
+            field.multiply(M, XX, tmp);
+            times3(M, tmp);
+        } else if (aIsZero) {
+            field.square(M, pp.x);
+            times3(M, tmp);
+        } else {
+            field.square(XX, pp.x);
+            field.square(ZZ, pp.z);
+            field.square(tmp, ZZ);
+            field.multiply(M, fieldA, tmp);
+            field.add(M, M, XX);
+            field.add(M, M, XX);
+            field.add(M, M, XX);
+        }
+        // x3 = M^2 - 2S
+        field.square(x3, M);
+        field.subtract(x3, x3, S);
+        field.subtract(x3, x3, S);
+        // y3 = M(S - x3) - 8Y^4
+        field.subtract(tmp, S, x3);
+        field.multiply(y3, M, tmp);
+        field.square(tmp, YY);
+        times8(tmp);
+        field.subtract(y3, y3, tmp);
+        // z3 = 2YZ
+        field.multiply(z3, pp.y, pp.z);
+        field.add(z3, z3, z3);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    /**
+     * Montgomery ladder R0 = k * P on co-Z points (Rivain, "Fast and regular
+     * algorithms for scalar multiplication over elliptic curves"). R0 and R1
+     * share their Z coordinate, every bit of k costs one XYCZ-ADDC and one
+     * XYCZ-ADD whatever its value, so the sequence of operations doesn't depend
+     * on k. The common Z is tracked explicitly.
+     *
+     * @param dst k * P
+     * @param pp  P, has to have Z = 1
+     * @param k   scalar, 0 < k < order of P
+     * @param t   scratch registers
+     * @return false if the ladder met R0 = -R1 or R0 = R1, then dst is not valid
+     */
+    public boolean coZLadder(FieldPoint dst, FieldPoint pp, BigInteger k, long[][] t) {
+        long[][] x = { field.newElement(), field.newElement() };
+        long[][] y = { field.newElement(), field.newElement() };
+        long[] z = field.newElement();
+
+        // (R1, R0) = (2P, P) with common Z = 2y
+        FieldPoint r1 = new FieldPoint(x[1], y[1], z);
+        doubleInto(r1, pp, t);
+        if (field.isZero(z)) {
+            return false;
+        }
+        field.square(t[0], z);
+        field.multiply(x[0], pp.x, t[0]);
+        field.multiply(t[1], t[0], z);
+        field.multiply(y[0], pp.y, t[1]);
+
+        for (int i = k.bitLength() - 2; i >= 0; i--) {
+            int b = k.testBit(i) ? 1 : 0;
+            // (R_1-b, R_b) = (R_b + R_1-b, R_b - R_1-b)
+            if (!coZAddC(x[b], y[b], x[1 - b], y[1 - b], z, t)) {
+                return false;
+            }
+            // (R_b, R_1-b) = (R_1-b + R_b, R_1-b)
+            if (!coZAdd(x[1 - b], y[1 - b], x[b], y[b], z, t)) {
+                return false;
+            }
+        }
+
+        field.copy(dst.x, x[0]);
+        field.copy(dst.y, y[0]);
+        field.copy(dst.z, z);
+        return true;
+    }
+
+    /**
+     * XYCZ-ADD, P and Q share Z. Writes P + Q into (xq, yq) and P with the new
+     * common Z into (xp, yp), 4M + 2S plus 1M for tracking Z.
+     *
+     * @return false if xp = xq
+     */
+    private boolean coZAdd(long[] xp, long[] yp, long[] xq, long[] yq, long[] z, long[][] t) {
+        long[] H = t[0], A = t[1], B = t[2], C = t[3], R = t[4], E = t[5];
+        long[] x3 = t[6], y3 = t[7], tmp = t[8];
+        // H = X2 - X1, new Z = Z * H
+        field.subtract(H, xq, xp);
+        if (field.isZero(H)) {
+            return false;
+        }
+        field.multiply(tmp, z, H);
+        field.copy(z, tmp);
+        // A = H^2, B = X1 * A, C = X2 * A
+        field.square(A, H);
+        field.multiply(B, xp, A);
+        field.multiply(C, xq, A);
+        // E = Y1(C - B)
+        field.subtract(tmp, C, B);
+        field.multiply(E, yp, tmp);
+        // x3 = (Y2 - Y1)^2 - B - C
+        field.subtract(R, yq, yp);
+        field.square(x3, R);
+        field.subtract(x3, x3, B);
+        field.subtract(x3, x3, C);
+        // y3 = (Y2 - Y1)(B - x3) - E
+        field.subtract(tmp, B, x3);
+        field.multiply(y3, R, tmp);
+        field.subtract(y3, y3, E);
+
+        field.copy(xq, x3);
+        field.copy(yq, y3);
+        field.copy(xp, B);
+        field.copy(yp, E);
+        return true;
+    }
+
+    /**
+     * Conjugate XYCZ-ADDC, P and Q share Z. Writes P + Q into (xq, yq) and P - Q
+     * into (xp, yp), both with the new common Z, 5M + 3S plus 1M for tracking Z.
+     *
+     * @return false if xp = xq
+     */
+    private boolean coZAddC(long[] xp, long[] yp, long[] xq, long[] yq, long[] z, long[][] t) {
+        long[] H = t[0], A = t[1], B = t[2], C = t[3], R = t[4], E = t[5];
+        long[] x3 = t[6], y3 = t[7], tmp = t[8], S = t[9], x4 = t[10], y4 = t[11];
+        // H = X2 - X1, new Z = Z * H
+        field.subtract(H, xq, xp);
+        if (field.isZero(H)) {
+            return false;
+        }
+        field.multiply(tmp, z, H);
+        field.copy(z, tmp);
+        // A = H^2, B = X1 * A, C = X2 * A
+        field.square(A, H);
+        field.multiply(B, xp, A);
+        field.multiply(C, xq, A);
+        // E = Y1(C - B)
+        field.subtract(tmp, C, B);
+        field.multiply(E, yp, tmp);
+        // P + Q: x3 = (Y2 - Y1)^2 - B - C, y3 = (Y2 - Y1)(B - x3) - E
+        field.subtract(R, yq, yp);
+        field.square(x3, R);
+        field.subtract(x3, x3, B);
+        field.subtract(x3, x3, C);
+        field.subtract(tmp, B, x3);
+        field.multiply(y3, R, tmp);
+        field.subtract(y3, y3, E);
+        // P - Q: x4 = (Y1 + Y2)^2 - B - C, y4 = (Y1 + Y2)(x4 - B) - E
+        field.add(S, yp, yq);
+        field.square(x4, S);
+        field.subtract(x4, x4, B);
+        field.subtract(x4, x4, C);
+        field.subtract(tmp, x4, B);
+        field.multiply(y4, S, tmp);
+        field.subtract(y4, y4, E);
+
+        field.copy(xq, x3);
+        field.copy(yq, y3);
+        field.copy(xp, x4);
+        field.copy(yp, y4);
+        return true;
+    }
+
+    @Override
+    public void toAffine(long[] x, long[] y, FieldPoint fp, long[] zInv, long[][] t) {
+        // x = X * Z^-2, y = Y * Z^-3
+        field.square(t[0], zInv);
+        field.multiply(t[1], t[0], zInv);
+        field.multiply(x, fp.x, t[0]);
+        field.multiply(y, fp.y, t[1]);
+    }
+
+}
@@ -0,0 +1,159 @@
+import java.math.BigInteger;
+
+/**
+ * Modified Jacobian coordinates (X : Y : Z : aZ^4), Jacobian coordinates that
+ * keep aZ^4 in FieldPoint.u. Doubling reads it instead of computing Z^4 and
+ * the new value comes almost for free from the 8Y^4 it already has, 4M + 4S
+ * for any a, so they suit doubling-heavy workloads. Addition pays 1M + 2S to
+ * update it. Points without the cached value (affine inputs, normalized
+ * tables) are accepted and it is computed on the fly.
+ */
+public class ModifiedJacobianCoordinates extends JacobianCoordinates {
+
+    private final ModifiedJacobianPoint infinity = new ModifiedJacobianPoint(BigInteger.ZERO, BigInteger.ONE,
+            BigInteger.ZERO, BigInteger.ZERO);
+
+    /**
+     * Main constructor of class
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a of the curve, already in field
+     */
+    public ModifiedJacobianCoordinates(PrimeField field, long[] fieldA) {
+        super(field, fieldA);
+    }
+
+    @Override
+    public boolean owns(Point pp) {
+        return pp instanceof ModifiedJacobianPoint;
+    }
+
+    @Override
+    public Point infinity() {
+        return infinity;
+    }
+
+    @Override
+    public FieldPoint toFieldPoint(Point pp) {
+        ModifiedJacobianPoint ppp = (ModifiedJacobianPoint) pp;
+        FieldPoint fp = new FieldPoint(field.toField(ppp.x), field.toField(ppp.y), field.toField(ppp.z));
+        fp.u = field.toField(ppp.aZ4);
+        return fp;
+    }
+
+    @Override
+    public Point fromFieldPoint(FieldPoint fp) {
+        if (field.isZero(fp.z)) {
+            return infinity;
+        }
+        long[] aZ4 = field.newElement();
+        long[][] t = { field.newElement(), field.newElement() };
+        field.copy(aZ4, aZ4(fp, aZ4, t[0], t[1]));
+        return new ModifiedJacobianPoint(field.fromField(fp.x), field.fromField(fp.y), field.fromField(fp.z),
+                field.fromField(aZ4));
+    }
+
+    /**
+     * Jacobian addition, then aZ^4 of the new Z.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        super.addInto(dst, pp, qq, t);
+        if (!field.isZero(dst.z)) {
+            if (dst.u == null) {
+                dst.u = field.newElement();
+            }
+            computeAZ4(t[0], dst.z, t[1], t[2]);
+            field.copy(dst.u, t[0]);
+        }
+    }
+
+    /**
+     * Jacobian addition and 1M + 2S for aZ^4
+     */
+    @Override
+    public double additionCost(CostProfile costs) {
+        return super.additionCost(costs) + costs.cost(1, 2, 0);
+    }
+
+    @Override
+    public double mixedAdditionCost(CostProfile costs) {
+        return super.mixedAdditionCost(costs) + costs.cost(1, 2, 0);
+    }
+
+    @Override
+    public double doublingCost(CostProfile costs) {
+        return costs.cost(4, 4, 0);
+    }
+
+    /**
+     * Modified Jacobian doubling, 4M + 4S.
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        // pp.y = 0 or pp is zero at infinity
+        if (field.isZero(pp.y) || field.isZero(pp.z)) {
+            setInfinity(dst);
+            return;
+        }
+
+        long[] W = aZ4(pp, t[0], t[1], t[2]);
+        long[] YY = t[3], S = t[4], U = t[5], M = t[6], tmp = t[7];
+        long[] x3 = t[8], y3 = t[9], z3 = t[10], w3 = t[11];
+        field.square(YY, pp.y);
+        // S = 4XY^2
+        field.multiply(S, pp.x, YY);
+        field.add(S, S, S);
+        field.add(S, S, S);
+        // U = 8Y^4
+        field.square(U, YY);
+        times8(U);
+        // M = 3X^2 + aZ^4
+        field.square(M, pp.x);
+        times3(M, tmp);
+        field.add(M, M, W);
+        // x3 = M^2 - 2S
+        field.square(x3, M);
+        field.subtract(x3, x3, S);
+        field.subtract(x3, x3, S);
+        // y3 = M(S - x3) - U
+        field.subtract(tmp, S, x3);
+        field.multiply(y3, M, tmp);
+        field.subtract(y3, y3, U);
+        // z3 = 2YZ
+        field.multiply(z3, pp.y, pp.z);
+        field.add(z3, z3, z3);
+        // a * z3^4 = 16Y^4 * aZ^4 = 2U * aZ^4
+        field.multiply(w3, U, W);
+        field.add(w3, w3, w3);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+        if (dst.u == null) {
+            dst.u = field.newElement();
+        }
+        field.copy(dst.u, w3);
+    }
+
+    /**
+     * aZ^4 of pp, cached or computed into r
+     */
+    private long[] aZ4(FieldPoint pp, long[] r, long[] tmp1, long[] tmp2) {
+        if (pp.u != null) {
+            return pp.u;
+        }
+        computeAZ4(r, pp.z, tmp1, tmp2);
+        return r;
+    }
+
+    /**
+     * r = a * z^4
+     */
+    private void computeAZ4(long[] r, long[] z, long[] tmp1, long[] tmp2) {
+        field.square(tmp1, z);
+        field.square(tmp2, tmp1);
+        field.multiply(r, fieldA, tmp2);
+    }
+
+}
@@ -0,0 +1,60 @@
+import java.math.BigInteger;
+
+/**
+ * Point in modified Jacobian coordinates (X : Y : Z : aZ^4), a Jacobian point
+ * that carries the term of doubling that depends on a.
+ */
+public class ModifiedJacobianPoint extends Point {
+
+    public BigInteger z;
+    public BigInteger aZ4;
+
+    public ModifiedJacobianPoint(BigInteger x, BigInteger y, BigInteger z, BigInteger aZ4) {
+        if (x.equals(BigInteger.ZERO) && y.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO)) {
+            throw new ArithmeticException();
+        } else {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.aZ4 = aZ4;
+        }
+    }
+
+    @Override
+    public boolean equals(Object q) {
+        if (q instanceof ModifiedJacobianPoint) {
+            ModifiedJacobianPoint qq = (ModifiedJacobianPoint) q;
+            // U1 = Y_2 * Z_1 ^ 3
+            BigInteger U1 = qq.y.multiply(z.pow(3));
+            // U2 = Y_1 * Z_2 ^ 3
+            BigInteger U2 = y.multiply(qq.z.pow(3));
+            // V1 = X_2 * Z_1 ^ 2
+            BigInteger V1 = qq.x.multiply(z.pow(2));
+            // V2 = X_1 * Z_2 ^ 2
+            BigInteger V2 = x.multiply(qq.z.pow(2));
+
+            return V1.equals(V2) && U1.equals(U2);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Equal points can have any Z and aZ^4, so the hash can't depend on the
+     * coordinates. Points are meant to be compared with equals, not hashed.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + "," + y + "," + z + "," + aZ4 + ")";
+    }
+
+    public boolean isInfinity() {
+        return x.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO);
+    }
+
+}
@@ -0,0 +1,300 @@
+import java.math.BigInteger;
+
+/**
+ * Montgomery model Bv^2 = u^3 + Au^2 + u of a short Weierstrass curve y^2 = x^3
+ * + ax + b. It exists if x^3 + ax + b has a root alpha (a point (alpha, 0) of
+ * order 2) with 3alpha^2 + a a square s^-2, which is the case when the curve has
+ * a point of order 4 or all three points of order 2. Then A = 3alpha*s, B = s
+ * and
+ *
+ * (x, y) -> (u, v) = (s(x - alpha), sy), (u, v) -> (x, y) = (u/s + alpha, v/s).
+ *
+ * Scalar multiplication uses the x-only Montgomery ladder, 5M + 4S per bit with
+ * the same operations for every bit, and recovers v at the end (Okeya,
+ * Sakurai). Points are FieldPoints (U : V : W) standing for (U/W, V/W); zero at
+ * infinity has W = 0.
+ */
+public class MontgomeryCurve {
+
+    private final PrimeField field;
+    private final BigInteger A;
+    private final BigInteger B;
+    // Constants of the model and of the map, in the representation of the field
+    private final long[] fieldAlpha;
+    private final long[] fieldS;
+    private final long[] fieldSInv;
+    private final long[] twoA;
+    private final long[] twoB;
+    // (A - 2) / 4 of the doubling in the ladder
+    private final long[] a24;
+    private final long[] fieldZero;
+    private final long[] fieldOne;
+
+    /**
+     * Main constructor of class
+     *
+     * @param field Arithmetic backend of F_p
+     * @param a     Paramater a of the Weierstrass curve
+     * @param alpha root of x^3 + ax + b
+     * @param s     inverse of a square root of 3alpha^2 + a
+     */
+    public MontgomeryCurve(PrimeField field, BigInteger a, BigInteger alpha, BigInteger s) {
+        BigInteger p = field.getP();
+        this.field = field;
+        A = alpha.multiply(BigInteger.valueOf(3)).multiply(s).mod(p);
+        B = s.mod(p);
+        fieldAlpha = field.toField(alpha);
+        fieldS = field.toField(s);
+        fieldSInv = field.toField(s.modInverse(p));
+        twoA = field.toField(A.shiftLeft(1));
+        twoB = field.toField(B.shiftLeft(1));
+        a24 = field.toField(A.subtract(BigInteger.TWO).multiply(BigInteger.valueOf(4).modInverse(p)));
+        fieldZero = field.newElement();
+        fieldOne = field.one();
+    }
+
+    /**
+     * Get paramater A in equation Bv^2 = u^3 + Au^2 + u
+     *
+     * @return A
+     */
+    public BigInteger getA() {
+        return A;
+    }
+
+    /**
+     * Get paramater B in equation Bv^2 = u^3 + Au^2 + u
+     *
+     * @return B
+     */
+    public BigInteger getB() {
+        return B;
+    }
+
+    /**
+     * New FieldPoint set to zero at infinity, (0 : 1 : 0).
+     */
+    public FieldPoint newInfinity() {
+        return new FieldPoint(field.newElement(), field.one(), field.newElement());
+    }
+
+    /**
+     * Map a Jacobian point (X : Y : Z) of the Weierstrass curve to this model,
+     * without inversions: u = s(X - alpha Z^2)/Z^2 and v = sY/Z^3, so (U : V : W)
+     * = (s(X - alpha Z^2)Z : sY : Z^3).
+     *
+     * @param dst result on this model
+     * @param pp  Weierstrass point in Jacobian coordinates, affine ones have Z = 1
+     * @param t   scratch registers
+     */
+    public void fromWeierstrass(FieldPoint dst, FieldPoint pp, long[][] t) {
+        long[] zz = t[0], u = t[1], v = t[2], w = t[3];
+        field.square(zz, pp.z);
+        field.multiply(w, zz, pp.z);
+        // u = s(X - alpha Z^2)Z
+        field.multiply(v, fieldAlpha, zz);
+        field.subtract(u, pp.x, v);
+        field.multiply(v, u, fieldS);
+        field.multiply(u, v, pp.z);
+        // v = sY
+        field.multiply(v, pp.y, fieldS);
+
+        if (field.isZero(w)) {
+            field.copy(dst.x, fieldZero);
+            field.copy(dst.y, fieldOne);
+        } else {
+            field.copy(dst.x, u);
+            field.copy(dst.y, v);
+        }
+        field.copy(dst.z, w);
+    }
+
+    /**
+     * Map a point (U : V : W) of this model to the Weierstrass curve, without
+     * inversions: x = U/(sW) + alpha and y = V/(sW), so in Jacobian coordinates
+     * (X : Y : Z) = ((U/s + alpha W)W : VW^2/s : W).
+     *
+     * @param dst Weierstrass point in Jacobian coordinates
+     * @param pp  point of this model
+     * @param t   scratch registers
+     */
+    public void toWeierstrass(FieldPoint dst, FieldPoint pp, long[][] t) {
+        long[] x = t[0], y = t[1], tmp = t[2], ww = t[3];
+        field.square(ww, pp.z);
+        // x = (U/s + alpha W)W
+        field.multiply(x, pp.x, fieldSInv);
+        field.multiply(tmp, fieldAlpha, pp.z);
+        field.add(tmp, x, tmp);
+        field.multiply(x, tmp, pp.z);
+        // y = VW^2/s
+        field.multiply(tmp, pp.y, fieldSInv);
+        field.multiply(y, tmp, ww);
+
+        if (field.isZero(pp.z)) {
+            field.copy(dst.x, fieldZero);
+            field.copy(dst.y, fieldOne);
+        } else {
+            field.copy(dst.x, x);
+            field.copy(dst.y, y);
+        }
+        field.copy(dst.z, pp.z);
+        dst.u = null;
+        dst.v = null;
+    }
+
+    /**
+     * dst = k * pp with the Montgomery ladder. Points with v = 0 are left to the
+     * caller, as their v can't be recovered.
+     *
+     * @param dst result, may be pp
+     * @param pp  point of this model
+     * @param k   scalar, non-negative
+     * @param t   scratch registers
+     * @return false if pp has v = 0 and nothing was computed
+     */
+    public boolean multiply(FieldPoint dst, FieldPoint pp, BigInteger k, long[][] t) {
+        if (field.isZero(pp.z) || k.signum() == 0) {
+            setInfinity(dst);
+            return true;
+        }
+        if (field.isZero(pp.y)) {
+            return false;
+        }
+
+        // The ladder needs the affine u of the difference of its points
+        long[] u = field.newElement(), v = field.newElement();
+        if (field.areEqual(pp.z, fieldOne)) {
+            field.copy(u, pp.x);
+            field.copy(v, pp.y);
+        } else {
+            long[] zInv = t[0];
+            field.invert(zInv, pp.z);
+            field.multiply(u, pp.x, zInv);
+            field.multiply(v, pp.y, zInv);
+        }
+
+        // (x2 : z2) = kP and (x3 : z3) = (k + 1)P
+        long[] x2 = t[0], z2 = t[1], x3 = t[2], z3 = t[3];
+        ladder(x2, z2, x3, z3, u, k, t);
+        recover(dst, x2, z2, x3, z3, u, v, t);
+        return true;
+    }
+
+    /**
+     * x-only ladder from (x2 : z2) = O, (x3 : z3) = P = (u : 1), keeping x3 - x2 = P
+     * (RFC 7748). Uses t[4..12].
+     */
+    private void ladder(long[] x2, long[] z2, long[] x3, long[] z3, long[] u, BigInteger k, long[][] t) {
+        long[] A = t[4], AA = t[5], B = t[6], BB = t[7], E = t[8], C = t[9], D = t[10], DA = t[11], CB = t[12];
+        long[] r2x = x2, r2z = z2, r3x = x3, r3z = z3;
+        field.copy(r2x, fieldOne);
+        field.copy(r2z, fieldZero);
+        field.copy(r3x, u);
+        field.copy(r3z, fieldOne);
+
+        boolean swapped = false;
+        for (int i = k.bitLength() - 1; i >= 0; i--) {
+            boolean bit = k.testBit(i);
+            if (bit != swapped) {
+                long[] tmp = r2x;
+                r2x = r3x;
+                r3x = tmp;
+                tmp = r2z;
+                r2z = r3z;
+                r3z = tmp;
+            }
+            swapped = bit;
+
+            field.add(A, r2x, r2z);
+            field.square(AA, A);
+            field.subtract(B, r2x, r2z);
+            field.square(BB, B);
+            field.subtract(E, AA, BB);
+            field.add(C, r3x, r3z);
+            field.subtract(D, r3x, r3z);
+            field.multiply(DA, D, A);
+            field.multiply(CB, C, B);
+            // x3 = (DA + CB)^2, z3 = u(DA - CB)^2
+            field.add(A, DA, CB);
+            field.square(r3x, A);
+            field.subtract(A, DA, CB);
+            field.square(B, A);
+            field.multiply(r3z, u, B);
+            // x2 = AA * BB, z2 = E(AA + a24 * E)
+            field.multiply(r2x, AA, BB);
+            field.multiply(A, a24, E);
+            field.add(A, A, AA);
+            field.multiply(r2z, E, A);
+        }
+
+        if (swapped) {
+            long[] tmp = r2x;
+            r2x = r3x;
+            r3x = tmp;
+            tmp = r2z;
+            r2z = r3z;
+            r3z = tmp;
+        }
+        if (r2x != x2) {
+            // kP ended up in the registers of (k + 1)P, exchange their values
+            field.copy(t[4], x2);
+            field.copy(x2, x3);
+            field.copy(x3, t[4]);
+            field.copy(t[4], z2);
+            field.copy(z2, z3);
+            field.copy(z3, t[4]);
+        }
+    }
+
+    /**
+     * dst = (x2 : z2) with its v, from the ladder outputs kP = (x2 : z2), (k + 1)P
+     * = (x3 : z3) and P = (u, v) (Okeya, Sakurai). Uses t[4..8].
+     */
+    private void recover(FieldPoint dst, long[] x2, long[] z2, long[] x3, long[] z3, long[] u, long[] v,
+            long[][] t) {
+        if (field.isZero(z2)) {
+            // kP = O
+            setInfinity(dst);
+            return;
+        }
+        if (field.isZero(z3)) {
+            // (k + 1)P = O, so kP = -P
+            field.copy(dst.x, u);
+            field.subtract(dst.y, fieldZero, v);
+            field.copy(dst.z, fieldOne);
+            return;
+        }
+
+        long[] v1 = t[4], v2 = t[5], v3 = t[6], v4 = t[7], tmp = t[8];
+        field.multiply(v1, u, z2);
+        field.add(v2, x2, v1);
+        field.subtract(tmp, x2, v1);
+        field.square(v3, tmp);
+        field.multiply(tmp, v3, x3);
+        field.copy(v3, tmp);
+        field.multiply(v1, twoA, z2);
+        field.add(v2, v2, v1);
+        field.multiply(v4, u, x2);
+        field.add(v4, v4, z2);
+        field.multiply(tmp, v2, v4);
+        field.multiply(v2, v1, z2);
+        field.subtract(tmp, tmp, v2);
+        field.multiply(v2, tmp, z3);
+        // Y = v2 - v3
+        field.subtract(v2, v2, v3);
+        field.multiply(v1, twoB, v);
+        field.multiply(tmp, v1, z2);
+        field.multiply(v1, tmp, z3);
+        // X = v1 * x2, Z = v1 * z2
+        field.multiply(dst.x, v1, x2);
+        field.copy(dst.y, v2);
+        field.multiply(dst.z, v1, z2);
+    }
+
+    private void setInfinity(FieldPoint dst) {
+        field.copy(dst.x, fieldZero);
+        field.copy(dst.y, fieldOne);
+        field.copy(dst.z, fieldZero);
+    }
+
+}
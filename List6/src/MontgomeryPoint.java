@@ -0,0 +1,58 @@
+import java.math.BigInteger;
+
+/**
+ * Point (X : Y : Z) of the Montgomery model Bv^2 = u^3 + Au^2 + u of a curve,
+ * standing for (u, v) = (X/Z, Y/Z). See MontgomeryCurve.
+ */
+public class MontgomeryPoint extends Point {
+
+    public BigInteger z;
+
+    public MontgomeryPoint(BigInteger x, BigInteger y, BigInteger z) {
+        if (x.equals(BigInteger.ZERO) && y.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO)) {
+            throw new ArithmeticException();
+        } else {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    @Override
+    public boolean equals(Object q) {
+        if (q instanceof MontgomeryPoint) {
+            MontgomeryPoint qq = (MontgomeryPoint) q;
+            // U1 = Y_2 * Z_1
+            BigInteger U1 = qq.y.multiply(z);
+            // U2 = Y_1 * Z_2
+            BigInteger U2 = y.multiply(qq.z);
+            // V1 = X_2 * Z_1
+            BigInteger V1 = qq.x.multiply(z);
+            // V2 = X_1 * Z_2
+            BigInteger V2 = x.multiply(qq.z);
+
+            return V1.equals(V2) && U1.equals(U2);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Equal points can differ in Z, so the hash can't be taken from the
+     * coordinates; it only keeps equals and hashCode consistent.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + "," + y + "," + z + ")";
+    }
+
+    public boolean isInfinity() {
+        return x.equals(BigInteger.ZERO) && z.equals(BigInteger.ZERO);
+    }
+
+}
@@ -0,0 +1,259 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Arithmetic backend for the finite field F_p. Elements are kept as fixed
+ * length arrays of limbs in a representation chosen by the backend (for
+ * example Montgomery form), so chains of curve operations don't have to go
+ * through BigInteger and generic division. Conversion happens only with
+ * toField/fromField.
+ *
+ * Operations write their result into the first argument. Unless stated
+ * otherwise the result may be the same array as one of the operands.
+ */
+public abstract class PrimeField {
+
+    protected final BigInteger p;
+    protected final int limbs;
+
+    /**
+     * Constructor for the backends
+     *
+     * @param p     Size of finite field
+     * @param limbs Number of limbs of every field element
+     */
+    protected PrimeField(BigInteger p, int limbs) {
+        this.p = p;
+        this.limbs = limbs;
+    }
+
+    /**
+     * Choose the arithmetic backend for a given prime.
+     *
+     * @param p Size of finite field
+     * @return Backend that fits p best
+     */
+    public static PrimeField forModulus(BigInteger p) {
+        if (p.equals(P521Field.P521)) {
+            return new P521Field();
+        } else if (p.bitLength() <= 62) {
+            return new WordMontgomeryField(p);
+        }
+        return new MontgomeryField(p);
+    }
+
+    /**
+     * Return size of finite field F_p
+     *
+     * @return p in F_p
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * Get number of limbs of every element
+     *
+     * @return length of the arrays of this backend
+     */
+    public int getLimbs() {
+        return limbs;
+    }
+
+    /**
+     * Get width of a limb of the internal representation
+     *
+     * @return bits, every limb of an element is below 2^bits
+     */
+    public abstract int getLimbBits();
+
+    /**
+     * Allocate a new element equal to zero
+     *
+     * @return 0 in internal representation
+     */
+    public long[] newElement() {
+        return new long[limbs];
+    }
+
+    /**
+     * Transform an integer into the internal representation
+     *
+     * @param x any integer, reduced mod p
+     * @return x in internal representation
+     */
+    public long[] toField(BigInteger x) {
+        long[] r = newElement();
+        set(r, x);
+        return r;
+    }
+
+    /**
+     * Overwrite r with an integer in the internal representation
+     *
+     * @param r destination
+     * @param x any integer, reduced mod p
+     */
+    public abstract void set(long[] r, BigInteger x);
+
+    /**
+     * Transform an element back into an integer from [0, p)
+     *
+     * @param a element in internal representation
+     * @return a as an integer
+     */
+    public abstract BigInteger fromField(long[] a);
+
+    /**
+     * r = a + b (mod p)
+     */
+    public abstract void add(long[] r, long[] a, long[] b);
+
+    /**
+     * r = a - b (mod p)
+     */
+    public abstract void subtract(long[] r, long[] a, long[] b);
+
+    /**
+     * r = a * b (mod p). The result can't be the same array as any of operands.
+     */
+    public abstract void multiply(long[] r, long[] a, long[] b);
+
+    /**
+     * r = a^2 (mod p). The result can't be the same array as the operand.
+     */
+    public void square(long[] r, long[] a) {
+        multiply(r, a, a);
+    }
+
+    /**
+     * r = a^-1 (mod p). Inversion is rare compared to other operations so it's
+     * done with BigInteger.
+     *
+     * @throws ArithmeticException if a = 0
+     */
+    public void invert(long[] r, long[] a) {
+        set(r, fromField(a).modInverse(p));
+    }
+
+    /**
+     * r[i] = a[i]^-1 (mod p) for all i with a single inversion (Montgomery's
+     * trick), at the cost of 3(n-1) multiplications. Elements equal to zero
+     * have no inverse and get r[i] = 0. The results can't be the same arrays as
+     * any of the operands.
+     *
+     * @param r destinations
+     * @param a elements to invert
+     */
+    public void invertBatch(long[][] r, long[][] a) {
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+
+        // r[i] = product of non-zero a[0..i]
+        long[] acc = one();
+        for (int i = 0; i < n; i++) {
+            if (isZero(a[i])) {
+                copy(r[i], acc);
+            } else {
+                multiply(r[i], acc, a[i]);
+            }
+            acc = r[i];
+        }
+
+        // inv = (a[0] * ... * a[i])^-1, peel one element off in every step
+        long[] inv = newElement();
+        long[] tmp = newElement();
+        invert(inv, r[n - 1]);
+        for (int i = n - 1; i > 0; i--) {
+            if (isZero(a[i])) {
+                copy(r[i], a[i]);
+                continue;
+            }
+            multiply(r[i], inv, r[i - 1]);
+            multiply(tmp, inv, a[i]);
+            long[] swap = inv;
+            inv = tmp;
+            tmp = swap;
+        }
+        if (isZero(a[0])) {
+            copy(r[0], a[0]);
+        } else {
+            copy(r[0], inv);
+        }
+    }
+
+    /**
+     * Check if a = 0 (mod p)
+     */
+    public abstract boolean isZero(long[] a);
+
+    /**
+     * Check if a = b (mod p)
+     */
+    public abstract boolean areEqual(long[] a, long[] b);
+
+    /**
+     * r = a
+     */
+    public void copy(long[] r, long[] a) {
+        System.arraycopy(a, 0, r, 0, limbs);
+    }
+
+    /**
+     * Get 1 in internal representation
+     *
+     * @return new array containing 1
+     */
+    public long[] one() {
+        return toField(BigInteger.ONE);
+    }
+
+    /**
+     * Split a non-negative integer into limbs of given width, least significant
+     * first.
+     *
+     * @param x    non-negative integer
+     * @param r    destination
+     * @param bits width of a limb, at most 56
+     */
+    protected static void toLimbs(BigInteger x, long[] r, int bits) {
+        Arrays.fill(r, 0);
+        byte[] bytes = x.toByteArray();
+        long mask = (1L << bits) - 1;
+        long acc = 0;
+        int accBits = 0;
+        int k = 0;
+
+        // toByteArray is big-endian, so read from the end
+        for (int i = bytes.length - 1; i >= 0 && k < r.length; i--) {
+            acc |= (bytes[i] & 0xFFL) << accBits;
+            accBits += 8;
+            if (accBits >= bits) {
+                r[k++] = acc & mask;
+                acc >>>= bits;
+                accBits -= bits;
+            }
+        }
+        if (k < r.length) {
+            r[k] = acc;
+        }
+    }
+
+    /**
+     * Join limbs of given width into an integer
+     *
+     * @param a    limbs, least significant first
+     * @param bits width of a limb
+     * @return integer represented by the limbs
+     */
+    protected static BigInteger fromLimbs(long[] a, int bits) {
+        BigInteger result = BigInteger.ZERO;
+        for (int i = a.length - 1; i >= 0; i--) {
+            result = result.shiftLeft(bits).or(BigInteger.valueOf(a[i]));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,199 @@
+import java.math.BigInteger;
+
+/**
+ * Homogeneous projective coordinates (X : Y : Z) standing for the affine point
+ * (X/Z, Y/Z). Addition and doubling need no inversion.
+ */
+public class ProjectiveCoordinates extends CoordinateSystem {
+
+    private final ProjectivePoint infinity = new ProjectivePoint(BigInteger.ZERO, BigInteger.ONE, BigInteger.ZERO);
+
+    /**
+     * Main constructor of class
+     *
+     * @param field  Arithmetic backend of F_p
+     * @param fieldA Paramater a of the curve, already in field
+     */
+    public ProjectiveCoordinates(PrimeField field, long[] fieldA) {
+        super(field, fieldA);
+    }
+
+    @Override
+    public boolean owns(Point pp) {
+        return pp instanceof ProjectivePoint;
+    }
+
+    @Override
+    public Point infinity() {
+        return infinity;
+    }
+
+    @Override
+    public FieldPoint toFieldPoint(Point pp) {
+        ProjectivePoint ppp = (ProjectivePoint) pp;
+        return new FieldPoint(field.toField(ppp.x), field.toField(ppp.y), field.toField(ppp.z));
+    }
+
+    @Override
+    public Point fromFieldPoint(FieldPoint fp) {
+        if (field.isZero(fp.z)) {
+            return infinity;
+        }
+        return new ProjectivePoint(field.fromField(fp.x), field.fromField(fp.y), field.fromField(fp.z));
+    }
+
+    /**
+     * Projective addition.
+     */
+    @Override
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        // If any point is zero at infinity
+        if (field.isZero(pp.z)) {
+            copyInto(dst, qq);
+            return;
+        } else if (field.isZero(qq.z)) {
+            copyInto(dst, pp);
+            return;
+        }
+
+        long[] U1 = t[0], U2 = t[1], V1 = t[2], V2 = t[3];
+        // U1 = Y_2 * Z_1
+        field.multiply(U1, qq.y, pp.z);
+        // U2 = Y_1 * Z_2
+        field.multiply(U2, pp.y, qq.z);
+        // V1 = X_2 * Z_1
+        field.multiply(V1, qq.x, pp.z);
+        // V2 = X_1 * Z_2
+        field.multiply(V2, pp.x, qq.z);
+
+        // If V1 = V2 result is zero at infinity or if U1 = U2 do doubling
+        if (field.areEqual(V1, V2)) {
+            if (field.areEqual(U1, U2)) {
+                doubleInto(dst, pp, t);
+            } else {
+                setInfinity(dst);
+            }
+            return;
+        }
+
+        long[] U = t[4], V = t[5], W = t[6], VV = t[7], VVV = t[8], VVV2 = t[9], A = t[10];
+        long[] x3 = t[11], y3 = t[12], z3 = t[13], tmp = t[14];
+        // U = U_1 - U_2
+        field.subtract(U, U1, U2);
+        // V = V_1 - V_2
+        field.subtract(V, V1, V2);
+        // W = Z_1 * Z_2
+        field.multiply(W, pp.z, qq.z);
+        field.square(VV, V);
+        field.multiply(VVV, VV, V);
+        field.multiply(VVV2, VV, V2);
+        // A = U^2 * W - V^3 - 2*V^2*V2
+        field.square(tmp, U);
+        field.multiply(A, tmp, W);
+        field.subtract(A, A, VVV);
+        field.subtract(A, A, VVV2);
+        field.subtract(A, A, VVV2);
+        // x3 = VA
+        field.multiply(x3, V, A);
+        // y3 = U * (V^2 * V2 - A) - V^3 * U2
+        field.subtract(tmp, VVV2, A);
+        field.multiply(y3, U, tmp);
+        field.multiply(tmp, VVV, U2);
+        field.subtract(y3, y3, tmp);
+        // z3 = V^3 * W
+        field.multiply(z3, VVV, W);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    /**
+     * 12M + 2S
+     */
+    @Override
+    public double additionCost(CostProfile costs) {
+        return costs.cost(12, 2, 0);
+    }
+
+    /**
+     * 8M + 3S for a = -3, 7M + 4S for a = 0, 8M + 5S otherwise
+     */
+    @Override
+    public double doublingCost(CostProfile costs) {
+        if (aIsMinusThree) {
+            return costs.cost(8, 3, 0);
+        }
+        return aIsZero ? costs.cost(7, 4, 0) : costs.cost(8, 5, 0);
+    }
+
+    /**
+     * Projective doubling.
+     */
+    @Override
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        // p_y = 0 or p = zero at inf
+        if (field.isZero(pp.y) || field.isZero(pp.z)) {
+            setInfinity(dst);
+            return;
+        }
+
+        long[] XX = t[0], W = t[1], S = t[2], B = t[3], B4 = t[4], h = t[5], YS = t[6];
+        long[] x3 = t[7], y3 = t[8], z3 = t[9], tmp = t[10];
+        // W = 3X^2 + aZ^2
+        if (aIsMinusThree) {
+            // 3X^2 - 3Z^2 = 3(X - Z)(X + Z)
+            field.subtract(XX, pp.x, pp.z);
+            field.add(tmp, pp.x, pp.z);
+            field.multiply(W, XX, tmp);
+            times3(W, tmp);
+        } else if (aIsZero) {
+            field.square(W, pp.x);
+            times3(W, tmp);
+        } else {
+            field.square(XX, pp.x);
+            field.square(tmp, pp.z);
+            field.multiply(W, fieldA, tmp);
+            field.add(W, W, XX);
+            field.add(W, W, XX);
+            field.add(W, W, XX);
+        }
+        // S = YZ
+        field.multiply(S, pp.y, pp.z);
+        // B = XYS
+        field.multiply(tmp, S, pp.x);
+        field.multiply(B, tmp, pp.y);
+        field.add(B4, B, B);
+        field.add(B4, B4, B4);
+        // h = W^2 - 8B
+        field.square(h, W);
+        field.subtract(h, h, B4);
+        field.subtract(h, h, B4);
+        // x3 = 2hS
+        field.multiply(x3, h, S);
+        field.add(x3, x3, x3);
+        // y3 = W(4B - h) - 8(YS)^2
+        field.subtract(tmp, B4, h);
+        field.multiply(y3, W, tmp);
+        field.multiply(YS, S, pp.y);
+        field.square(tmp, YS);
+        times8(tmp);
+        field.subtract(y3, y3, tmp);
+        // z3 = 8S^3
+        field.square(tmp, S);
+        field.multiply(z3, tmp, S);
+        times8(z3);
+
+        field.copy(dst.x, x3);
+        field.copy(dst.y, y3);
+        field.copy(dst.z, z3);
+    }
+
+    @Override
+    public void toAffine(long[] x, long[] y, FieldPoint fp, long[] zInv, long[][] t) {
+        // x = X / Z, y = Y / Z
+        field.multiply(x, fp.x, zInv);
+        field.multiply(y, fp.y, zInv);
+    }
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Methods of scalar multiplication offered by EllipticCurve.scalarMultiply
+ */
+public enum ScalarMultiplication {
+    /**
+     * Width-w NAF with precomputed odd multiples, the default one
+     */
+    WNAF,
+    /**
+     * Montgomery ladder on co-Z Jacobian points, the same sequence of operations
+     * for every bit of the scalar
+     */
+    CO_Z_LADDER,
+    /**
+     * Width-w NAF of two half-length scalars with the endomorphism of curves with
+     * a = 0, see EllipticCurve.setEndomorphism
+     */
+    GLV,
+    /**
+     * Montgomery ladder on the Montgomery model of the curve, the same operations
+     * for every bit of the scalar, see EllipticCurve.getMontgomeryModel
+     */
+    MONTGOMERY_LADDER,
+    /**
+     * Width-w NAF with the unified addition of the twisted Edwards model of the
+     * curve, see EllipticCurve.getEdwardsModel
+     */
+    EDWARDS
+}
@@ -0,0 +1,39 @@
+import java.util.function.Supplier;
+
+/**
+ * Receives the steps of EllipticCurve.doubleAndAdd as they are done, so the
+ * intermediate points are kept only if the listener keeps them. Points are
+ * built only when the listener asks for them.
+ */
+public interface StepListener {
+
+    /**
+     * Kinds of steps of the double and add method
+     */
+    enum Operation {
+        /**
+         * The starting point G, for the leading bit of k
+         */
+        START,
+        /**
+         * Doubling, done for every following bit
+         */
+        DOUBLE,
+        /**
+         * Addition of G, done only for bits equal to 1
+         */
+        ADD
+    }
+
+    /**
+     * Called after every step of the double and add method
+     *
+     * @param bit       index of the bit of k being processed, 0 for the least
+     *                  significant one
+     * @param operation kind of the step
+     * @param point     gives the intermediate point after the step, valid only
+     *                  during the call
+     */
+    void step(int bit, Operation operation, Supplier<Point> point);
+
+}
@@ -0,0 +1,123 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * One trace of the double and add method: the scalar k, the sequence of
+ * operations and the z coordinate after every operation, as the limbs of the
+ * field backend (see EllipticCurve.doubleAndAddTrace). The arrays are allocated once and reused
+ * for every trace, so a generator or an analysis keeps a single Trace per
+ * thread.
+ *
+ * In a file a trace takes:
+ * - 1 byte with the length of k and the bytes of k, big-endian,
+ * - 2 bytes with the number of operations n,
+ * - (n + 7) / 8 bytes of operations, one bit each, 1 for an addition,
+ * - n z coordinates, each of its limbs from the most significant one, every
+ *   limb in limbBytes bytes, big-endian.
+ */
+public class Trace {
+
+    public BigInteger k;
+    public byte[] operations;
+    public long[][] z;
+    public int length;
+
+    /**
+     * Constructor of class
+     *
+     * @param capacity longest trace to hold, see EllipticCurve.traceLength
+     * @param limbs    limbs of a field element, see PrimeField.getLimbs
+     */
+    public Trace(int capacity, int limbs) {
+        operations = new byte[capacity];
+        z = new long[capacity][limbs];
+    }
+
+    /**
+     * Record k * G into this trace
+     *
+     * @param curve curve of G
+     * @param k     scalar, positive
+     * @param G     point to multiply
+     */
+    public void record(EllipticCurve curve, BigInteger k, Point G) {
+        this.k = k;
+        length = curve.doubleAndAddTrace(k, G, operations, z);
+    }
+
+    /**
+     * Write this trace in the binary format
+     *
+     * @param out       destination
+     * @param limbBytes bytes of every limb of a z coordinate, from 1 to 8
+     * @throws IOException if out fails
+     */
+    public void writeTo(DataOutput out, int limbBytes) throws IOException {
+        byte[] magnitude = k.toByteArray();
+        out.writeByte(magnitude.length);
+        out.write(magnitude);
+        out.writeShort(length);
+
+        for (int i = 0; i < length; i += 8) {
+            int packed = 0;
+            for (int j = i; j < Math.min(i + 8, length); j++) {
+                packed |= (operations[j] == EllipticCurve.TRACE_ADD ? 1 : 0) << (j - i);
+            }
+            out.writeByte(packed);
+        }
+
+        for (int i = 0; i < length; i++) {
+            for (int limb = z[i].length - 1; limb >= 0; limb--) {
+                for (int b = limbBytes - 1; b >= 0; b--) {
+                    out.writeByte((int) (z[i][limb] >>> (8 * b)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Overwrite this trace with the next one of a binary stream
+     *
+     * @param in        source
+     * @param limbBytes bytes of every limb of a z coordinate, from 1 to 8
+     * @return false if the stream has no more traces
+     * @throws IOException if in fails or the trace doesn't fit in this one
+     */
+    public boolean readFrom(DataInput in, int limbBytes) throws IOException {
+        int size;
+        try {
+            size = in.readUnsignedByte();
+        } catch (EOFException e) {
+            return false;
+        }
+        byte[] magnitude = new byte[size];
+        in.readFully(magnitude);
+        k = new BigInteger(magnitude);
+        length = in.readUnsignedShort();
+        if (length > operations.length) {
+            throw new IOException("Trace of " + length + " operations is too long");
+        }
+
+        for (int i = 0; i < length; i += 8) {
+            int packed = in.readUnsignedByte();
+            for (int j = i; j < Math.min(i + 8, length); j++) {
+                operations[j] = ((packed >>> (j - i)) & 1) == 1 ? EllipticCurve.TRACE_ADD : EllipticCurve.TRACE_DOUBLE;
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            for (int limb = z[i].length - 1; limb >= 0; limb--) {
+                long value = 0;
+                for (int b = 0; b < limbBytes; b++) {
+                    value = (value << 8) | in.readUnsignedByte();
+                }
+                z[i][limb] = value;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+
+/**
+ * Simple power analysis of traces written by TraceGenerator. In the double
+ * and add method every bit of k after the leading one costs a doubling, and
+ * only bits equal to 1 an addition, so the sequence of operations alone gives
+ * away the whole scalar. The analysis recovers k from every trace and counts
+ * how many bits match the real one.
+ */
+public class TraceAnalyzer {
+
+    private long traces = 0;
+    private long recovered = 0;
+    private long bits = 0;
+    private long correctBits = 0;
+
+    /**
+     * Analyze all traces of a stream written by TraceGenerator
+     *
+     * @param in source, starting with the header
+     * @throws IOException if in fails or isn't a file of traces
+     */
+    public void analyze(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != TraceGenerator.MAGIC) {
+            throw new IOException("Not a file of traces");
+        }
+        int limbs = data.readUnsignedByte();
+        int limbBytes = data.readUnsignedByte();
+        int capacity = data.readUnsignedShort();
+
+        Trace trace = new Trace(capacity, limbs);
+        while (trace.readFrom(data, limbBytes)) {
+            BigInteger k = recoverScalar(trace);
+            traces++;
+            if (k.equals(trace.k)) {
+                recovered++;
+            }
+
+            // Compare bit by bit, a missing or extra operation shifts the rest
+            int length = Math.max(k.bitLength(), trace.k.bitLength());
+            bits += length;
+            for (int i = 0; i < length; i++) {
+                if (k.testBit(i) == trace.k.testBit(i)) {
+                    correctBits++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read k from the operations of a trace: the leading bit is 1, then every
+     * doubling starts a new bit, which is 1 if an addition follows.
+     *
+     * @param trace trace of the double and add method
+     * @return recovered scalar
+     */
+    public static BigInteger recoverScalar(Trace trace) {
+        BigInteger k = BigInteger.ONE;
+        for (int i = 0; i < trace.length; i++) {
+            if (trace.operations[i] == EllipticCurve.TRACE_DOUBLE) {
+                k = k.shiftLeft(1);
+            } else {
+                k = k.setBit(0);
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Get number of analyzed traces
+     *
+     * @return number of traces
+     */
+    public long getTraces() {
+        return traces;
+    }
+
+    /**
+     * Get number of traces whose whole scalar was recovered
+     *
+     * @return number of recovered scalars
+     */
+    public long getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Get fraction of bits of all scalars recovered correctly
+     *
+     * @return correct bits / all bits
+     */
+    public double getBitAccuracy() {
+        return bits == 0 ? 0 : (double) correctBits / bits;
+    }
+
+}
@@ -0,0 +1,130 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates traces of the double and add method for random scalars k from
+ * [2, q - 1] on several threads and streams them into a binary file. Every
+ * thread records into its own reused Trace and encodes into its own buffer; the
+ * shared stream is locked only to write out a full buffer, so throughput grows
+ * with the number of threads.
+ *
+ * The file starts with a header (MAGIC, 1 byte with the limbs of a z
+ * coordinate, 1 byte limbBytes, 2 bytes capacity) followed by traces in the
+ * format of Trace.
+ */
+public class TraceGenerator {
+
+    public static final int MAGIC = 0x45435452;
+
+    // Encoded traces collected by a thread before writing them out
+    private static final int FLUSH_SIZE = 1 << 16;
+
+    private EllipticCurve curve;
+    private Point G;
+    private int threads;
+    private int limbs;
+    private int limbBytes;
+    private int capacity;
+
+    /**
+     * Main constructor of class
+     *
+     * @param curve   curve of G
+     * @param G       point multiplied in every trace
+     * @param threads number of generating threads
+     */
+    public TraceGenerator(EllipticCurve curve, Point G, int threads) {
+        this.curve = curve;
+        this.G = G;
+        this.threads = threads;
+        // Every z is written whole, each limb in the bytes its width needs
+        limbs = curve.getField().getLimbs();
+        limbBytes = (curve.getField().getLimbBits() + 7) / 8;
+        capacity = EllipticCurve.traceLength(curve.getQ());
+    }
+
+    /**
+     * Generate traces and write them with a header to a stream
+     *
+     * @param count number of traces
+     * @param out   destination, written to only under its own lock
+     * @throws IOException          if out fails
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void generate(long count, OutputStream out) throws IOException, InterruptedException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(limbs);
+        header.writeByte(limbBytes);
+        header.writeShort(capacity);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < threads; i++) {
+                // Spread the remainder over the first threads
+                long share = count / threads + (i < count % threads ? 1 : 0);
+                workers.add(() -> {
+                    generateShare(share, out);
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        out.flush();
+    }
+
+    /**
+     * Work of a single thread
+     */
+    private void generateShare(long count, OutputStream out) throws IOException {
+        SecureRandom random = new SecureRandom();
+        BigInteger bound = curve.getQ().subtract(BigInteger.TWO);
+        Trace trace = new Trace(capacity, limbs);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(2 * FLUSH_SIZE);
+        DataOutputStream data = new DataOutputStream(buffer);
+
+        for (long i = 0; i < count; i++) {
+            // Uniform k from [2, q - 1]
+            BigInteger k;
+            do {
+                k = new BigInteger(bound.bitLength(), random);
+            } while (k.compareTo(bound) >= 0);
+            trace.record(curve, k.add(BigInteger.TWO), G);
+            trace.writeTo(data, limbBytes);
+
+            if (buffer.size() >= FLUSH_SIZE) {
+                flush(buffer, out);
+            }
+        }
+        flush(buffer, out);
+    }
+
+    private static void flush(ByteArrayOutputStream buffer, OutputStream out) throws IOException {
+        synchronized (out) {
+            buffer.writeTo(out);
+        }
+        buffer.reset();
+    }
+
+}
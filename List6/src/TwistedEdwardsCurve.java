@@ -0,0 +1,275 @@
+import java.math.BigInteger;
+
+/**
+ * Twisted Edwards model ax^2 + y^2 = 1 + dx^2y^2 of a curve with a Montgomery
+ * model Bv^2 = u^3 + Au^2 + u, through
+ *
+ * (u, v) -> (x, y) = (cu/v, (u - 1)/(u + 1)), a = (A + 2)/(Bc^2), d = (A -
+ * 2)/(Bc^2).
+ *
+ * c scales x; with c^2 = -(A + 2)/B the model gets a = -1, which saves a
+ * multiplication in every operation. Points are FieldPoints in extended
+ * coordinates (X : Y : Z : T) standing for (X/Z, Y/Z) with T = XY/Z kept in
+ * FieldPoint.u (Hisil, Wong, Carter, Dawson). The neutral element is (0 : 1 : 1
+ * : 0). Addition is unified, the same 9M formula adds and doubles without any
+ * branches, and it is complete if a is a square and d is not. Doubling is 4M +
+ * 4S.
+ */
+public class TwistedEdwardsCurve {
+
+    private final PrimeField field;
+    private final BigInteger a;
+    private final BigInteger d;
+    // Constants of the model and of the map, in the representation of the field
+    private final long[] fieldA;
+    private final long[] fieldD;
+    private final long[] fieldC;
+    private final boolean aIsMinusOne;
+    private final long[] fieldZero;
+    private final long[] fieldOne;
+
+    /**
+     * Main constructor of class
+     *
+     * @param field      Arithmetic backend of F_p
+     * @param montgomery Montgomery model of the curve
+     * @param c          scale of x, non-zero
+     */
+    public TwistedEdwardsCurve(PrimeField field, MontgomeryCurve montgomery, BigInteger c) {
+        BigInteger p = field.getP();
+        BigInteger denominator = montgomery.getB().multiply(c).multiply(c).modInverse(p);
+        this.field = field;
+        a = montgomery.getA().add(BigInteger.TWO).multiply(denominator).mod(p);
+        d = montgomery.getA().subtract(BigInteger.TWO).multiply(denominator).mod(p);
+        fieldA = field.toField(a);
+        fieldD = field.toField(d);
+        fieldC = field.toField(c);
+        aIsMinusOne = a.equals(p.subtract(BigInteger.ONE));
+        fieldZero = field.newElement();
+        fieldOne = field.one();
+    }
+
+    /**
+     * Get paramater a in equation ax^2 + y^2 = 1 + dx^2y^2
+     *
+     * @return a
+     */
+    public BigInteger getA() {
+        return a;
+    }
+
+    /**
+     * Get paramater d in equation ax^2 + y^2 = 1 + dx^2y^2
+     *
+     * @return d
+     */
+    public BigInteger getD() {
+        return d;
+    }
+
+    /**
+     * New FieldPoint set to the neutral element (0 : 1 : 1 : 0).
+     */
+    public FieldPoint newNeutral() {
+        FieldPoint fp = new FieldPoint(field.newElement(), field.one(), field.one());
+        fp.u = field.newElement();
+        return fp;
+    }
+
+    /**
+     * Map a point (U : V : W) of the Montgomery model to this one, without
+     * inversions: (X : Y : Z : T) = (cU(U + W) : V(U - W) : V(U + W) : cU(U - W)).
+     * Zero at infinity goes to the neutral element and (0, 0) to (0, -1).
+     *
+     * @param dst result on this model
+     * @param pp  point of the Montgomery model
+     * @param t   scratch registers
+     * @return false for the points of order 2 other than (0, 0) and the ones with
+     *         u = -1, which go to points at infinity of this model
+     */
+    public boolean fromMontgomery(FieldPoint dst, FieldPoint pp, long[][] t) {
+        if (dst.u == null) {
+            dst.u = field.newElement();
+        }
+        if (field.isZero(pp.z)) {
+            setNeutral(dst);
+            return true;
+        }
+        if (field.isZero(pp.x) && field.isZero(pp.y)) {
+            setNeutral(dst);
+            field.subtract(dst.y, fieldZero, fieldOne);
+            return true;
+        }
+
+        long[] plus = t[0], minus = t[1], cu = t[2], z = t[3];
+        field.add(plus, pp.x, pp.z);
+        field.subtract(minus, pp.x, pp.z);
+        field.multiply(z, pp.y, plus);
+        if (field.isZero(z)) {
+            return false;
+        }
+        field.multiply(cu, fieldC, pp.x);
+        field.multiply(dst.x, cu, plus);
+        field.multiply(dst.u, cu, minus);
+        field.multiply(plus, pp.y, minus);
+        field.copy(dst.y, plus);
+        field.copy(dst.z, z);
+        return true;
+    }
+
+    /**
+     * Map a point of this model to the Montgomery one, without inversions: u = (Z
+     * + Y)/(Z - Y) and v = cu/x, so (U : V : W) = ((Z + Y)X : c(Z + Y)Z : (Z -
+     * Y)X).
+     *
+     * @param dst point of the Montgomery model
+     * @param pp  point of this model
+     * @param t   scratch registers
+     */
+    public void toMontgomery(FieldPoint dst, FieldPoint pp, long[][] t) {
+        if (field.isZero(pp.x)) {
+            // The neutral element or (0, -1) of order 2
+            boolean neutral = field.areEqual(pp.y, pp.z);
+            field.copy(dst.x, fieldZero);
+            field.copy(dst.y, neutral ? fieldOne : fieldZero);
+            field.copy(dst.z, neutral ? fieldZero : fieldOne);
+            return;
+        }
+
+        long[] plus = t[0], minus = t[1], tmp = t[2];
+        field.add(plus, pp.z, pp.y);
+        field.subtract(minus, pp.z, pp.y);
+        field.multiply(tmp, plus, pp.z);
+        field.multiply(dst.y, tmp, fieldC);
+        field.multiply(dst.x, plus, pp.x);
+        field.multiply(dst.z, minus, pp.x);
+    }
+
+    /**
+     * dst = pp + qq, unified addition, 9M (Hisil, Wong, Carter, Dawson)
+     */
+    public void addInto(FieldPoint dst, FieldPoint pp, FieldPoint qq, long[][] t) {
+        long[] A = t[0], B = t[1], C = t[2], D = t[3], E = t[4], F = t[5], G = t[6], H = t[7], tmp = t[8];
+        field.multiply(A, pp.x, qq.x);
+        field.multiply(B, pp.y, qq.y);
+        // C = d * T1 * T2
+        field.multiply(tmp, pp.u, qq.u);
+        field.multiply(C, tmp, fieldD);
+        field.multiply(D, pp.z, qq.z);
+        // E = (X1 + Y1)(X2 + Y2) - A - B
+        field.add(E, pp.x, pp.y);
+        field.add(tmp, qq.x, qq.y);
+        field.multiply(F, E, tmp);
+        field.subtract(E, F, A);
+        field.subtract(E, E, B);
+        field.subtract(F, D, C);
+        field.add(G, D, C);
+        // H = B - aA
+        if (aIsMinusOne) {
+            field.add(H, B, A);
+        } else {
+            field.multiply(tmp, fieldA, A);
+            field.subtract(H, B, tmp);
+        }
+
+        store(dst, E, F, G, H);
+    }
+
+    /**
+     * dst = 2 * pp, 4M + 4S
+     */
+    public void doubleInto(FieldPoint dst, FieldPoint pp, long[][] t) {
+        long[] A = t[0], B = t[1], C = t[2], D = t[3], E = t[4], F = t[5], G = t[6], H = t[7], tmp = t[8];
+        field.square(A, pp.x);
+        field.square(B, pp.y);
+        field.square(C, pp.z);
+        field.add(C, C, C);
+        // D = aA
+        if (aIsMinusOne) {
+            field.subtract(D, fieldZero, A);
+        } else {
+            field.multiply(D, fieldA, A);
+        }
+        // E = (X + Y)^2 - A - B
+        field.add(E, pp.x, pp.y);
+        field.square(tmp, E);
+        field.subtract(E, tmp, A);
+        field.subtract(E, E, B);
+        field.add(G, D, B);
+        field.subtract(F, G, C);
+        field.subtract(H, D, B);
+
+        store(dst, E, F, G, H);
+    }
+
+    /**
+     * dst = -pp = (-X : Y : Z : -T)
+     */
+    public void negate(FieldPoint dst, FieldPoint pp) {
+        field.subtract(dst.x, fieldZero, pp.x);
+        field.copy(dst.y, pp.y);
+        field.copy(dst.z, pp.z);
+        field.subtract(dst.u, fieldZero, pp.u);
+    }
+
+    /**
+     * dst = k * pp with a width-w NAF of k, see WindowNaf
+     *
+     * @param dst    result, may be pp
+     * @param pp     point of this model
+     * @param digits NAF of k
+     * @param size   number of odd multiples of pp to precompute
+     * @param t      scratch registers
+     */
+    public void multiply(FieldPoint dst, FieldPoint pp, int[] digits, int size, long[][] t) {
+        FieldPoint[] table = new FieldPoint[size];
+        table[0] = newNeutral();
+        table[0].set(pp);
+        if (size > 1) {
+            FieldPoint twice = newNeutral();
+            doubleInto(twice, pp, t);
+            for (int i = 1; i < size; i++) {
+                table[i] = newNeutral();
+                addInto(table[i], table[i - 1], twice, t);
+            }
+        }
+
+        FieldPoint result = newNeutral();
+        FieldPoint negative = newNeutral();
+        for (int i = digits.length - 1; i >= 0; i--) {
+            doubleInto(result, result, t);
+            int d = digits[i];
+            if (d > 0) {
+                addInto(result, result, table[d >> 1], t);
+            } else if (d < 0) {
+                negate(negative, table[-d >> 1]);
+                addInto(result, result, negative, t);
+            }
+        }
+        if (dst.u == null) {
+            dst.u = field.newElement();
+        }
+        dst.set(result);
+    }
+
+    /**
+     * (X : Y : Z : T) = (EF : GH : FG : EH)
+     */
+    private void store(FieldPoint dst, long[] E, long[] F, long[] G, long[] H) {
+        if (dst.u == null) {
+            dst.u = field.newElement();
+        }
+        field.multiply(dst.x, E, F);
+        field.multiply(dst.y, G, H);
+        field.multiply(dst.z, F, G);
+        field.multiply(dst.u, E, H);
+    }
+
+    private void setNeutral(FieldPoint dst) {
+        field.copy(dst.x, fieldZero);
+        field.copy(dst.y, fieldOne);
+        field.copy(dst.z, fieldOne);
+        field.copy(dst.u, fieldZero);
+    }
+
+}
@@ -0,0 +1,152 @@
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in F_p for p < 2^62 on primitive longs. Elements are kept in
+ * Montgomery form a*2^64 (mod p) and products are reduced with
+ * Math.multiplyHigh, so no operation allocates.
+ */
+public class WordField {
+
+    private final long p;
+    // -p^-1 mod 2^64
+    private final long pInv;
+    // 2^64 mod p (1 in Montgomery form)
+    private final long one;
+    // 2^128 mod p, used to convert into Montgomery form
+    private final long r2;
+
+    /**
+     * Main constructor of class
+     *
+     * @param p Size of finite field, odd prime below 2^62
+     */
+    public WordField(BigInteger p) {
+        if (p.bitLength() > 62 || !p.testBit(0)) {
+            throw new IllegalArgumentException("p has to be odd and below 2^62");
+        }
+        this.p = p.longValue();
+
+        // Newton iteration doubles correct low bits of p^-1 each step, odd p is
+        // already its own inverse mod 2^3
+        long inv = this.p;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - this.p * inv;
+        }
+        pInv = -inv;
+
+        one = BigInteger.ONE.shiftLeft(64).mod(p).longValue();
+        r2 = BigInteger.ONE.shiftLeft(128).mod(p).longValue();
+    }
+
+    /**
+     * Return size of finite field F_p
+     *
+     * @return p in F_p
+     */
+    public long getP() {
+        return p;
+    }
+
+    /**
+     * Transform an integer into Montgomery form
+     *
+     * @param x any integer
+     * @return x*2^64 (mod p)
+     */
+    public long toField(long x) {
+        return multiply(Math.floorMod(x, p), r2);
+    }
+
+    /**
+     * Transform an integer into Montgomery form
+     *
+     * @param x any integer
+     * @return x*2^64 (mod p)
+     */
+    public long toField(BigInteger x) {
+        return toField(x.bitLength() < 63 ? x.longValue() : x.mod(BigInteger.valueOf(p)).longValue());
+    }
+
+    /**
+     * Transform an element back from Montgomery form
+     *
+     * @param a element in Montgomery form
+     * @return a as an integer from [0, p)
+     */
+    public long fromField(long a) {
+        return reduce(0, a);
+    }
+
+    /**
+     * Get 1 in Montgomery form
+     *
+     * @return 2^64 (mod p)
+     */
+    public long one() {
+        return one;
+    }
+
+    /**
+     * a + b (mod p)
+     */
+    public long add(long a, long b) {
+        long s = a + b;
+        return s >= p ? s - p : s;
+    }
+
+    /**
+     * a - b (mod p)
+     */
+    public long subtract(long a, long b) {
+        long d = a - b;
+        return d < 0 ? d + p : d;
+    }
+
+    /**
+     * a * b (mod p)
+     */
+    public long multiply(long a, long b) {
+        return reduce(Math.multiplyHigh(a, b), a * b);
+    }
+
+    /**
+     * a^-1 (mod p) with the extended Euclidean algorithm
+     *
+     * @throws ArithmeticException if a = 0
+     */
+    public long invert(long a) {
+        long t = 0;
+        long newT = 1;
+        long r = p;
+        long newR = fromField(a);
+
+        while (newR != 0) {
+            long quotient = r / newR;
+            long tmp = t - quotient * newT;
+            t = newT;
+            newT = tmp;
+            tmp = r - quotient * newR;
+            r = newR;
+            newR = tmp;
+        }
+        if (r != 1) {
+            throw new ArithmeticException("BigInteger not invertible.");
+        }
+        return toField(t);
+    }
+
+    /**
+     * Montgomery reduction of hi*2^64 + lo < p*2^64
+     *
+     * @return (hi*2^64 + lo) * 2^-64 (mod p)
+     */
+    private long reduce(long hi, long lo) {
+        long m = lo * pInv;
+        // Unsigned high word of m * p, m may have the top bit set
+        long mpHi = Math.multiplyHigh(m, p) + ((m >> 63) & p);
+        // lo + low word of m * p is 0 (mod 2^64) with a carry unless lo = 0
+        long t = hi + mpHi + (lo != 0 ? 1 : 0);
+        return t >= p ? t - p : t;
+    }
+
+}